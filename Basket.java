@@ -0,0 +1,64 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Basket class collecting the lines of a multi-item sale before checkout
+ * Adding the same product twice merges the quantities into one line
+ */
+public class Basket {
+    
+    /**
+     * One product and quantity in the basket
+     */
+    public static class Line {
+        private final int productId;
+        private int quantity;
+        
+        public Line(int productId, int quantity) {
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+        
+        public int getProductId() {
+            return productId;
+        }
+        
+        public int getQuantity() {
+            return quantity;
+        }
+    }
+    
+    private final ArrayList<Line> lines = new ArrayList<>();
+    
+    /**
+     * Add a quantity of a product to the basket
+     * @param productId Product ID
+     * @param quantity Quantity to buy
+     */
+    public void add(int productId, int quantity) {
+        for (Line line : lines) {
+            if (line.productId == productId) {
+                line.quantity += quantity;
+                return;
+            }
+        }
+        lines.add(new Line(productId, quantity));
+    }
+    
+    /**
+     * Get the basket lines in the order they were added
+     * @return read-only list of lines
+     */
+    public List<Line> getLines() {
+        return Collections.unmodifiableList(lines);
+    }
+    
+    public int size() {
+        return lines.size();
+    }
+    
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+}
@@ -0,0 +1,155 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BatchImporter class applying a CSV export of sales and purchases without the interactive menu
+ *
+ * Each line has the form: TYPE,productId,quantity (TYPE is SALE or PURCHASE); blank lines,
+ * lines starting with '#' and a leading header line are skipped. Every line goes through the
+ * SalesEngine, so sales are checked against stock exactly as in the Record Sale window.
+ * Changes are persisted through a checkpoint callback every N accepted lines and at the end.
+ */
+public class BatchImporter {
+    private static final int MAX_REPORTED_REJECTIONS = 100;
+    
+    private final SalesEngine salesEngine;
+    private final Runnable checkpoint;
+    private final int checkpointInterval;
+    
+    /**
+     * Result of an import run
+     */
+    public static class ImportReport {
+        private int sales;
+        private int purchases;
+        private int rejected;
+        private final List<String> rejections = new ArrayList<>();
+        private long elapsedNanos;
+        
+        public int getSales() {
+            return sales;
+        }
+        
+        public int getPurchases() {
+            return purchases;
+        }
+        
+        public int getRejected() {
+            return rejected;
+        }
+        
+        /**
+         * Get a description of the first rejected lines
+         * @return up to MAX_REPORTED_REJECTIONS messages of the form "line N: reason"
+         */
+        public List<String> getRejections() {
+            return rejections;
+        }
+        
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+        
+        /**
+         * Get the number of lines processed per second
+         * @return processed lines (accepted and rejected) per second
+         */
+        public double getLinesPerSecond() {
+            return elapsedNanos == 0 ? 0 : (sales + purchases + rejected) * 1e9 / elapsedNanos;
+        }
+        
+        private void reject(int lineNumber, String reason) {
+            rejected++;
+            if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+                rejections.add("line " + lineNumber + ": " + reason);
+            }
+        }
+    }
+    
+    /**
+     * Constructor to create an importer
+     * @param salesEngine Engine applying each line
+     * @param checkpoint Callback persisting the store (called every checkpointInterval accepted lines and at the end)
+     * @param checkpointInterval Accepted lines between checkpoints (0 to persist only at the end)
+     */
+    public BatchImporter(SalesEngine salesEngine, Runnable checkpoint, int checkpointInterval) {
+        this.salesEngine = salesEngine;
+        this.checkpoint = checkpoint;
+        this.checkpointInterval = checkpointInterval;
+    }
+    
+    /**
+     * Stream and apply every line of a CSV source
+     * @param reader CSV source
+     * @return counts, rejected lines and timing
+     * @throws IOException if the source cannot be read
+     */
+    public ImportReport importCsv(Reader reader) throws IOException {
+        ImportReport report = new ImportReport();
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        long start = System.nanoTime();
+        int lineNumber = 0;
+        int sinceCheckpoint = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (lineNumber == 1 && line.toLowerCase().startsWith("type")) {
+                continue; // header
+            }
+            
+            String[] fields = line.split(",");
+            if (fields.length != 3) {
+                report.reject(lineNumber, "expected TYPE,productId,quantity");
+                continue;
+            }
+            
+            int productId;
+            int quantity;
+            try {
+                productId = Integer.parseInt(fields[1].trim());
+                quantity = Integer.parseInt(fields[2].trim());
+            } catch (NumberFormatException e) {
+                report.reject(lineNumber, "invalid number");
+                continue;
+            }
+            
+            String type = fields[0].trim().toUpperCase();
+            TransactionResult result;
+            if (type.equals("SALE")) {
+                result = salesEngine.sell(productId, quantity);
+            } else if (type.equals("PURCHASE")) {
+                result = salesEngine.purchase(productId, quantity);
+            } else {
+                report.reject(lineNumber, "unknown type " + fields[0].trim());
+                continue;
+            }
+            
+            if (!result.isSuccess()) {
+                String reason = result.getStatus().toString();
+                if (result.getStatus() == TransactionResult.Status.INSUFFICIENT_STOCK) {
+                    reason += " (available " + result.getStockAfter() + ", requested " + quantity + ")";
+                }
+                report.reject(lineNumber, reason);
+                continue;
+            }
+            
+            if (type.equals("SALE")) {
+                report.sales++;
+            } else {
+                report.purchases++;
+            }
+            if (checkpointInterval > 0 && ++sinceCheckpoint >= checkpointInterval) {
+                checkpoint.run();
+                sinceCheckpoint = 0;
+            }
+        }
+        checkpoint.run();
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+}
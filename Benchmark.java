@@ -0,0 +1,930 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark class with simple timing harnesses for the store's hot paths
+ * Run with: java Benchmark [scenario ...] [--products N,...] [--history N,...]
+ * (no scenario runs every scenario; the size options apply to the core scenario,
+ * --products also to the products scenario and --history also to the reports scenario)
+ *
+ * This is a hand-written harness, not JMH (JMH cannot generate benchmarks for classes in the
+ * default package): each measurement is warmed up and reported as the best and mean of a few
+ * rounds, and each scenario runs in a JVM of its own, but there is no per-invocation isolation
+ * and no error estimate. Figures are only comparable between runs on the same machine and JVM.
+ */
+public class Benchmark {
+    private static final String[] SCENARIOS = {"core", "store", "http", "products", "reports", "lookup", "codec", "stress"};
+    private static final String IN_PROCESS = "--in-process"; // set on the JVM forked for one scenario
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int HTTP_WARMUP_REQUESTS = 200; // per terminal, not recorded
+    private static final int[] DEFAULT_PRODUCT_COUNTS = {1_000, 100_000};
+    private static final int[] DEFAULT_HISTORY_SIZES = {100_000, 1_000_000};
+    private static final int[] DEFAULT_CATALOG_SIZES = {1_000_000};
+    private static final int[] DEFAULT_REPORT_HISTORY_SIZES = {10_000_000};
+    private static volatile long blackhole; // every task's result is written here so the JIT cannot drop the work
+    
+    public static void main(String[] args) {
+        List<String> scenarios = new ArrayList<>();
+        for (String scenario : SCENARIOS) {
+            if (contains(args, scenario)) {
+                scenarios.add(scenario);
+            }
+        }
+        if (scenarios.isEmpty()) {
+            scenarios.addAll(Arrays.asList(SCENARIOS));
+        }
+        if (contains(args, IN_PROCESS)) {
+            runScenario(scenarios.get(0), args);
+            return;
+        }
+        
+        printLimitations();
+        if (scenarios.size() == 1) {
+            runScenario(scenarios.get(0), args);
+            return;
+        }
+        // One JVM per scenario, so the JIT profile, heap and threads left by one do not skew the next
+        boolean passed = true;
+        for (String scenario : scenarios) {
+            passed &= runForked(scenario, args);
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Print how the figures are measured and what they can be compared with
+     */
+    private static void printLimitations() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("Hand-written timing harness (not JMH): best and mean of " + MEASURED_ROUNDS + " rounds after "
+                           + WARMUP_ROUNDS + " warmup rounds, one JVM per scenario, no error estimate.");
+        System.out.println("Java " + System.getProperty("java.version") + " on " + cores + " core(s); compare only with runs"
+                           + " on the same machine and JVM.");
+        if (cores < 4) {
+            System.out.println("Few cores: the threaded scenarios (http, reports, stress) share them with the load"
+                               + " they generate, so their figures vary widely between runs.");
+        }
+    }
+    
+    /**
+     * Run one scenario in a new JVM with the same class path, JVM options and size options
+     * @return true if the scenario completed successfully
+     */
+    private static boolean runForked(String scenario, String[] args) {
+        List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("Benchmark");
+        command.add(scenario);
+        for (String arg : args) {
+            if (!Arrays.asList(SCENARIOS).contains(arg.toLowerCase())) {
+                command.add(arg); // size options and their values
+            }
+        }
+        command.add(IN_PROCESS);
+        try {
+            Process process = new ProcessBuilder(command).inheritIO().start();
+            return process.waitFor() == 0;
+        } catch (IOException e) {
+            System.out.println("Error starting the " + scenario + " scenario: " + e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    /**
+     * Run one scenario in this JVM
+     * @param scenario Scenario name
+     * @param args Command line (for the size options)
+     */
+    private static void runScenario(String scenario, String[] args) {
+        switch (scenario) {
+            case "core":
+                for (int productCount : sizes(args, "--products", DEFAULT_PRODUCT_COUNTS)) {
+                    for (int historySize : sizes(args, "--history", DEFAULT_HISTORY_SIZES)) {
+                        benchmarkCore(productCount, historySize);
+                    }
+                }
+                break;
+            case "store":
+                benchmarkStore(1_000, 100_000);
+                break;
+            case "http":
+                benchmarkHttp(16, 2_000, 200);
+                break;
+            case "products":
+                for (int productCount : sizes(args, "--products", DEFAULT_CATALOG_SIZES)) {
+                    benchmarkProducts(productCount, false);
+                    benchmarkProducts(productCount, true);
+                }
+                break;
+            case "reports":
+                for (int historySize : sizes(args, "--history", DEFAULT_REPORT_HISTORY_SIZES)) {
+                    benchmarkReports(historySize, 10_000);
+                }
+                break;
+            case "lookup":
+                benchmarkLookup(100_000, 1_000_000);
+                break;
+            case "codec":
+                benchmarkCodec(1_000_000);
+                break;
+            default:
+                stressConcurrentSales(32, 200, 50_000, false);
+                stressConcurrentSales(32, 200, 50_000, true);
+        }
+    }
+    
+    /**
+     * Time the catalog operations of a large catalog and measure the heap it retains,
+     * for one Product object per product or for the packed ProductTable
+     * @param productCount Number of products in the catalog
+     * @param packed true for PackedProductCatalog, false for HeapProductCatalog
+     */
+    private static void benchmarkProducts(int productCount, boolean packed) {
+        String kind = packed ? "packed" : "heap";
+        System.out.println("== Product catalog (" + kind + "): " + productCount + " products ==");
+        Product.resetNextId();
+        long before = usedMemory();
+        long start = System.nanoTime();
+        ProductCatalog catalog = packed ? new PackedProductCatalog() : new HeapProductCatalog();
+        Random random = new Random(42);
+        for (int i = 0; i < productCount; i++) {
+            catalog.add(new Product("Product " + i, 100 + random.nextInt(900), 1_500, random.nextInt(200), 20));
+        }
+        long buildNanos = System.nanoTime() - start;
+        long retained = usedMemory() - before;
+        System.out.printf("%-40s %10.3f ms | %8.1f MB retained | %5.0f bytes/product%n", "build catalog",
+                          buildNanos / 1e6, retained / 1e6, retained / (double) productCount);
+        
+        int lookups = 1_000_000;
+        int[] ids = new int[lookups];
+        for (int i = 0; i < lookups; i++) {
+            ids[i] = 1 + random.nextInt(productCount);
+        }
+        report("findById", lookups, () -> {
+            long sink = 0;
+            for (int id : ids) {
+                sink += catalog.findById(id).getStockQuantity();
+            }
+            return sink;
+        });
+        report("stock value pass (all products)", productCount, () -> {
+            long value = 0;
+            for (Product product : catalog.getProducts()) {
+                value += product.getPurchasePriceCents() * product.getStockQuantity();
+            }
+            return value;
+        });
+        report("low-stock products", productCount, () -> catalog.getLowStockProducts().size());
+        report("inventory by name", productCount, () -> catalog.getProductsByName().size());
+        report("sell and restock", lookups, () -> {
+            long sink = 0;
+            for (int id : ids) {
+                Product product = catalog.findById(id);
+                if (product.decreaseStock(1)) {
+                    product.increaseStock(1);
+                    sink++;
+                }
+            }
+            return sink;
+        });
+        if (catalog.size() != productCount) {
+            System.out.println("catalog lost products: " + catalog.size());
+        }
+    }
+    
+    /**
+     * Get the heap in use after a garbage collection
+     */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    /**
+     * Time the history report (counts, revenue, profit and top products) read with one cursor
+     * and with the fork/join ReportEngine on 1, 2, 4, ... worker threads up to the number of cores,
+     * checking that every parallel result equals the sequential one
+     * @param historySize Number of transactions in the history
+     * @param productCount Number of products the transactions are spread over
+     */
+    private static void benchmarkReports(int historySize, int productCount) {
+        System.out.println("== History reports: " + historySize + " transactions, " + productCount + " products, "
+                           + Runtime.getRuntime().availableProcessors() + " cores ==");
+        File directory = createTempDirectory();
+        Product.resetNextId();
+        ProductCatalog catalog = new HeapProductCatalog();
+        try {
+            writeSampleHistory(directory, historySize, productCount, new RecordCodec());
+        } catch (IOException e) {
+            System.out.println("Error writing transactions to file: " + e.getMessage());
+            deleteRecursively(directory);
+            return;
+        }
+        TransactionLog log = new TransactionLog(directory, TransactionJournal.SyncPolicy.NONE, 0, Integer.MAX_VALUE, false, catalog);
+        log.load();
+        ReportEngine engine = new ReportEngine(log);
+        
+        ReportEngine.Report[] sequential = new ReportEngine.Report[1];
+        double sequentialNanos = report("sequential (one cursor)", historySize, () -> {
+            sequential[0] = engine.computeSequential();
+            return sequential[0].getSaleCount();
+        });
+        List<ProductTotals> expectedTop = sequential[0].getTopProducts(ProductRanking.PROFIT, 20);
+        for (int threads = 1; ; threads = Math.min(threads * 2, Runtime.getRuntime().availableProcessors())) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ReportEngine.Report[] parallel = new ReportEngine.Report[1];
+            double parallelNanos = report("fork/join, " + threads + " thread(s)", historySize, () -> {
+                parallel[0] = engine.compute(pool);
+                return parallel[0].getSaleCount();
+            });
+            pool.shutdown();
+            boolean identical = parallel[0].sameAs(sequential[0])
+                                && sameRanking(parallel[0].getTopProducts(ProductRanking.PROFIT, 20), expectedTop);
+            System.out.printf("%-40s %.2fx the sequential speed, result %s%n", "", sequentialNanos / parallelNanos,
+                              identical ? "identical" : "DIFFERENT");
+            if (threads >= Runtime.getRuntime().availableProcessors()) {
+                break;
+            }
+        }
+        log.close();
+        deleteRecursively(directory);
+    }
+    
+    private static boolean sameRanking(List<ProductTotals> a, List<ProductTotals> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i).getProductId() != b.get(i).getProductId() || a.get(i).getProfitCents() != b.get(i).getProfitCents()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Compare the linear product scan with the catalog's ID index,
+     * both for single lookups and for a profit report pass over sales
+     * @param productCount Number of products in the catalog
+     * @param saleCount Number of sale transactions in the report
+     */
+    private static void benchmarkLookup(int productCount, int saleCount) {
+        System.out.println("== Product lookup: " + productCount + " products, " + saleCount + " sales ==");
+        Product.resetNextId();
+        ArrayList<Product> list = new ArrayList<>();
+        ProductCatalog catalog = new HeapProductCatalog();
+        for (int i = 0; i < productCount; i++) {
+            Product product = new Product("Product " + i, 100, 150, 100, 10);
+            list.add(product);
+            catalog.add(product);
+        }
+        
+        Random random = new Random(42);
+        int[] saleProductIds = new int[saleCount];
+        for (int i = 0; i < saleCount; i++) {
+            saleProductIds[i] = 1 + random.nextInt(productCount);
+        }
+        
+        int linearLookups = 2_000;
+        double linearNanos = report("linear findProductById", linearLookups, () -> {
+            long sink = 0;
+            for (int i = 0; i < linearLookups; i++) {
+                sink += linearFind(list, saleProductIds[i]).getId();
+            }
+            return sink;
+        });
+        report("indexed findProductById", saleCount, () -> {
+            long sink = 0;
+            for (int id : saleProductIds) {
+                sink += catalog.findById(id).getId();
+            }
+            return sink;
+        });
+        report("profit report (indexed)", saleCount, () -> {
+            long profitCents = 0;
+            for (int id : saleProductIds) {
+                Product product = catalog.findById(id);
+                profitCents += product.getSellingPriceCents() - product.getPurchasePriceCents();
+            }
+            return profitCents;
+        });
+        System.out.printf("%-40s %10.3f ms (extrapolated from linear lookups)%n",
+                          "profit report (linear)", linearNanos * saleCount / 1e6);
+    }
+    
+    /**
+     * Compare Java serialization with the RecordCodec format for a transaction history
+     * @param transactionCount Number of transactions to write and read
+     */
+    private static void benchmarkCodec(int transactionCount) {
+        System.out.println("== Transaction serialization: " + transactionCount + " transactions ==");
+        List<Transaction> history = sampleHistory(transactionCount, 1_000);
+
+        byte[][] javaBytes = new byte[1][];
+        report("Java serialization: write", transactionCount, () -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                oos.writeInt(history.size());
+                for (Transaction transaction : history) {
+                    oos.writeObject(transaction);
+                }
+            }
+            javaBytes[0] = bytes.toByteArray();
+            return javaBytes[0].length;
+        });
+        report("Java serialization: read", transactionCount, () -> {
+            long sink = 0;
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(javaBytes[0]))) {
+                int count = ois.readInt();
+                for (int i = 0; i < count; i++) {
+                    sink += ((Transaction) ois.readObject()).getQuantity();
+                }
+            }
+            return sink;
+        });
+
+        byte[][] codecBytes = new byte[1][];
+        RecordCodec codec = new RecordCodec();
+        report("RecordCodec: write", transactionCount, () -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(bytes))) {
+                RecordCodec.writeHeader(out, RecordCodec.TRANSACTIONS_MAGIC);
+                out.writeInt(history.size());
+                for (Transaction transaction : history) {
+                    codec.writeTransaction(out, transaction);
+                }
+            }
+            codecBytes[0] = bytes.toByteArray();
+            return codecBytes[0].length;
+        });
+        report("RecordCodec: read", transactionCount, () -> {
+            long sink = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new ByteArrayInputStream(codecBytes[0])))) {
+                RecordCodec.readHeader(in, RecordCodec.TRANSACTIONS_MAGIC);
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    sink += codec.readTransaction(in).getQuantity();
+                }
+            }
+            return sink;
+        });
+
+        System.out.printf("%-40s %,d bytes (%.1f bytes/transaction)%n", "Java serialization: size",
+                          javaBytes[0].length, javaBytes[0].length / (double) transactionCount);
+        System.out.printf("%-40s %,d bytes (%.1f bytes/transaction)%n", "RecordCodec: size",
+                          codecBytes[0].length, codecBytes[0].length / (double) transactionCount);
+    }
+
+    /**
+     * Time the store's core operations against a catalog and history of the given sizes:
+     * product lookup, recording a sale, saving products and transactions, loading the data files,
+     * the profit report and the inventory listing sorted by name
+     * @param productCount Number of products in the catalog
+     * @param historySize Number of transactions in the history
+     */
+    private static void benchmarkCore(int productCount, int historySize) {
+        System.out.println("== Core operations: " + productCount + " products, " + historySize + " transactions ==");
+        File directory = createTempDirectory();
+        ProductCatalog catalog = sampleCatalog(productCount);
+        RecordCodec codec = new RecordCodec();
+        SnapshotFile productsSnapshot = new SnapshotFile(new File(directory, "products.bin"), RecordCodec.PRODUCTS_MAGIC);
+        try {
+            writeTransactionsFile(directory, sampleHistory(historySize, productCount), codec);
+        } catch (IOException e) {
+            System.out.println("Error writing sample transactions: " + e.getMessage());
+            deleteRecursively(directory);
+            return;
+        }
+        
+        Random random = new Random(42);
+        int lookups = 1_000_000;
+        int[] productIds = new int[lookups];
+        for (int i = 0; i < lookups; i++) {
+            productIds[i] = 1 + random.nextInt(productCount);
+        }
+        report("findProductById", lookups, () -> {
+            long sink = 0;
+            for (int id : productIds) {
+                sink += catalog.findById(id).getId();
+            }
+            return sink;
+        });
+        
+        TransactionLog log = new TransactionLog(directory, TransactionJournal.SyncPolicy.NONE, 0, Integer.MAX_VALUE, false, catalog);
+        log.load();
+        SalesEngine engine = new SalesEngine(catalog, log);
+        int sales = 10_000;
+        report("recordSale (journal, no fsync)", sales, () -> {
+            long sink = 0;
+            for (int i = 0; i < sales; i++) {
+                TransactionResult result = engine.sell(productIds[i], 1);
+                sink += result.getStockAfter();
+            }
+            return sink;
+        });
+        report("saveProducts", productCount, () -> {
+            int[] lastTransactionId = new int[1];
+            List<Product> products = engine.withStockSettled(() -> {
+                lastTransactionId[0] = log.getLastTransactionId();
+                return catalog.getProducts();
+            });
+            productsSnapshot.write(out -> {
+                out.writeInt(RecordCodec.PRODUCTS_FORMAT_LAST_TRANSACTION);
+                out.writeInt(products.size());
+                out.writeInt(Product.getNextId());
+                out.writeInt(lastTransactionId[0]);
+                for (Product product : products) {
+                    codec.writeProduct(out, product);
+                }
+            });
+            return products.size();
+        });
+        log.flush();
+        report("saveTransactions (snapshot rewrite)", log.size(), () -> {
+            log.saveSnapshot();
+            return log.size();
+        });
+        log.close();
+        
+        report("loadData (summaries saved)", historySize, () -> loadData(directory, productsSnapshot, codec, false));
+        report("loadData (summaries rebuilt)", historySize, () -> loadData(directory, productsSnapshot, codec, true));
+        
+        TransactionLog reportLog = new TransactionLog(directory, TransactionJournal.SyncPolicy.NONE, 0, Integer.MAX_VALUE, false, catalog);
+        reportLog.load();
+        SalesAggregate totals = reportLog.getSalesAggregate();
+        report("profit report (running totals)", 1, () -> totals.getSaleCount() + totals.getTotalRevenueCents()
+                                                           + totals.getTotalProfitCents());
+        report("profit report (history scan)", reportLog.size(), () -> {
+            long profitCents = 0;
+            try (TransactionCursor cursor = reportLog.openCursor()) {
+                while (cursor.hasNext()) {
+                    profitCents += cursor.next().getProfitCents();
+                }
+            }
+            return profitCents;
+        });
+        report("top 20 by profit (leaderboard)", 1, () ->
+            reportLog.getSalesLeaderboard().getTop(ProductRanking.PROFIT, 20).size());
+        ReportEngine reportEngine = new ReportEngine(reportLog);
+        report("top 20 by profit (history scan)", reportLog.size(), () ->
+            reportEngine.computeSequential().getTopProducts(ProductRanking.PROFIT, 20).size());
+        reportLog.close();
+        
+        report("inventory by name (name index)", productCount, () -> catalog.getProductsByName().size());
+        report("inventory by name (sorting a copy)", productCount, () -> {
+            List<Product> sorted = new ArrayList<>(catalog.getProducts());
+            sorted.sort(Comparator.comparing(Product::getName, String.CASE_INSENSITIVE_ORDER));
+            return sorted.size();
+        });
+        deleteRecursively(directory);
+    }
+    
+    /**
+     * Drive the headless Store API the way a front end would, with no console I/O
+     * Changes are saved by the store's background persistence, as in the application
+     * @param productCount Number of products added through the store
+     * @param operations Operations per measured round
+     */
+    private static void benchmarkStore(int productCount, int operations) {
+        System.out.println("== Headless store: " + productCount + " products, " + operations + " operations per round ==");
+        File directory = createTempDirectory();
+        Product.resetNextId();
+        Transaction.setNextTransactionId(1);
+        Store store = new Store(directory, TransactionJournal.SyncPolicy.NONE, 0, 10_000, false, 200, 64);
+        for (int i = 0; i < productCount; i++) {
+            Product product = store.addProduct("Product " + i, 125, 249, 10);
+            store.purchase(product.getId(), 1_000_000);
+        }
+        
+        Random random = new Random(42);
+        int[] productIds = new int[operations];
+        for (int i = 0; i < operations; i++) {
+            productIds[i] = 1 + random.nextInt(productCount);
+        }
+        report("Store.findProduct", operations, () -> {
+            long sink = 0;
+            for (int id : productIds) {
+                sink += store.findProduct(id).getStockQuantity();
+            }
+            return sink;
+        });
+        report("Store.sale", operations, () -> {
+            long sink = 0;
+            for (int id : productIds) {
+                sink += store.sale(id, 1).getStockAfter();
+            }
+            return sink;
+        });
+        report("Store.purchase", operations, () -> {
+            long sink = 0;
+            for (int id : productIds) {
+                sink += store.purchase(id, 1).getStockAfter();
+            }
+            return sink;
+        });
+        report("Store.getProfitReport", operations, () -> {
+            long sink = 0;
+            for (int i = 0; i < operations; i++) {
+                sink += store.getProfitReport().getProfitCents();
+            }
+            return sink;
+        });
+        store.close();
+        deleteRecursively(directory);
+    }
+    
+    /**
+     * Load-test the HTTP server: POS terminals send product lookups and sales (four lookups per sale)
+     * back to back, and the latency of every request after a warmup is recorded
+     * @param terminals Number of concurrent clients
+     * @param requestsPerTerminal Requests sent by each client
+     * @param productCount Number of products in the store
+     */
+    private static void benchmarkHttp(int terminals, int requestsPerTerminal, int productCount) {
+        System.out.println("== HTTP server: " + terminals + " terminals, " + requestsPerTerminal + " requests each ==");
+        if (System.getProperty(StoreServer.NODELAY_PROPERTY) == null) {
+            System.setProperty(StoreServer.NODELAY_PROPERTY, "true"); // as Main --serve does
+        }
+        File directory = createTempDirectory();
+        Product.resetNextId();
+        Transaction.setNextTransactionId(1);
+        Store store = new Store(directory, TransactionJournal.SyncPolicy.GROUP_COMMIT, 5, 10_000, false, 200, 64);
+        for (int i = 0; i < productCount; i++) {
+            Product product = store.addProduct("Product " + i, 125, 249, 10);
+            store.purchase(product.getId(), 1_000_000);
+        }
+        StoreServer server;
+        try {
+            server = new StoreServer(store, 0);
+        } catch (IOException e) {
+            System.out.println("Error starting server: " + e.getMessage());
+            store.close();
+            deleteRecursively(directory);
+            return;
+        }
+        server.start();
+        String base = "http://localhost:" + server.getPort();
+        
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        long[] latencies = new long[terminals * requestsPerTerminal];
+        AtomicLong failures = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] clients = new Thread[terminals];
+        for (int t = 0; t < terminals; t++) {
+            int first = t * requestsPerTerminal;
+            clients[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = -HTTP_WARMUP_REQUESTS; i < requestsPerTerminal; i++) {
+                    int productId = 1 + random.nextInt(productCount);
+                    HttpRequest request = Math.floorMod(i, 5) == 4
+                        ? HttpRequest.newBuilder(URI.create(base + "/sales?productId=" + productId + "&quantity=1"))
+                                     .POST(HttpRequest.BodyPublishers.noBody()).build()
+                        : HttpRequest.newBuilder(URI.create(base + "/products/" + productId)).GET().build();
+                    long begin = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() >= 300) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (i >= 0) {
+                        latencies[first + i] = System.nanoTime() - begin;
+                    }
+                }
+            });
+            clients[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread terminal : clients) {
+            try {
+                terminal.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        server.stop();
+        store.close();
+        deleteRecursively(directory);
+        
+        Arrays.sort(latencies);
+        long sent = (long) terminals * (HTTP_WARMUP_REQUESTS + requestsPerTerminal);
+        System.out.printf("%,d requests in %.2f s (%.0f requests/s), %d failed%n",
+                          sent, seconds, sent / seconds, failures.get());
+        System.out.printf("latency p50 %.3f ms | p99 %.3f ms | p99.9 %.3f ms | max %.3f ms%n",
+                          percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6,
+                          percentile(latencies, 0.999) / 1e6, latencies[latencies.length - 1] / 1e6);
+    }
+    
+    /**
+     * Get a percentile of sorted values
+     * @param sorted Values in ascending order
+     * @param fraction Percentile as a fraction, e.g. 0.99
+     * @return the value at that percentile
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+    
+    /**
+     * Load the products file and the transaction log from a directory, as the store does at startup
+     * @param rebuildSummaries true to delete the saved sales totals so they are rebuilt from the history
+     * @return number of transactions loaded
+     */
+    private static long loadData(File directory, SnapshotFile productsSnapshot, RecordCodec codec,
+                                 boolean rebuildSummaries) throws IOException {
+        if (rebuildSummaries) {
+            new File(directory, "sales_summary.bin").delete();
+            new File(directory, "sales_rollup.bin").delete();
+        }
+        ProductCatalog catalog = new HeapProductCatalog();
+        try (DataInputStream in = productsSnapshot.open()) {
+            in.readInt(); // format marker
+            int productCount = in.readInt();
+            in.readInt(); // next ID
+            in.readInt(); // newest transaction included in the stock levels
+            for (int i = 0; i < productCount; i++) {
+                catalog.add(codec.readProduct(in, true));
+            }
+        }
+        TransactionLog log = new TransactionLog(directory, TransactionJournal.SyncPolicy.NONE, 0, Integer.MAX_VALUE, false, catalog);
+        log.load();
+        int size = log.size();
+        log.close();
+        return size;
+    }
+    
+    /**
+     * Build a catalog of products with shuffled names and plenty of stock
+     * @param productCount Number of products
+     * @return catalog with IDs 1 to productCount
+     */
+    private static ProductCatalog sampleCatalog(int productCount) {
+        Product.resetNextId();
+        Random random = new Random(11);
+        ProductCatalog catalog = new HeapProductCatalog();
+        for (int i = 0; i < productCount; i++) {
+            catalog.add(new Product("Product " + random.nextInt(productCount), 125, 249, 1_000_000, 10));
+        }
+        return catalog;
+    }
+    
+    /**
+     * Write a transactions snapshot in the current format, as TransactionLog.saveSnapshot() does
+     * @param directory Data directory
+     * @param history Transactions to write, in ID order
+     */
+    private static void writeTransactionsFile(File directory, List<Transaction> history, RecordCodec codec) throws IOException {
+        SnapshotFile snapshot = new SnapshotFile(new File(directory, "transactions.bin"), RecordCodec.TRANSACTIONS_MAGIC);
+        int lastId = history.isEmpty() ? 0 : history.get(history.size() - 1).getTransactionId();
+        snapshot.write(out -> {
+            out.writeInt(RecordCodec.TRANSACTIONS_FORMAT_CENTS);
+            out.writeInt(history.size());
+            out.writeInt(lastId + 1);
+            out.writeInt(lastId);
+            for (Transaction transaction : history) {
+                codec.writeTransaction(out, transaction);
+            }
+        });
+    }
+
+    /**
+     * Time many checkout lanes selling from one SalesEngine under heavy contention
+     * (overselling, duplicate IDs and the low-stock index are checked by SalesEngineConcurrencyTest)
+     * @param threads Number of concurrent checkout lanes
+     * @param productCount Number of products (few products means heavy contention)
+     * @param salesPerThread Sale attempts made by each lane
+     * @param packed true to hold the products in a PackedProductCatalog
+     */
+    private static void stressConcurrentSales(int threads, int productCount, int salesPerThread, boolean packed) {
+        System.out.println("== Concurrent sales: " + threads + " lanes, " + productCount + " products"
+                           + (packed ? " (packed catalog)" : "") + " ==");
+        File directory = createTempDirectory();
+        Product.resetNextId();
+        Transaction.setNextTransactionId(1);
+        ProductCatalog catalog = packed ? new PackedProductCatalog() : new HeapProductCatalog();
+        int initialStock = threads * salesPerThread / productCount; // roughly half the demand
+        for (int i = 0; i < productCount; i++) {
+            catalog.add(new Product("Product " + i, 100, 150, initialStock, 10));
+        }
+        TransactionLog log = new TransactionLog(directory, TransactionJournal.SyncPolicy.NONE, 0, Integer.MAX_VALUE, false, catalog);
+        log.load();
+        SalesEngine engine = new SalesEngine(catalog, log);
+
+        AtomicLong rejected = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] lanes = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            lanes[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < salesPerThread; i++) {
+                    if (!engine.sell(1 + random.nextInt(productCount), 1 + random.nextInt(3)).isSuccess()) {
+                        rejected.incrementAndGet();
+                    }
+                }
+            });
+            lanes[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread lane : lanes) {
+            try {
+                lane.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        log.close();
+        deleteRecursively(directory);
+
+        System.out.printf("%d sales, %d rejected in %.2f s (%.0f attempts/s)%n", log.size(), rejected.get(),
+                          seconds, threads * (double) salesPerThread / seconds);
+    }
+
+    static File createTempDirectory() {
+        try {
+            return java.nio.file.Files.createTempDirectory("minimart-bench").toFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Build a synthetic history of alternating purchases and sales
+     * @param transactionCount Number of transactions
+     * @param productCount Number of distinct products referenced
+     * @return transactions with sequential IDs
+     */
+    static List<Transaction> sampleHistory(int transactionCount, int productCount) {
+        Random random = new Random(7);
+        List<Transaction> history = new ArrayList<>(transactionCount);
+        long start = System.currentTimeMillis() - transactionCount * 1_000L; // one transaction a second
+        for (int i = 1; i <= transactionCount; i++) {
+            history.add(sampleTransaction(random, i, productCount, start));
+        }
+        return history;
+    }
+    
+    /**
+     * Write a sample history straight to the transactions file, for histories too long to hold in memory
+     */
+    private static void writeSampleHistory(File directory, int transactionCount, int productCount,
+                                           RecordCodec codec) throws IOException {
+        SnapshotFile snapshot = new SnapshotFile(new File(directory, "transactions.bin"), RecordCodec.TRANSACTIONS_MAGIC);
+        Random random = new Random(7);
+        long start = System.currentTimeMillis() - transactionCount * 1_000L;
+        snapshot.write(out -> {
+            out.writeInt(RecordCodec.TRANSACTIONS_FORMAT_CENTS);
+            out.writeInt(transactionCount);
+            out.writeInt(transactionCount + 1);
+            out.writeInt(transactionCount);
+            for (int i = 1; i <= transactionCount; i++) {
+                codec.writeTransaction(out, sampleTransaction(random, i, productCount, start));
+            }
+        });
+    }
+    
+    /**
+     * Create the i-th transaction of a sample history: mostly sales, every fourth a purchase,
+     * one a second from start
+     */
+    private static Transaction sampleTransaction(Random random, int i, int productCount, long start) {
+        int productId = 1 + random.nextInt(productCount);
+        int quantity = 1 + random.nextInt(20);
+        Transaction.TransactionType type = i % 4 == 0 ? Transaction.TransactionType.PURCHASE
+                                                      : Transaction.TransactionType.SALE;
+        return new Transaction(i, type, productId, "Product " + productId, quantity,
+                               249, 125, quantity * 249L, start + i * 1_000L);
+    }
+
+    private static Product linearFind(ArrayList<Product> list, int id) {
+        for (Product product : list) {
+            if (product.getId() == id) {
+                return product;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Operation being timed; returns a value so the JIT cannot discard the work
+     */
+    interface Task {
+        long run() throws Exception;
+    }
+    
+    /**
+     * Run a task through warmup and measured rounds and print the best and mean round time
+     * @param name Label for the result line
+     * @param operations Number of operations performed by one round
+     * @param task Work to time
+     * @return best time per operation in nanoseconds (NaN if the task failed)
+     */
+    static double report(String name, long operations, Task task) {
+        try {
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                blackhole = task.run();
+            }
+            long best = Long.MAX_VALUE;
+            long total = 0;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                long start = System.nanoTime();
+                blackhole = task.run();
+                long elapsed = System.nanoTime() - start;
+                best = Math.min(best, elapsed);
+                total += elapsed;
+            }
+            double mean = total / (double) MEASURED_ROUNDS;
+            System.out.printf("%-40s best %10.3f ms | mean %10.3f ms | %8.1f ns/op%n",
+                              name, best / 1e6, mean / 1e6, best / (double) operations);
+            return best / (double) operations;
+        } catch (Exception e) {
+            System.out.println(name + " failed: " + e.getMessage());
+            return Double.NaN;
+        }
+    }
+    
+    /**
+     * Read a comma-separated list of sizes following an option, e.g. --history 10000,1000000
+     * @return the sizes given, or the defaults if the option is absent or invalid
+     */
+    private static int[] sizes(String[] args, String option, int[] defaults) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equalsIgnoreCase(option)) {
+                try {
+                    String[] values = args[i + 1].split(",");
+                    int[] sizes = new int[values.length];
+                    for (int j = 0; j < values.length; j++) {
+                        sizes[j] = Integer.parseInt(values[j].trim().replace("_", ""));
+                    }
+                    return sizes;
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid " + option + " value: " + args[i + 1]);
+                }
+            }
+        }
+        return defaults;
+    }
+    
+    private static boolean contains(String[] args, String name) {
+        for (String arg : args) {
+            if (arg.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
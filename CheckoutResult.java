@@ -0,0 +1,73 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * CheckoutResult class describing the outcome of a basket checkout
+ * A checkout either records a sale for every line or records nothing
+ */
+public class CheckoutResult {
+    private final TransactionResult.Status status;
+    private final List<Transaction> sales;
+    private final Basket.Line failedLine;
+    private final int availableStock;
+    
+    /**
+     * Constructor to create a result
+     * @param status OK, or the reason the first failing line was rejected
+     * @param sales Recorded sale transactions (empty unless status is OK)
+     * @param failedLine Line that was rejected (null if status is OK)
+     * @param availableStock Stock of the failed line's product when it was rejected
+     */
+    public CheckoutResult(TransactionResult.Status status, List<Transaction> sales,
+                          Basket.Line failedLine, int availableStock) {
+        this.status = status;
+        this.sales = Collections.unmodifiableList(sales);
+        this.failedLine = failedLine;
+        this.availableStock = availableStock;
+    }
+    
+    // Getter methods
+    public TransactionResult.Status getStatus() {
+        return status;
+    }
+    
+    public boolean isSuccess() {
+        return status == TransactionResult.Status.OK;
+    }
+    
+    public List<Transaction> getSales() {
+        return sales;
+    }
+    
+    public Basket.Line getFailedLine() {
+        return failedLine;
+    }
+    
+    public int getAvailableStock() {
+        return availableStock;
+    }
+    
+    /**
+     * Calculate the revenue of the whole basket
+     * @return sum of the sales' total amounts in cents
+     */
+    public long getTotalAmountCents() {
+        long total = 0;
+        for (Transaction sale : sales) {
+            total += sale.getTotalAmountCents();
+        }
+        return total;
+    }
+    
+    /**
+     * Calculate the profit of the whole basket
+     * @return sum of the sales' profits in cents
+     */
+    public long getTotalProfitCents() {
+        long profit = 0;
+        for (Transaction sale : sales) {
+            profit += sale.getProfitCents();
+        }
+        return profit;
+    }
+}
@@ -0,0 +1,258 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * ColumnarTransactionStore class keeping transactions in memory-mapped column files
+ * One file per field (transaction ID, type, product ID, quantity, unit price and unit cost in cents, time)
+ * lets reports scan any number of transactions off-heap without creating Transaction objects.
+ * Product names are not stored; they are resolved from the catalog when rows are displayed.
+ * Each column is mapped in fixed-size segments addressed by a long byte offset, so a column
+ * is not limited to the 2 GB a single mapping can cover.
+ */
+public class ColumnarTransactionStore {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int META_MAGIC = 0x4D4D434C; // "MMCL"
+    private static final int SEGMENT_SHIFT = 24; // 16 MB segments; every column width divides the segment size
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+    
+    private final File directory;
+    private final Column ids = new Column("ids.col", 4);
+    private final Column types = new Column("types.col", 1);
+    private final Column productIds = new Column("product_ids.col", 4);
+    private final Column quantities = new Column("quantities.col", 4);
+    private final Column unitPrices = new Column("unit_prices.col", 8);
+    private final Column unitCosts = new Column("unit_costs.col", 8);
+    // Created zero-filled for stores written before the time was recorded (zero is Transaction.UNKNOWN_TIME)
+    private final Column timestamps = new Column("timestamps.col", 8);
+    private final Column[] columns = {ids, types, productIds, quantities, unitPrices, unitCosts, timestamps};
+    private FileChannel metaChannel;
+    private MappedByteBuffer meta; // [magic][row count]
+    private volatile int size; // rows below size are fully written; readers may run concurrently with append
+    private long capacity; // rows the mapped segments can hold
+    
+    /**
+     * One memory-mapped column file holding fixed-width values
+     * Every segment but the last is SEGMENT_SIZE bytes; the last is remapped as the column grows
+     * until it reaches that size
+     */
+    private class Column {
+        final String fileName;
+        final int width;
+        FileChannel channel;
+        volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+        
+        Column(String fileName, int width) {
+            this.fileName = fileName;
+            this.width = width;
+        }
+        
+        void map(long rows) throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(new File(directory, fileName).toPath(), StandardOpenOption.CREATE,
+                                           StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            long bytes = rows * width;
+            int count = (int) ((bytes + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+            MappedByteBuffer[] grown = Arrays.copyOf(segments, Math.max(count, segments.length));
+            for (int i = 0; i < count; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                long length = Math.min(SEGMENT_SIZE, bytes - start);
+                if (grown[i] == null || grown[i].capacity() < length) {
+                    grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, length);
+                }
+            }
+            segments = grown; // readers see either the old or the new segments, both mapping the same file
+        }
+        
+        MappedByteBuffer segment(long offset) {
+            return segments[(int) (offset >>> SEGMENT_SHIFT)];
+        }
+        
+        int getInt(int row) {
+            long offset = (long) row * width;
+            return segment(offset).getInt((int) (offset & SEGMENT_MASK));
+        }
+        
+        long getLong(int row) {
+            long offset = (long) row * width;
+            return segment(offset).getLong((int) (offset & SEGMENT_MASK));
+        }
+        
+        byte get(int row) {
+            long offset = (long) row * width;
+            return segment(offset).get((int) (offset & SEGMENT_MASK));
+        }
+        
+        void putInt(int row, int value) {
+            long offset = (long) row * width;
+            segment(offset).putInt((int) (offset & SEGMENT_MASK), value);
+        }
+        
+        void putLong(int row, long value) {
+            long offset = (long) row * width;
+            segment(offset).putLong((int) (offset & SEGMENT_MASK), value);
+        }
+        
+        void put(int row, byte value) {
+            long offset = (long) row * width;
+            segment(offset).put((int) (offset & SEGMENT_MASK), value);
+        }
+        
+        void close() throws IOException {
+            if (channel != null) {
+                for (MappedByteBuffer segment : segments) {
+                    segment.force();
+                }
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+    
+    /**
+     * Constructor to create a store in the given directory
+     * @param directory Directory holding the column files (created if missing)
+     */
+    public ColumnarTransactionStore(File directory) {
+        this.directory = directory;
+    }
+    
+    /**
+     * Open (or create) the column files and map them into memory
+     * @throws IOException if the files cannot be opened or mapped
+     */
+    public void open() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        metaChannel = FileChannel.open(new File(directory, "columns.meta").toPath(), StandardOpenOption.CREATE,
+                                       StandardOpenOption.READ, StandardOpenOption.WRITE);
+        meta = metaChannel.map(FileChannel.MapMode.READ_WRITE, 0, 8);
+        size = meta.getInt(0) == META_MAGIC ? meta.getInt(4) : 0;
+        meta.putInt(0, META_MAGIC);
+        
+        capacity = INITIAL_CAPACITY;
+        while (capacity < size) {
+            capacity *= 2;
+        }
+        for (Column column : columns) {
+            column.map(capacity);
+        }
+    }
+    
+    /**
+     * Append a transaction as a new row
+     * @param transaction Transaction to store
+     * @throws IOException if the columns cannot be grown or already hold Integer.MAX_VALUE rows
+     */
+    public void append(Transaction transaction) throws IOException {
+        if (size == Integer.MAX_VALUE) {
+            throw new IOException("columnar store is full");
+        }
+        if (size == capacity) {
+            capacity *= 2;
+            for (Column column : columns) {
+                column.map(capacity);
+            }
+        }
+        int row = size;
+        ids.putInt(row, transaction.getTransactionId());
+        types.put(row, (byte) transaction.getType().ordinal());
+        productIds.putInt(row, transaction.getProductId());
+        quantities.putInt(row, transaction.getQuantity());
+        unitPrices.putLong(row, transaction.getUnitPriceCents());
+        unitCosts.putLong(row, transaction.getUnitCostCents());
+        timestamps.putLong(row, transaction.getTimestampMillis());
+        
+        // Publish the row only after all of its columns are written
+        size = row + 1;
+        meta.putInt(4, size);
+    }
+    
+    /**
+     * Discard all rows
+     */
+    public void clear() {
+        size = 0;
+        meta.putInt(4, 0);
+    }
+    
+    /**
+     * Get the number of stored rows
+     * @return number of transactions
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Get the ID of the newest stored transaction
+     * @return transaction ID or 0 if the store is empty
+     */
+    public int getLastTransactionId() {
+        return size == 0 ? 0 : getTransactionId(size - 1);
+    }
+    
+    // Row accessors
+    public int getTransactionId(int row) {
+        return ids.getInt(row);
+    }
+    
+    public Transaction.TransactionType getType(int row) {
+        return Transaction.TransactionType.values()[types.get(row)];
+    }
+    
+    public boolean isSale(int row) {
+        return types.get(row) == Transaction.TransactionType.SALE.ordinal();
+    }
+    
+    public int getProductId(int row) {
+        return productIds.getInt(row);
+    }
+    
+    public int getQuantity(int row) {
+        return quantities.getInt(row);
+    }
+    
+    public long getUnitPriceCents(int row) {
+        return unitPrices.getLong(row);
+    }
+    
+    public long getUnitCostCents(int row) {
+        return unitCosts.getLong(row);
+    }
+    
+    public long getTimestampMillis(int row) {
+        return timestamps.getLong(row);
+    }
+    
+    /**
+     * Get a row's total, computed from its quantity and unit price as when it was recorded
+     * @throws ArithmeticException if the total overflows a long (never for a recorded transaction)
+     */
+    public long getTotalCents(int row) {
+        return Money.times(getUnitPriceCents(row), getQuantity(row));
+    }
+    
+    /**
+     * Force all columns to disk and close the files
+     */
+    public void close() {
+        try {
+            for (Column column : columns) {
+                column.close();
+            }
+            if (metaChannel != null) {
+                meta.force();
+                metaChannel.close();
+                metaChannel = null;
+            }
+        } catch (IOException e) {
+            System.out.println("Error closing columnar transaction store: " + e.getMessage());
+        }
+    }
+}
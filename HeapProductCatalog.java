@@ -0,0 +1,343 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * HeapProductCatalog class holding the store's products in insertion order
+ * together with an ID index so that lookups by product ID are O(1)
+ * and a name index kept sorted as products are added, renamed and removed,
+ * so listings in name order and name prefix searches need no sorting.
+ * The products below their low-stock threshold are tracked as their stock crosses it,
+ * so low-stock alerts cost O(changes) rather than a scan of the catalog
+ * A read/write lock lets many checkout lanes look products up while the catalog is edited
+ */
+public class HeapProductCatalog implements ProductCatalog {
+    private final ArrayList<Product> products;
+    private final IntHashMap<Product> productsById;
+    // Lower-cased name -> products with that name in ID order (usually just one)
+    private final TreeMap<String, List<Product>> productsByName;
+    private final TreeMap<Integer, Product> lowStockProducts; // guarded by its own monitor
+    private final List<StockListener> stockListeners = new CopyOnWriteArrayList<>();
+    private final StockListener thresholdTracker = (product, lowStock) -> updateLowStock(product, true);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    /**
+     * Constructor to create an empty catalog
+     */
+    public HeapProductCatalog() {
+        this.products = new ArrayList<>();
+        this.productsById = new IntHashMap<>();
+        this.productsByName = new TreeMap<>();
+        this.lowStockProducts = new TreeMap<>();
+    }
+    
+    /**
+     * Add a product to the catalog
+     * @param product Product to add
+     * @return the same product
+     */
+    @Override
+    public Product add(Product product) {
+        Product previous;
+        lock.writeLock().lock();
+        try {
+            previous = productsById.put(product.getId(), product);
+            if (previous != null) {
+                products.remove(previous); // keep a single entry per ID
+                unindexName(previous);
+            }
+            products.add(product);
+            indexName(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (previous != null) {
+            untrackLowStock(previous);
+        }
+        product.setStockListener(thresholdTracker);
+        updateLowStock(product, false); // joining the catalog is not a crossing
+        return product;
+    }
+    
+    /**
+     * Find a product by ID
+     * @param id Product ID
+     * @return Product object or null if not found
+     */
+    @Override
+    public Product findById(int id) {
+        lock.readLock().lock();
+        try {
+            return productsById.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Remove a product from the catalog
+     * @param id Product ID
+     * @return removed Product or null if not found
+     */
+    @Override
+    public Product remove(int id) {
+        Product removed;
+        lock.writeLock().lock();
+        try {
+            removed = productsById.remove(id);
+            if (removed != null) {
+                products.remove(removed);
+                unindexName(removed);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (removed != null) {
+            untrackLowStock(removed);
+        }
+        return removed;
+    }
+    
+    /**
+     * Rename a product, keeping the name index in order
+     * @param product Product in the catalog
+     * @param name New name
+     */
+    @Override
+    public void rename(Product product, String name) {
+        lock.writeLock().lock();
+        try {
+            boolean indexed = productsById.get(product.getId()) == product;
+            if (indexed) {
+                unindexName(product);
+            }
+            product.setName(name);
+            if (indexed) {
+                indexName(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Get all products sorted by name (ignoring case)
+     * @return read-only copy of the products in name order
+     */
+    @Override
+    public List<Product> getProductsByName() {
+        lock.readLock().lock();
+        try {
+            ArrayList<Product> sorted = new ArrayList<>(products.size());
+            for (List<Product> sameName : productsByName.values()) {
+                sorted.addAll(sameName);
+            }
+            return Collections.unmodifiableList(sorted);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Find the products whose name starts with the given text (ignoring case)
+     * @param prefix Start of the name
+     * @return matching products in name order
+     */
+    @Override
+    public List<Product> findByNamePrefix(String prefix) {
+        String key = nameKey(prefix);
+        lock.readLock().lock();
+        try {
+            ArrayList<Product> matches = new ArrayList<>();
+            addPrefixMatches(key, matches);
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Find the products whose name contains the given text anywhere (ignoring case)
+     * Prefix matches come first, followed by the other matches, each in name order
+     * @param text Part of the name
+     * @return matching products
+     */
+    @Override
+    public List<Product> findByName(String text) {
+        String key = nameKey(text);
+        lock.readLock().lock();
+        try {
+            ArrayList<Product> matches = new ArrayList<>();
+            addPrefixMatches(key, matches);
+            for (Map.Entry<String, List<Product>> entry : productsByName.entrySet()) {
+                if (!entry.getKey().startsWith(key) && entry.getKey().contains(key)) {
+                    matches.addAll(entry.getValue());
+                }
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Get the products currently below their low-stock threshold
+     * @return copy of the low-stock products in ID order
+     */
+    @Override
+    public List<Product> getLowStockProducts() {
+        synchronized (lowStockProducts) {
+            return new ArrayList<>(lowStockProducts.values());
+        }
+    }
+    
+    /**
+     * Register a listener told each time a product in the catalog falls below its
+     * low-stock threshold or is restocked above it (e.g. to trigger a reorder)
+     * Listeners are called on the thread that changed the stock, after the low-stock set was updated
+     * @param listener Listener to add
+     */
+    @Override
+    public void addStockListener(StockListener listener) {
+        stockListeners.add(listener);
+    }
+    
+    /**
+     * Unregister a stock listener
+     * @param listener Listener to remove
+     */
+    @Override
+    public void removeStockListener(StockListener listener) {
+        stockListeners.remove(listener);
+    }
+    
+    /**
+     * Get the number of products in the catalog
+     * @return number of products
+     */
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return products.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Check whether the catalog is empty
+     * @return true if there are no products
+     */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    /**
+     * Get all products in insertion order
+     * @return read-only copy of the products
+     */
+    @Override
+    public List<Product> getProducts() {
+        lock.readLock().lock();
+        try {
+            return Collections.unmodifiableList(new ArrayList<>(products));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public Iterator<Product> iterator() {
+        return getProducts().iterator();
+    }
+    
+    /**
+     * Bring a product's low-stock membership in line with its current stock and threshold,
+     * optionally notifying the listeners if it changed
+     * The state is re-read under the set's monitor, so racing crossings settle on the latest values
+     * (the monitor is only ever taken without the catalog's write lock held)
+     */
+    private void updateLowStock(Product product, boolean notify) {
+        boolean lowStock;
+        boolean changed;
+        synchronized (lowStockProducts) {
+            if (findById(product.getId()) != product) {
+                return; // removed from the catalog meanwhile
+            }
+            lowStock = product.isLowStock();
+            if (lowStock) {
+                changed = lowStockProducts.put(product.getId(), product) == null;
+            } else {
+                changed = lowStockProducts.remove(product.getId()) != null;
+            }
+        }
+        if (changed && notify) {
+            for (StockListener listener : stockListeners) {
+                listener.lowStockChanged(product, lowStock);
+            }
+        }
+    }
+    
+    /**
+     * Stop tracking the low-stock state of a product that left the catalog
+     */
+    private void untrackLowStock(Product product) {
+        product.setStockListener(null);
+        synchronized (lowStockProducts) {
+            if (lowStockProducts.get(product.getId()) == product) {
+                lowStockProducts.remove(product.getId());
+            }
+        }
+    }
+    
+    /**
+     * Add a product to the name index (write lock held)
+     */
+    private void indexName(Product product) {
+        List<Product> sameName = productsByName.computeIfAbsent(nameKey(product.getName()), key -> new ArrayList<>(1));
+        int position = 0;
+        while (position < sameName.size() && sameName.get(position).getId() < product.getId()) {
+            position++;
+        }
+        sameName.add(position, product);
+    }
+    
+    /**
+     * Remove a product from the name index (write lock held)
+     */
+    private void unindexName(Product product) {
+        String key = nameKey(product.getName());
+        List<Product> sameName = productsByName.get(key);
+        if (sameName != null) {
+            sameName.remove(product);
+            if (sameName.isEmpty()) {
+                productsByName.remove(key);
+            }
+        }
+    }
+    
+    /**
+     * Add the products whose name key starts with the given key, in name order (lock held)
+     */
+    private void addPrefixMatches(String key, List<Product> matches) {
+        for (List<Product> sameName : productsByName.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+            matches.addAll(sameName);
+        }
+    }
+    
+    /**
+     * Get the name index key of a name
+     */
+    private static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
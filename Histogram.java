@@ -0,0 +1,133 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram class counting values (e.g. latencies in nanoseconds or sizes in bytes) in log-linear buckets
+ * Each power of two is split into SUB_BUCKETS equal buckets, so any recorded value is reported within
+ * 1/SUB_BUCKETS (12.5%) of its true value, from 0 up to Long.MAX_VALUE, in a fixed 512-slot array.
+ * record() allocates nothing and takes no lock, so it can sit on the hot path of every checkout lane.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+    
+    /**
+     * Record one value
+     * @param value Value to count (negative values are counted as 0)
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(bucketOf(value));
+        total.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+    
+    /**
+     * Get the bucket a value falls in
+     * Values below SUB_BUCKETS have a bucket each; above that, bucket (shift + 1) * SUB_BUCKETS + k
+     * holds the values whose top SUB_BUCKET_BITS + 1 bits are SUB_BUCKETS + k
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+    
+    /**
+     * Get the highest value a bucket holds
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long mantissa = SUB_BUCKETS + bucket % SUB_BUCKETS;
+        long next = (mantissa + 1) << shift;
+        return next <= 0 ? Long.MAX_VALUE : next - 1;
+    }
+    
+    /**
+     * Get the number of values recorded
+     * @return value count
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+    
+    /**
+     * Get the sum of the values recorded
+     * @return total of all values
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+    
+    /**
+     * Get the mean of the values recorded
+     * @return mean value, or 0 if none were recorded
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : total.sum() / (double) count;
+    }
+    
+    /**
+     * Get the largest value recorded
+     * @return maximum value, or 0 if none were recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+    
+    /**
+     * Get the value below which a fraction of the recorded values fall
+     * @param fraction Percentile as a fraction, e.g. 0.99
+     * @return upper bound of the bucket holding that percentile (at most the maximum), or 0 if empty
+     */
+    public long getPercentile(double fraction) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+    
+    /**
+     * Discard all recorded values
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        max.set(0);
+    }
+}
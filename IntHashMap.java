@@ -0,0 +1,223 @@
+import java.util.Arrays;
+
+/**
+ * IntHashMap class mapping primitive int keys to values without boxing the keys
+ * Uses open addressing with linear probing; null values are not allowed
+ * @param <V> Value type
+ */
+public class IntHashMap<V> {
+    private static final int MIN_CAPACITY = 16;
+    
+    private int[] keys;
+    private Object[] values; // null marks an empty slot
+    private int size;
+    private int mask;
+    
+    /**
+     * Constructor to create an empty map
+     */
+    public IntHashMap() {
+        this(MIN_CAPACITY);
+    }
+    
+    /**
+     * Constructor to create an empty map sized for the expected number of entries
+     * @param expectedSize Number of entries the map should hold without resizing
+     */
+    public IntHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+    
+    /**
+     * Get the value stored for a key
+     * @param key Key to look up
+     * @return value or null if the key is not present
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+    
+    /**
+     * Check whether a key is present
+     * @param key Key to look up
+     * @return true if the map holds a value for the key
+     */
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+    
+    /**
+     * Store a value for a key, replacing any previous value
+     * @param key Key to store
+     * @param value Value to store (must not be null)
+     * @return previous value or null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("IntHashMap does not allow null values");
+        }
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > (mask + 1) * 3 / 4) {
+            resize((mask + 1) << 1);
+        }
+        return null;
+    }
+    
+    /**
+     * Remove the value stored for a key
+     * @param key Key to remove
+     * @return removed value or null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                V removed = (V) values[slot];
+                shiftBack(slot);
+                size--;
+                return removed;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+    
+    /**
+     * Get the number of entries
+     * @return number of keys in the map
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Check whether the map is empty
+     * @return true if the map holds no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+    
+    /**
+     * Get a copy of all keys (in no particular order)
+     * @return array of the keys currently in the map
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int count = 0;
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] != null) {
+                result[count++] = keys[slot];
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Call an action for every entry in the map (in no particular order)
+     * @param action Action receiving each key and value
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(IntEntryConsumer<V> action) {
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] != null) {
+                action.accept(keys[slot], (V) values[slot]);
+            }
+        }
+    }
+    
+    /**
+     * Callback used by forEach
+     * @param <V> Value type
+     */
+    public interface IntEntryConsumer<V> {
+        void accept(int key, V value);
+    }
+    
+    /**
+     * Close the gap left by a removed slot so later probes still find their keys
+     */
+    private void shiftBack(int gap) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == null) {
+                break;
+            }
+            int home = hash(keys[slot]) & mask;
+            // Move the entry into the gap unless its home lies cyclically in (gap, slot]
+            boolean homeBetween = gap <= slot ? (gap < home && home <= slot) : (gap < home || home <= slot);
+            if (!homeBetween) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        values[gap] = null;
+    }
+    
+    /**
+     * Rehash every entry into a table of the given capacity
+     */
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+    
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+    
+    /**
+     * Spread sequential IDs across the table
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -1,5 +1,11 @@
+import java.io.File;
+import java.io.IOException;
+
 /**
  * Main class to run the MiniMart application
+ * Usage: java Main                                  (interactive menu)
+ *        java Main --import sales.csv [--every N]  (batch import, saving every N lines)
+ *        java Main --serve [port]                  (HTTP/JSON server for POS terminals, default port 8080)
  */
 public class Main {
     public static void main(String[] args) {
@@ -8,10 +14,28 @@ public class Main {
         System.out.println("Group Members: Miles Lu(rl4642), Tuo Zhang(tz2714), Jueying Zhu(jz5028)");
         System.out.println("=================================================================================");
         
+        if (args.length >= 1 && args[0].equals("--serve")) {
+            int port = args.length >= 2 ? parsePort(args[1]) : 8080;
+            if (port < 0) {
+                System.out.println("Usage: java Main --serve [port]   (port 0-65535, default 8080)");
+                return;
+            }
+            serve(port);
+            return;
+        }
+        
         MiniMart miniMart = new MiniMart();
         
         try {
-            miniMart.run();
+            if (args.length >= 2 && args[0].equals("--import")) {
+                int checkpointInterval = 0;
+                if (args.length >= 4 && args[2].equals("--every")) {
+                    checkpointInterval = Integer.parseInt(args[3]);
+                }
+                miniMart.importTransactions(args[1], checkpointInterval);
+            } else {
+                miniMart.run();
+            }
         } catch (Exception e) {
             System.out.println("An error occurred: " + e.getMessage());
             e.printStackTrace();
@@ -19,7 +43,47 @@ public class Main {
             miniMart.close();
         }
     }
+    
+    /**
+     * Parse a TCP port number
+     * @param text Command-line argument
+     * @return port, or -1 if the argument is not a number from 0 to 65535
+     */
+    private static int parsePort(String text) {
+        try {
+            int port = Integer.parseInt(text.trim());
+            return port >= 0 && port <= 65535 ? port : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Serve the store over HTTP until the process is stopped (e.g. with Ctrl+C)
+     * @param port TCP port to listen on
+     */
+    private static void serve(int port) {
+        // Read once when the JDK's HTTP server first starts, so it must be set before any server exists
+        if (System.getProperty(StoreServer.NODELAY_PROPERTY) == null) {
+            System.setProperty(StoreServer.NODELAY_PROPERTY, "true");
+        }
+        Store store = new Store(new File("."));
+        StoreServer server;
+        try {
+            server = new StoreServer(store, port);
+        } catch (IOException e) {
+            System.out.println("Error starting server: " + e.getMessage());
+            store.close();
+            return;
+        }
+        
+        // Stop accepting requests, then save and checkpoint the data files
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            store.close();
+            System.out.println("Server stopped.");
+        }));
+        server.start();
+        System.out.println("Serving MiniMart on port " + server.getPort() + ". Press Ctrl+C to stop.");
+    }
 }
-
-
-
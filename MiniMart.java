@@ -1,138 +1,26 @@
 import java.io.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * MiniMart class to manage products, purchases, sales, and inventory
+ * The console menu collects input and prints results; the work is done by the headless Store
  */
 public class MiniMart {
-    private ArrayList<Product> products;
-    private ArrayList<Transaction> transactions;
-    private static final String PRODUCTS_FILE = "products.bin";
-    private static final String TRANSACTIONS_FILE = "transactions.bin";
+    private Store store;
+    // Transaction listings show this many rows per page
+    private static final int TRANSACTION_PAGE_SIZE = 50;
     private Scanner scanner;
     
     /**
      * Constructor to initialize the MiniMart system
      */
     public MiniMart() {
-        this.products = new ArrayList<>();
-        this.transactions = new ArrayList<>();
         this.scanner = new Scanner(System.in);
-        loadData();
-    }
-    
-    /**
-     * Load products and transactions from data files
-     */
-    private void loadData() {
-        loadProducts();
-        loadTransactions();
-    }
-    
-    /**
-     * Load products from the data file
-     */
-    private void loadProducts() {
-        File file = new File(PRODUCTS_FILE);
-        if (!file.exists()) {
-            System.out.println("No existing products file found. Starting with empty product catalog.");
-            return;
-        }
-        
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(PRODUCTS_FILE))) {
-            // Read the number of products
-            int productCount = ois.readInt();
-            Product.setProductCount(productCount);
-            
-            // Read the next ID
-            int nextId = ois.readInt();
-            Product.setNextId(nextId);
-            
-            // Read products
-            for (int i = 0; i < productCount; i++) {
-                Product product = (Product) ois.readObject();
-                products.add(product);
-            }
-            
-            System.out.println("Loaded " + productCount + " products from file.");
-        } catch (IOException | ClassNotFoundException e) {
-            System.out.println("Error loading products from file: " + e.getMessage());
-            System.out.println("Starting with empty product catalog.");
-        }
-    }
-    
-    /**
-     * Load transactions from the data file
-     */
-    private void loadTransactions() {
-        File file = new File(TRANSACTIONS_FILE);
-        if (!file.exists()) {
-            return; // No transactions file is okay
-        }
-        
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(TRANSACTIONS_FILE))) {
-            // Read the number of transactions
-            int transactionCount = ois.readInt();
-            Transaction.setTransactionCount(transactionCount);
-            
-            // Read the next transaction ID
-            int nextTransactionId = ois.readInt();
-            Transaction.setNextTransactionId(nextTransactionId);
-            
-            // Read transactions
-            for (int i = 0; i < transactionCount; i++) {
-                Transaction transaction = (Transaction) ois.readObject();
-                transactions.add(transaction);
-            }
-            
-            System.out.println("Loaded " + transactionCount + " transactions from file.");
-        } catch (IOException | ClassNotFoundException e) {
-            System.out.println("Error loading transactions from file: " + e.getMessage());
-        }
-    }
-    
-    /**
-     * Save products to the data file
-     */
-    private void saveProducts() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(PRODUCTS_FILE))) {
-            // Write the number of products
-            oos.writeInt(products.size());
-            
-            // Write the next ID
-            oos.writeInt(Product.getNextId());
-            
-            // Write all products
-            for (Product product : products) {
-                oos.writeObject(product);
-            }
-            
-            oos.flush();
-        } catch (IOException e) {
-            System.out.println("Error saving products to file: " + e.getMessage());
-        }
-    }
-    
-    /**
-     * Save transactions to the data file
-     */
-    private void saveTransactions() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(TRANSACTIONS_FILE))) {
-            // Write the number of transactions
-            oos.writeInt(transactions.size());
-            
-            // Write the next transaction ID
-            oos.writeInt(Transaction.getNextTransactionId());
-            
-            // Write all transactions
-            for (Transaction transaction : transactions) {
-                oos.writeObject(transaction);
-            }
-            
-            oos.flush();
-        } catch (IOException e) {
-            System.out.println("Error saving transactions to file: " + e.getMessage());
-        }
+        this.store = new Store(new File("."));
     }
     
     /**
@@ -146,9 +34,9 @@ public class MiniMart {
         String name = scanner.nextLine();
         
         System.out.print("Purchase Price (cost per unit): $");
-        double purchasePrice = 0;
+        long purchasePriceCents = 0;
         try {
-            purchasePrice = Double.parseDouble(scanner.nextLine().trim());
+            purchasePriceCents = Money.parse(scanner.nextLine());
         } catch (NumberFormatException e) {
             System.out.println("Invalid price format. Please enter a valid number.");
             System.out.println("Press Enter to continue");
@@ -157,9 +45,9 @@ public class MiniMart {
         }
         
         System.out.print("Selling Price (retail per unit): $");
-        double sellingPrice = 0;
+        long sellingPriceCents = 0;
         try {
-            sellingPrice = Double.parseDouble(scanner.nextLine().trim());
+            sellingPriceCents = Money.parse(scanner.nextLine());
         } catch (NumberFormatException e) {
             System.out.println("Invalid price format. Please enter a valid number.");
             System.out.println("Press Enter to continue");
@@ -167,9 +55,6 @@ public class MiniMart {
             return;
         }
         
-        // Initial stock quantity is always 0 for new products
-        int stockQuantity = 0;
-        
         System.out.print("Low Stock Threshold: ");
         int lowStockThreshold = 0;
         try {
@@ -181,12 +66,8 @@ public class MiniMart {
             return;
         }
         
-        // Create new product with initial stock of 0
-        Product newProduct = new Product(name, purchasePrice, sellingPrice, stockQuantity, lowStockThreshold);
-        products.add(newProduct);
-        
-        // Save to file
-        saveProducts();
+        // Create new product with initial stock of 0 (saved to file in the background)
+        store.addProduct(name, purchasePriceCents, sellingPriceCents, lowStockThreshold);
         
         System.out.println("------------------------------------------------------------------------------------");
         System.out.println("Product added successfully!");
@@ -201,7 +82,7 @@ public class MiniMart {
         System.out.println("\nMain Window --> Inventory Overview --> Edit product window");
         System.out.println("================");
         
-        if (products.isEmpty()) {
+        if (store.getProductCount() == 0) {
             System.out.println("No products in the catalog.");
             System.out.println("Press Enter to continue");
             scanner.nextLine();
@@ -213,7 +94,7 @@ public class MiniMart {
         
         try {
             int productId = Integer.parseInt(scanner.nextLine().trim());
-            Product product = findProductById(productId);
+            Product product = store.findProduct(productId);
             
             if (product == null) {
                 System.out.println("Product with ID " + productId + " not found.");
@@ -225,60 +106,70 @@ public class MiniMart {
             System.out.println("\nCurrent product information:");
             System.out.println("ID: " + product.getId());
             System.out.println("Name: " + product.getName());
-            System.out.println("Purchase Price: $" + product.getPurchasePrice());
-            System.out.println("Selling Price: $" + product.getSellingPrice());
+            System.out.println("Purchase Price: $" + Money.format(product.getPurchasePriceCents()));
+            System.out.println("Selling Price: $" + Money.format(product.getSellingPriceCents()));
             System.out.println("Stock Quantity: " + product.getStockQuantity());
             System.out.println("Low Stock Threshold: " + product.getLowStockThreshold());
             System.out.println("\nEnter new information (press Enter to keep current value):");
             
             System.out.print("Product Name [" + product.getName() + "]: ");
             String name = scanner.nextLine();
-            if (!name.trim().isEmpty()) {
-                product.setName(name);
+            if (name.trim().isEmpty()) {
+                name = product.getName();
             }
             
-            System.out.print("Purchase Price [" + product.getPurchasePrice() + "]: $");
+            System.out.print("Purchase Price [" + Money.format(product.getPurchasePriceCents()) + "]: $");
+            long purchasePriceCents = product.getPurchasePriceCents();
             String purchasePriceStr = scanner.nextLine();
             if (!purchasePriceStr.trim().isEmpty()) {
                 try {
-                    product.setPurchasePrice(Double.parseDouble(purchasePriceStr.trim()));
+                    purchasePriceCents = Money.parse(purchasePriceStr);
                 } catch (NumberFormatException e) {
                     System.out.println("Invalid price format. Keeping current value.");
                 }
             }
             
-            System.out.print("Selling Price [" + product.getSellingPrice() + "]: $");
+            System.out.print("Selling Price [" + Money.format(product.getSellingPriceCents()) + "]: $");
+            long sellingPriceCents = product.getSellingPriceCents();
             String sellingPriceStr = scanner.nextLine();
             if (!sellingPriceStr.trim().isEmpty()) {
                 try {
-                    product.setSellingPrice(Double.parseDouble(sellingPriceStr.trim()));
+                    sellingPriceCents = Money.parse(sellingPriceStr);
                 } catch (NumberFormatException e) {
                     System.out.println("Invalid price format. Keeping current value.");
                 }
             }
             
             System.out.print("Stock Quantity [" + product.getStockQuantity() + "]: ");
+            int stockQuantity = product.getStockQuantity();
             String stockStr = scanner.nextLine();
             if (!stockStr.trim().isEmpty()) {
                 try {
-                    product.setStockQuantity(Integer.parseInt(stockStr.trim()));
+                    stockQuantity = Integer.parseInt(stockStr.trim());
                 } catch (NumberFormatException e) {
                     System.out.println("Invalid quantity format. Keeping current value.");
                 }
             }
             
             System.out.print("Low Stock Threshold [" + product.getLowStockThreshold() + "]: ");
+            int lowStockThreshold = product.getLowStockThreshold();
             String thresholdStr = scanner.nextLine();
             if (!thresholdStr.trim().isEmpty()) {
                 try {
-                    product.setLowStockThreshold(Integer.parseInt(thresholdStr.trim()));
+                    lowStockThreshold = Integer.parseInt(thresholdStr.trim());
                 } catch (NumberFormatException e) {
                     System.out.println("Invalid threshold format. Keeping current value.");
                 }
             }
             
-            // Save to file
-            saveProducts();
+            // Apply the changes and save to file in the background
+            if (store.editProduct(productId, name, purchasePriceCents, sellingPriceCents,
+                                  stockQuantity, lowStockThreshold) == null) {
+                System.out.println("Product with ID " + productId + " was deleted while being edited.");
+                System.out.println("Press Enter to continue");
+                scanner.nextLine();
+                return;
+            }
             
             System.out.println("------------------------------------------------------------------------------------");
             System.out.println("Product updated successfully....Press Enter to continue");
@@ -297,7 +188,7 @@ public class MiniMart {
         System.out.println("\nMain Window --> Inventory Overview --> Delete product window");
         System.out.println("================");
         
-        if (products.isEmpty()) {
+        if (store.getProductCount() == 0) {
             System.out.println("No products in the catalog.");
             System.out.println("Press Enter to continue");
             scanner.nextLine();
@@ -309,18 +200,10 @@ public class MiniMart {
         try {
             int productId = Integer.parseInt(scanner.nextLine().trim());
             
-            // Find and remove the product
-            boolean removed = false;
-            for (int i = 0; i < products.size(); i++) {
-                if (products.get(i).getId() == productId) {
-                    products.remove(i);
-                    removed = true;
-                    break;
-                }
-            }
+            // Find and remove the product (saved to file in the background)
+            boolean removed = store.deleteProduct(productId) != null;
             
             if (removed) {
-                saveProducts(); // Save changes to file
                 System.out.println("Product deleted successfully....Press Enter to continue");
                 scanner.nextLine();
             } else {
@@ -342,7 +225,7 @@ public class MiniMart {
         System.out.println("\nMain Window --> Inventory Overview --> Record Purchase (Restocking) window");
         System.out.println("================");
         
-        if (products.isEmpty()) {
+        if (store.getProductCount() == 0) {
             System.out.println("No products in the catalog. Please add products first.");
             System.out.println("Press Enter to continue");
             scanner.nextLine();
@@ -354,7 +237,7 @@ public class MiniMart {
         
         try {
             int productId = Integer.parseInt(scanner.nextLine().trim());
-            Product product = findProductById(productId);
+            Product product = store.findProduct(productId);
             
             if (product == null) {
                 System.out.println("Product with ID " + productId + " not found.");
@@ -373,26 +256,23 @@ public class MiniMart {
                 return;
             }
             
-            // Increase stock
-            product.increaseStock(quantity);
-            
-            // Record transaction
-            Transaction purchase = new Transaction(Transaction.TransactionType.PURCHASE, 
-                                                 product.getId(), product.getName(), 
-                                                 quantity, product.getPurchasePrice());
-            transactions.add(purchase);
-            
-            // Save to files
-            saveProducts();
-            saveTransactions();
+            // Increase stock and record transaction (saved to files in the background)
+            TransactionResult result = store.purchase(productId, quantity);
+            if (!result.isSuccess()) {
+                System.out.println("Purchase rejected: " + result.getStatus());
+                System.out.println("Press Enter to continue");
+                scanner.nextLine();
+                return;
+            }
+            Transaction purchase = result.getTransaction();
             
             System.out.println("------------------------------------------------------------------------------------");
             System.out.println("Purchase recorded successfully!");
-            System.out.println("Product: " + product.getName());
+            System.out.println("Product: " + purchase.getProductName());
             System.out.println("Quantity: " + quantity);
-            System.out.println("Unit Price: $" + product.getPurchasePrice());
-            System.out.println("Total Cost: $" + (quantity * product.getPurchasePrice()));
-            System.out.println("New Stock Level: " + product.getStockQuantity());
+            System.out.println("Unit Price: $" + Money.format(purchase.getUnitPriceCents()));
+            System.out.println("Total Cost: $" + Money.format(purchase.getTotalAmountCents()));
+            System.out.println("New Stock Level: " + result.getStockAfter());
             System.out.println("Press Enter to continue");
             scanner.nextLine();
         } catch (NumberFormatException e) {
@@ -409,7 +289,7 @@ public class MiniMart {
         System.out.println("\nMain Window --> Inventory Overview --> Record Sale window");
         System.out.println("================");
         
-        if (products.isEmpty()) {
+        if (store.getProductCount() == 0) {
             System.out.println("No products in the catalog. Please add products first.");
             System.out.println("Press Enter to continue");
             scanner.nextLine();
@@ -421,7 +301,7 @@ public class MiniMart {
         
         try {
             int productId = Integer.parseInt(scanner.nextLine().trim());
-            Product product = findProductById(productId);
+            Product product = store.findProduct(productId);
             
             if (product == null) {
                 System.out.println("Product with ID " + productId + " not found.");
@@ -440,43 +320,33 @@ public class MiniMart {
                 return;
             }
             
-            // Check stock availability
-            if (product.getStockQuantity() < quantity) {
+            // Check stock availability, decrease stock and record transaction (saved to files in the background)
+            TransactionResult result = store.sale(productId, quantity);
+            if (result.getStatus() == TransactionResult.Status.INSUFFICIENT_STOCK) {
                 System.out.println("------------------------------------------------------------------------------------");
                 System.out.println("ERROR: Insufficient stock!");
-                System.out.println("Available stock: " + product.getStockQuantity());
+                System.out.println("Available stock: " + result.getStockAfter());
                 System.out.println("Requested quantity: " + quantity);
                 System.out.println("Sale rejected. Please adjust the quantity or restock the product.");
                 System.out.println("Press Enter to continue");
                 scanner.nextLine();
                 return;
+            } else if (!result.isSuccess()) {
+                System.out.println("Sale rejected: " + result.getStatus());
+                System.out.println("Press Enter to continue");
+                scanner.nextLine();
+                return;
             }
-            
-            // Decrease stock
-            product.decreaseStock(quantity);
-            
-            // Calculate revenue and profit
-            double revenue = quantity * product.getSellingPrice();
-            double profit = quantity * (product.getSellingPrice() - product.getPurchasePrice());
-            
-            // Record transaction
-            Transaction sale = new Transaction(Transaction.TransactionType.SALE, 
-                                             product.getId(), product.getName(), 
-                                             quantity, product.getSellingPrice());
-            transactions.add(sale);
-            
-            // Save to files
-            saveProducts();
-            saveTransactions();
+            Transaction sale = result.getTransaction();
             
             System.out.println("------------------------------------------------------------------------------------");
             System.out.println("Sale recorded successfully!");
-            System.out.println("Product: " + product.getName());
+            System.out.println("Product: " + sale.getProductName());
             System.out.println("Quantity: " + quantity);
-            System.out.println("Unit Selling Price: $" + product.getSellingPrice());
-            System.out.println("Revenue: $" + revenue);
-            System.out.println("Profit for this sale: $" + profit);
-            System.out.println("New Stock Level: " + product.getStockQuantity());
+            System.out.println("Unit Selling Price: $" + Money.format(sale.getUnitPriceCents()));
+            System.out.println("Revenue: $" + Money.format(sale.getTotalAmountCents()));
+            System.out.println("Profit for this sale: $" + Money.format(sale.getProfitCents()));
+            System.out.println("New Stock Level: " + result.getStockAfter());
             System.out.println("Press Enter to continue");
             scanner.nextLine();
         } catch (NumberFormatException e) {
@@ -486,6 +356,84 @@ public class MiniMart {
         }
     }
     
+    /**
+     * Record a sale of several products that is committed all-or-nothing
+     */
+    public void recordBasketSale() {
+        System.out.println("\nMain Window --> Inventory Overview --> Record Multi-Item Sale window");
+        System.out.println("================");
+        
+        if (store.getProductCount() == 0) {
+            System.out.println("No products in the catalog. Please add products first.");
+            System.out.println("Press Enter to continue");
+            scanner.nextLine();
+            return;
+        }
+        
+        Basket basket = new Basket();
+        while (true) {
+            System.out.print("\nEnter the Product ID (press Enter to check out): ");
+            String idStr = scanner.nextLine().trim();
+            if (idStr.isEmpty()) {
+                break;
+            }
+            try {
+                int productId = Integer.parseInt(idStr);
+                Product product = store.findProduct(productId);
+                if (product == null) {
+                    System.out.println("Product with ID " + productId + " not found.");
+                    continue;
+                }
+                
+                System.out.print("Enter the quantity of " + product.getName() + " to sell: ");
+                int quantity = Integer.parseInt(scanner.nextLine().trim());
+                if (quantity <= 0) {
+                    System.out.println("Quantity must be positive.");
+                    continue;
+                }
+                basket.add(productId, quantity);
+                System.out.println("Added to basket (" + basket.size() + " line(s)).");
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input format. Please enter valid numbers.");
+            }
+        }
+        
+        if (basket.isEmpty()) {
+            System.out.println("Basket is empty. No sale recorded.");
+            System.out.println("Press Enter to continue");
+            scanner.nextLine();
+            return;
+        }
+        
+        // Reserve stock for every line and record all sales together
+        // (saved to files in the background, once for the whole basket)
+        CheckoutResult result = store.checkout(basket);
+        if (!result.isSuccess()) {
+            Basket.Line failed = result.getFailedLine();
+            System.out.println("------------------------------------------------------------------------------------");
+            System.out.println("ERROR: Basket rejected, no items were sold!");
+            System.out.println("Product ID " + failed.getProductId() + ": " + result.getStatus());
+            if (result.getStatus() == TransactionResult.Status.INSUFFICIENT_STOCK) {
+                System.out.println("Available stock: " + result.getAvailableStock());
+                System.out.println("Requested quantity: " + failed.getQuantity());
+            }
+            System.out.println("Press Enter to continue");
+            scanner.nextLine();
+            return;
+        }
+        
+        System.out.println("------------------------------------------------------------------------------------");
+        System.out.println("Sale recorded successfully!");
+        for (Transaction sale : result.getSales()) {
+            System.out.println("  - " + sale.getProductName() + " x " + sale.getQuantity() + " @ $" + Money.format(sale.getUnitPriceCents())
+                               + " = $" + Money.format(sale.getTotalAmountCents()));
+        }
+        System.out.println("Revenue: $" + Money.format(result.getTotalAmountCents()));
+        System.out.println("Profit for this sale: $" + Money.format(result.getTotalProfitCents()));
+        System.out.println("Press Enter to continue");
+        scanner.nextLine();
+    }
+    
     /**
      * Display inventory overview and show submenu for operations
      */
@@ -494,12 +442,11 @@ public class MiniMart {
             System.out.println("\nMain Window --> Inventory Overview");
             System.out.println("================");
             
-        if (products.isEmpty()) {
+        if (store.getProductCount() == 0) {
             System.out.println("No products in the catalog.");
         } else {
-            // Sort products by name
-            ArrayList<Product> sortedProducts = new ArrayList<>(products);
-            sortedProducts.sort(Comparator.comparing(Product::getName));
+            // Products in name order, straight from the catalog's name index
+            List<Product> sortedProducts = store.getProductsByName();
             
             System.out.println("------------------------------------------------------------------------------------------------------------------------");
             System.out.printf("%-3s | %-20s | %-12s | %-12s | %-8s | %-8s | %s%n", 
@@ -512,13 +459,8 @@ public class MiniMart {
             
             System.out.println("------------------------------------------------------------------------------------------------------------------------");
             
-            // Display low stock alerts
-            ArrayList<Product> lowStockProducts = new ArrayList<>();
-            for (Product product : products) {
-                if (product.isLowStock()) {
-                    lowStockProducts.add(product);
-                }
-            }
+            // Display low stock alerts (the catalog keeps this set up to date as stock changes)
+            List<Product> lowStockProducts = store.getLowStockProducts();
             
             if (!lowStockProducts.isEmpty()) {
                 System.out.println("\n*** LOW STOCK ALERT ***");
@@ -552,15 +494,55 @@ public class MiniMart {
                 recordSale();
                 break;
             case "6":
+                recordBasketSale();
+                break;
+            case "7":
+                searchProducts();
+                break;
+            case "8":
                 return; // Go back to main menu
             default:
-                System.out.println("Invalid choice. Please enter a number between 1 and 6.");
+                System.out.println("Invalid choice. Please enter a number between 1 and 8.");
                 System.out.println("Press Enter to continue...");
                 scanner.nextLine();
         }
         }
     }
     
+    /**
+     * Search products by name for a cashier who does not know the product ID
+     */
+    public void searchProducts() {
+        System.out.println("\nMain Window --> Inventory Overview --> Search products window");
+        System.out.println("================");
+        
+        System.out.print("Enter the beginning or part of the product name: ");
+        String text = scanner.nextLine().trim();
+        if (text.isEmpty()) {
+            System.out.println("No search text entered.");
+            System.out.println("Press Enter to continue");
+            scanner.nextLine();
+            return;
+        }
+        
+        List<Product> matches = store.searchProducts(text);
+        if (matches.isEmpty()) {
+            System.out.println("No products match \"" + text + "\".");
+        } else {
+            System.out.println("------------------------------------------------------------------------------------------------------------------------");
+            System.out.printf("%-3s | %-20s | %-12s | %-12s | %-8s | %-8s | %s%n", 
+                             "ID", "Name", "Purchase Price", "Selling Price", "Stock", "Threshold", "Status");
+            System.out.println("------------------------------------------------------------------------------------------------------------------------");
+            for (Product product : matches) {
+                product.displayProduct();
+            }
+            System.out.println("------------------------------------------------------------------------------------------------------------------------");
+            System.out.println(matches.size() + " product(s) found.");
+        }
+        System.out.println("Press Enter to continue");
+        scanner.nextLine();
+    }
+    
     /**
      * Display submenu for inventory operations
      */
@@ -571,7 +553,9 @@ public class MiniMart {
         System.out.println("(3) Delete a product");
         System.out.println("(4) Record purchase (restocking)");
         System.out.println("(5) Record sale");
-        System.out.println("(6) Back to Main Window");
+        System.out.println("(6) Record multi-item sale (basket)");
+        System.out.println("(7) Search products by name");
+        System.out.println("(8) Back to Main Window");
         System.out.print("Enter Your Choice: ");
     }
     
@@ -582,40 +566,21 @@ public class MiniMart {
         System.out.println("\nMain Window --> Total Profit Report");
         System.out.println("================");
         
-        double totalProfit = 0.0;
-        int saleCount = 0;
-        
-        // Calculate profit from all sale transactions
-        for (Transaction transaction : transactions) {
-            if (transaction.getType() == Transaction.TransactionType.SALE) {
-                Product product = findProductById(transaction.getProductId());
-                if (product != null) {
-                    double profit = transaction.getQuantity() * 
-                                  (transaction.getUnitPrice() - product.getPurchasePrice());
-                    totalProfit += profit;
-                    saleCount++;
-                }
-            }
-        }
+        // Totals are maintained as each sale is recorded
+        Store.ProfitReport report = store.getProfitReport();
+        int saleCount = report.getSaleCount();
         
         System.out.println("---------------------------------------------------------------------------------------------------");
         System.out.println("Total Number of Sales: " + saleCount);
-        System.out.println("Total Profit: $" + String.format("%.2f", totalProfit));
+        System.out.println("Total Revenue: $" + Money.format(report.getRevenueCents()));
+        System.out.println("Total Cost of Goods Sold: $" + Money.format(report.getCostCents()));
+        System.out.println("Total Profit: $" + Money.format(report.getProfitCents()));
         System.out.println("---------------------------------------------------------------------------------------------------");
         
         if (saleCount > 0) {
             System.out.println("\nSale Transactions:");
-            System.out.println("------------------------------------------------------------------------------------------------------------------------");
-            System.out.printf("%-3s | %-10s | %-3s | %-20s | %-8s | %-12s | %-12s%n", 
-                             "ID", "Type", "PID", "Product Name", "Quantity", "Unit Price", "Total");
-            System.out.println("------------------------------------------------------------------------------------------------------------------------");
-            
-            for (Transaction transaction : transactions) {
-                if (transaction.getType() == Transaction.TransactionType.SALE) {
-                    transaction.displayTransaction();
-                }
-            }
-            System.out.println("------------------------------------------------------------------------------------------------------------------------");
+            browseTransactions(TransactionFilter.sales());
+            return;
         }
         
         System.out.println("\nPress Enter to continue");
@@ -626,7 +591,7 @@ public class MiniMart {
      * Display all products
      */
     private void displayAllProducts() {
-        if (products.isEmpty()) {
+        if (store.getProductCount() == 0) {
             System.out.println("No products in the catalog.");
             return;
         }
@@ -636,31 +601,26 @@ public class MiniMart {
                          "ID", "Name", "Purchase Price", "Selling Price", "Stock", "Threshold", "Status");
         System.out.println("------------------------------------------------------------------------------------------------------------------------");
         
-        for (Product product : products) {
+        for (Product product : store.getProducts()) {
             product.displayProduct();
         }
         
         System.out.println("------------------------------------------------------------------------------------------------------------------------");
     }
     
-    /**
-     * Find a product by ID
-     * @param id Product ID
-     * @return Product object or null if not found
-     */
-    private Product findProductById(int id) {
-        for (Product product : products) {
-            if (product.getId() == id) {
-                return product;
-            }
-        }
-        return null;
-    }
-    
     /**
      * Display the main menu and handle user choices
      */
     public void run() {
+        // Alert the cashier as soon as an operation takes a product below its threshold
+        store.addStockListener((product, lowStock) -> {
+            if (lowStock) {
+                System.out.println("*** LOW STOCK ALERT: " + product.getName() + " (ID: " + product.getId() +
+                                   ") is now below its threshold (Stock: " + product.getStockQuantity() +
+                                   ", Threshold: " + product.getLowStockThreshold() + ")");
+            }
+        });
+        
         while (true) {
             displayMainMenu();
             String choice = scanner.nextLine().trim();
@@ -676,10 +636,25 @@ public class MiniMart {
                     displayAllTransactions();
                     break;
                 case "4":
+                    displayProductHistory();
+                    break;
+                case "5":
+                    displaySalesByPeriod();
+                    break;
+                case "6":
+                    displayMetrics();
+                    break;
+                case "7":
+                    displayHistoryAudit();
+                    break;
+                case "8":
+                    displayLeaderboard();
+                    break;
+                case "9":
                     System.out.println("Thank you for using MiniMart. Goodbye!");
                     return;
                 default:
-                    System.out.println("Invalid choice. Please enter 1, 2, 3, or 4.");
+                    System.out.println("Invalid choice. Please enter 1, 2, 3, 4, 5, 6, 7, 8, or 9.");
                     System.out.println("Press Enter to continue...");
                     scanner.nextLine();
             }
@@ -693,40 +668,486 @@ public class MiniMart {
         System.out.println("\nMain Window --> View All Transactions");
         System.out.println("================");
         
-        if (transactions.isEmpty()) {
+        Store.ProfitReport report = store.getProfitReport();
+        int transactionCount = report.getTransactionCount();
+        if (transactionCount == 0) {
             System.out.println("No transactions recorded.");
             System.out.println("Press Enter to continue");
             scanner.nextLine();
             return;
         }
         
-        // Count transactions by type
-        int purchaseCount = 0;
-        int saleCount = 0;
-        for (Transaction transaction : transactions) {
-            if (transaction.getType() == Transaction.TransactionType.PURCHASE) {
-                purchaseCount++;
-            } else {
-                saleCount++;
+        // Count transactions by type from the running totals rather than the history
+        int saleCount = report.getSaleCount();
+        int purchaseCount = report.getPurchaseCount();
+        
+        System.out.println("Total Transactions: " + transactionCount + " (Purchases: " + purchaseCount + ", Sales: " + saleCount + ")");
+        System.out.println("\nAll Transactions:");
+        browseTransactions(TransactionFilter.all());
+    }
+    
+    /**
+     * Display today's sales by hour, the last 7 days by day and the last 7 days by product
+     * Figures come from the hourly and daily buckets kept as sales are recorded
+     */
+    public void displaySalesByPeriod() {
+        System.out.println("\nMain Window --> Sales by Day and Hour");
+        System.out.println("================");
+        
+        SalesRollup rollup = store.getSalesRollup();
+        ZoneId zone = rollup.getZone();
+        LocalDateTime now = LocalDateTime.now(zone);
+        LocalDate today = now.toLocalDate();
+        LocalDate weekStart = today.minusDays(6);
+        
+        SalesTotals todayTotals = rollup.getDays(today, today);
+        System.out.println("---------------------------------------------------------------------------------------------------");
+        System.out.println("Today (" + today + "): " + todayTotals.getSaleCount() + " sales, " + todayTotals.getUnitsSold()
+                           + " units, revenue $" + Money.format(todayTotals.getRevenueCents())
+                           + ", profit $" + Money.format(todayTotals.getProfitCents()));
+        System.out.println("---------------------------------------------------------------------------------------------------");
+        
+        System.out.println("\nToday by Hour:");
+        printPeriodHeader("Hour");
+        for (int hour = 0; hour <= now.getHour(); hour++) {
+            long hourStart = today.atTime(hour, 0).atZone(zone).toInstant().toEpochMilli();
+            SalesTotals totals = rollup.getHour(hourStart);
+            if (totals.getSaleCount() > 0) {
+                printPeriodRow(String.format("%02d:00", hour), totals);
             }
         }
+        System.out.println("---------------------------------------------------------------------------------------------------");
         
-        System.out.println("Total Transactions: " + transactions.size() + " (Purchases: " + purchaseCount + ", Sales: " + saleCount + ")");
-        System.out.println("\nAll Transactions:");
-        System.out.println("------------------------------------------------------------------------------------------------------------------------");
-        System.out.printf("%-3s | %-10s | %-3s | %-20s | %-8s | %-12s | %-12s%n", 
-                         "ID", "Type", "PID", "Product Name", "Quantity", "Unit Price", "Total");
-        System.out.println("------------------------------------------------------------------------------------------------------------------------");
+        System.out.println("\nLast 7 Days:");
+        printPeriodHeader("Date");
+        for (LocalDate date = weekStart; !date.isAfter(today); date = date.plusDays(1)) {
+            printPeriodRow(date.toString(), rollup.getDays(date, date));
+        }
+        printPeriodRow("Total", rollup.getDays(weekStart, today));
+        System.out.println("---------------------------------------------------------------------------------------------------");
         
-        for (Transaction transaction : transactions) {
-            transaction.displayTransaction();
+        System.out.println("\nLast 7 Days by Product:");
+        IntHashMap<SalesTotals> products = rollup.getDaysByProduct(weekStart, today);
+        int[] productIds = products.keys();
+        Integer[] byRevenue = new Integer[productIds.length];
+        for (int i = 0; i < productIds.length; i++) {
+            byRevenue[i] = productIds[i];
         }
+        Arrays.sort(byRevenue, (a, b) -> Long.compare(products.get(b).getRevenueCents(), products.get(a).getRevenueCents()));
+        System.out.println("---------------------------------------------------------------------------------------------------");
+        System.out.printf("%-3s | %-20s | %-8s | %-12s | %-12s | %s%n", "PID", "Product Name", "Units", "Revenue", "Profit", "Margin");
+        System.out.println("---------------------------------------------------------------------------------------------------");
+        for (int productId : byRevenue) {
+            SalesTotals totals = products.get(productId);
+            Product product = store.findProduct(productId);
+            System.out.printf("%-3d | %-20s | %-8d | $%-11s | $%-11s | %.1f%%%n", productId,
+                              product == null ? "(deleted)" : product.getName(), totals.getUnitsSold(),
+                              Money.format(totals.getRevenueCents()), Money.format(totals.getProfitCents()),
+                              totals.getRevenueCents() == 0 ? 0.0 : totals.getProfitCents() * 100.0 / totals.getRevenueCents());
+        }
+        if (byRevenue.length == 0) {
+            System.out.println("No sales in the last 7 days.");
+        }
+        System.out.println("---------------------------------------------------------------------------------------------------");
+        
+        System.out.println("\nPress Enter to continue");
+        scanner.nextLine();
+    }
+    
+    /**
+     * Display the operation counters and latency histograms collected since the program started
+     */
+    public void displayMetrics() {
+        System.out.println("\nMain Window --> Performance Metrics");
+        System.out.println("================");
+        Metrics.print(System.out);
+        System.out.println("(Also written to " + Metrics.METRICS_FILE + " when the program exits)");
+        System.out.println("\nPress Enter to continue");
+        scanner.nextLine();
+    }
+    
+    /**
+     * Display the best-selling products by units sold, revenue or profit
+     * The rankings are maintained as each sale is recorded, so only the products shown are read
+     */
+    public void displayLeaderboard() {
+        System.out.println("\nMain Window --> Top Products");
+        System.out.println("================");
+        
+        System.out.print("Rank by (P)rofit, (R)evenue or (U)nits sold [P]: ");
+        String choice = scanner.nextLine().trim().toUpperCase();
+        ProductRanking ranking;
+        String heading;
+        switch (choice) {
+            case "":
+            case "P":
+                ranking = ProductRanking.PROFIT;
+                heading = "Profit";
+                break;
+            case "R":
+                ranking = ProductRanking.REVENUE;
+                heading = "Revenue";
+                break;
+            case "U":
+                ranking = ProductRanking.UNITS;
+                heading = "Units Sold";
+                break;
+            default:
+                System.out.println("Invalid choice. Please enter P, R or U.");
+                System.out.println("Press Enter to continue");
+                scanner.nextLine();
+                return;
+        }
+        
+        System.out.print("Number of products to show [20]: ");
+        int count = 20;
+        String input = scanner.nextLine().trim();
+        if (!input.isEmpty()) {
+            try {
+                count = Integer.parseInt(input);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid number format. Please enter a valid number.");
+                System.out.println("Press Enter to continue");
+                scanner.nextLine();
+                return;
+            }
+        }
+        
+        List<ProductTotals> top = store.getTopProducts(ranking, count);
+        System.out.println("\nTop " + top.size() + " Products by " + heading + ":");
+        System.out.println("---------------------------------------------------------------------------------------------------");
+        System.out.printf("%-4s | %-3s | %-20s | %-8s | %-12s | %-12s | %s%n", "Rank", "PID", "Product Name", "Units",
+                          "Revenue", "Profit", "Margin");
+        System.out.println("---------------------------------------------------------------------------------------------------");
+        int rank = 1;
+        for (ProductTotals totals : top) {
+            Product product = store.findProduct(totals.getProductId());
+            System.out.printf("%-4d | %-3d | %-20s | %-8d | $%-11s | $%-11s | %.1f%%%n", rank++, totals.getProductId(),
+                              product == null ? "(deleted)" : product.getName(), totals.getUnitsSold(),
+                              Money.format(totals.getRevenueCents()), Money.format(totals.getProfitCents()),
+                              totals.getRevenueCents() == 0 ? 0.0 : totals.getProfitCents() * 100.0 / totals.getRevenueCents());
+        }
+        if (top.isEmpty()) {
+            System.out.println("No sales recorded.");
+        }
+        System.out.println("---------------------------------------------------------------------------------------------------");
         
-        System.out.println("------------------------------------------------------------------------------------------------------------------------");
         System.out.println("\nPress Enter to continue");
         scanner.nextLine();
     }
     
+    /**
+     * Recompute the sales totals from every recorded transaction, compare them with the running
+     * totals and list the most profitable products
+     * The history is read in parallel on all cores (ReportEngine)
+     */
+    public void displayHistoryAudit() {
+        System.out.println("\nMain Window --> Audit Totals");
+        System.out.println("================");
+        
+        Store.ProfitReport running = store.getProfitReport();
+        System.out.println("Reading " + running.getTransactionCount() + " transactions on "
+                           + ForkJoinPool.commonPool().getParallelism() + " worker thread(s)...");
+        long start = System.nanoTime();
+        ReportEngine.Report history;
+        try {
+            history = store.getHistoryReport();
+        } catch (IOException e) {
+            System.out.println("Error reading transactions from file: " + e.getMessage());
+            System.out.println("\nPress Enter to continue");
+            scanner.nextLine();
+            return;
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        
+        System.out.println("---------------------------------------------------------------------------------------------------");
+        System.out.printf("%-24s | %-18s | %s%n", "", "Running totals", "Transaction history");
+        System.out.println("---------------------------------------------------------------------------------------------------");
+        System.out.printf("%-24s | %-18d | %d%n", "Purchases", running.getPurchaseCount(), history.getPurchaseCount());
+        System.out.printf("%-24s | %-18d | %d%n", "Sales", running.getSaleCount(), history.getSaleCount());
+        System.out.printf("%-24s | $%-17s | $%s%n", "Revenue", Money.format(running.getRevenueCents()),
+                          Money.format(history.getRevenueCents()));
+        System.out.printf("%-24s | $%-17s | $%s%n", "Cost of Goods Sold", Money.format(running.getCostCents()),
+                          Money.format(history.getCostCents()));
+        System.out.printf("%-24s | $%-17s | $%s%n", "Profit", Money.format(running.getProfitCents()),
+                          Money.format(history.getProfitCents()));
+        System.out.println("---------------------------------------------------------------------------------------------------");
+        boolean matches = running.getSaleCount() == history.getSaleCount()
+                          && running.getPurchaseCount() == history.getPurchaseCount()
+                          && running.getRevenueCents() == history.getRevenueCents()
+                          && running.getCostCents() == history.getCostCents();
+        System.out.println(matches ? "The running totals match the transaction history."
+                                   : "The running totals differ from the transaction history.");
+        
+        System.out.println("\nTop 10 Products by Profit:");
+        System.out.println("---------------------------------------------------------------------------------------------------");
+        System.out.printf("%-3s | %-20s | %-8s | %-12s | %-12s | %s%n", "PID", "Product Name", "Units", "Revenue", "Profit", "Margin");
+        System.out.println("---------------------------------------------------------------------------------------------------");
+        List<ProductTotals> top = history.getTopProducts(ProductRanking.PROFIT, 10);
+        for (ProductTotals totals : top) {
+            Product product = store.findProduct(totals.getProductId());
+            System.out.printf("%-3d | %-20s | %-8d | $%-11s | $%-11s | %.1f%%%n", totals.getProductId(),
+                              product == null ? "(deleted)" : product.getName(), totals.getUnitsSold(),
+                              Money.format(totals.getRevenueCents()), Money.format(totals.getProfitCents()),
+                              totals.getRevenueCents() == 0 ? 0.0 : totals.getProfitCents() * 100.0 / totals.getRevenueCents());
+        }
+        if (top.isEmpty()) {
+            System.out.println("No sales recorded.");
+        }
+        System.out.println("---------------------------------------------------------------------------------------------------");
+        System.out.println("Read in " + elapsedMillis + " ms.");
+        
+        System.out.println("\nPress Enter to continue");
+        scanner.nextLine();
+    }
+    
+    /**
+     * Print the column headings of a sales-by-period table
+     * @param period Heading of the period column
+     */
+    private void printPeriodHeader(String period) {
+        System.out.println("---------------------------------------------------------------------------------------------------");
+        System.out.printf("%-10s | %-8s | %-8s | %-12s | %-12s%n", period, "Sales", "Units", "Revenue", "Profit");
+        System.out.println("---------------------------------------------------------------------------------------------------");
+    }
+    
+    /**
+     * Print one row of a sales-by-period table
+     * @param period Label of the period
+     * @param totals Sales totals of the period
+     */
+    private void printPeriodRow(String period, SalesTotals totals) {
+        System.out.printf("%-10s | %-8d | %-8d | $%-11s | $%-11s%n", period, totals.getSaleCount(), totals.getUnitsSold(),
+                          Money.format(totals.getRevenueCents()), Money.format(totals.getProfitCents()));
+    }
+    
+    /**
+     * Display one product's purchases and sales with its units sold, revenue and margin
+     * Only that product's transactions are read, through the per-product index
+     */
+    public void displayProductHistory() {
+        System.out.println("\nMain Window --> Product History");
+        System.out.println("================");
+        
+        System.out.print("\nEnter the Product ID: ");
+        try {
+            int productId = Integer.parseInt(scanner.nextLine().trim());
+            Store.ProductHistory history = store.getProductHistory(productId);
+            Product product = history.getProduct();
+            if (history.getTransactions().isEmpty()) {
+                System.out.println(product == null ? "Product with ID " + productId + " not found."
+                                                   : "No transactions recorded for " + product.getName() + ".");
+                System.out.println("Press Enter to continue");
+                scanner.nextLine();
+                return;
+            }
+            
+            String name = product != null ? product.getName() : history.getProductName() + " (deleted)";
+            System.out.println("---------------------------------------------------------------------------------------------------");
+            System.out.println("Product: " + name + " (ID: " + productId + ")");
+            if (product != null) {
+                System.out.println("Current Stock: " + product.getStockQuantity());
+            }
+            System.out.println("Purchases: " + history.getPurchaseCount() + " (" + history.getUnitsPurchased() + " units, $"
+                               + Money.format(history.getPurchaseCents()) + ")");
+            System.out.println("Sales: " + history.getSaleCount() + " (" + history.getUnitsSold() + " units sold)");
+            System.out.println("Revenue: $" + Money.format(history.getRevenueCents()));
+            System.out.println("Profit: $" + Money.format(history.getProfitCents()));
+            if (history.getRevenueCents() != 0) {
+                System.out.printf("Margin: %.1f%%%n", history.getProfitCents() * 100.0 / history.getRevenueCents());
+            }
+            System.out.println("---------------------------------------------------------------------------------------------------");
+            
+            System.out.println("\nMovement History:");
+            browseTransactions(new TransactionFilter(null, productId, 1, Integer.MAX_VALUE));
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid input. Please enter a valid product ID.");
+            System.out.println("Press Enter to continue");
+            scanner.nextLine();
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error reading transactions from file: " + e.getMessage());
+            System.out.println("Press Enter to continue");
+            scanner.nextLine();
+        }
+    }
+    
+    /**
+     * Page through the transactions matching a filter
+     * Each page is read from disk when it is shown, starting from a position found
+     * through the transaction index, so long histories need not fit in memory
+     * @param filter Transactions to show first (the user can change it)
+     */
+    private void browseTransactions(TransactionFilter filter) {
+        // Start position of each page visited so far, so earlier pages can be shown again
+        List<Integer> pageStarts = new ArrayList<>();
+        int page = 0;
+        try {
+            pageStarts.add(store.positionOf(filter.getMinTransactionId()));
+            while (true) {
+                TransactionLog.Page transactions = store.readPage(pageStarts.get(page), filter, TRANSACTION_PAGE_SIZE);
+                if (transactions.hasMore() && pageStarts.size() == page + 1) {
+                    pageStarts.add(transactions.getNextStart());
+                }
+                
+                System.out.println("------------------------------------------------------------------------------------------------------------------------");
+                System.out.printf("%-3s | %-10s | %-3s | %-20s | %-8s | %-12s | %-12s | %s%n", 
+                                 "ID", "Type", "PID", "Product Name", "Quantity", "Unit Price", "Total", "Time");
+                System.out.println("------------------------------------------------------------------------------------------------------------------------");
+                if (transactions.getTransactions().isEmpty()) {
+                    System.out.println("No matching transactions.");
+                }
+                for (Transaction transaction : transactions.getTransactions()) {
+                    transaction.displayTransaction();
+                }
+                System.out.println("------------------------------------------------------------------------------------------------------------------------");
+                System.out.println("Page " + (page + 1) + (transactions.hasMore() ? "" : " (last)") + " | Filter: " + filter);
+                System.out.print("(N)ext, (P)revious, (J)ump to ID, (F)ilter, (E)xport to CSV, (Q)uit: ");
+                String choice = scanner.nextLine().trim().toLowerCase();
+                
+                switch (choice) {
+                    case "":
+                    case "n":
+                        if (transactions.hasMore()) {
+                            page++;
+                        } else {
+                            System.out.println("This is the last page.");
+                        }
+                        break;
+                    case "p":
+                        if (page > 0) {
+                            page--;
+                        } else {
+                            System.out.println("This is the first page.");
+                        }
+                        break;
+                    case "j":
+                        System.out.print("Enter transaction ID: ");
+                        try {
+                            int transactionId = Integer.parseInt(scanner.nextLine().trim());
+                            pageStarts.clear();
+                            pageStarts.add(store.positionOf(Math.max(transactionId, filter.getMinTransactionId())));
+                            page = 0;
+                        } catch (NumberFormatException e) {
+                            System.out.println("Invalid input. Please enter a valid transaction ID.");
+                        }
+                        break;
+                    case "f":
+                        TransactionFilter newFilter = readTransactionFilter();
+                        if (newFilter != null) {
+                            filter = newFilter;
+                            pageStarts.clear();
+                            pageStarts.add(store.positionOf(filter.getMinTransactionId()));
+                            page = 0;
+                        }
+                        break;
+                    case "e":
+                        exportTransactions(filter);
+                        break;
+                    case "q":
+                        return;
+                    default:
+                        System.out.println("Invalid choice. Please enter N, P, J, F, E or Q.");
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error reading transactions from file: " + e.getMessage());
+            System.out.println("Press Enter to continue");
+            scanner.nextLine();
+        }
+    }
+    
+    /**
+     * Ask the user for the conditions of a transaction filter
+     * @return new filter, or null if the input was invalid
+     */
+    private TransactionFilter readTransactionFilter() {
+        try {
+            System.out.print("Type - (A)ll, (P)urchases or (S)ales [A]: ");
+            String typeChoice = scanner.nextLine().trim().toLowerCase();
+            Transaction.TransactionType type = null;
+            if (typeChoice.equals("p")) {
+                type = Transaction.TransactionType.PURCHASE;
+            } else if (typeChoice.equals("s")) {
+                type = Transaction.TransactionType.SALE;
+            } else if (!typeChoice.isEmpty() && !typeChoice.equals("a")) {
+                System.out.println("Invalid type. Please enter A, P or S.");
+                return null;
+            }
+            
+            System.out.print("Product ID (blank for any): ");
+            String productInput = scanner.nextLine().trim();
+            int productId = productInput.isEmpty() ? 0 : Integer.parseInt(productInput);
+            
+            System.out.print("From transaction ID (blank for first): ");
+            String fromInput = scanner.nextLine().trim();
+            int minTransactionId = fromInput.isEmpty() ? 1 : Integer.parseInt(fromInput);
+            
+            System.out.print("To transaction ID (blank for last): ");
+            String toInput = scanner.nextLine().trim();
+            int maxTransactionId = toInput.isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(toInput);
+            
+            if (productId < 0 || minTransactionId > maxTransactionId) {
+                System.out.println("Invalid filter. Please check the product ID and transaction ID range.");
+                return null;
+            }
+            return new TransactionFilter(type, productId, minTransactionId, maxTransactionId);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid input. Please enter whole numbers for IDs.");
+            return null;
+        }
+    }
+    
+    /**
+     * Export the transactions matching a filter to a CSV file
+     * Rows are streamed from disk through one buffered writer, so any number can be exported
+     * @param filter Transactions to export
+     */
+    private void exportTransactions(TransactionFilter filter) {
+        System.out.print("Export to file [transactions.csv]: ");
+        String path = scanner.nextLine().trim();
+        if (path.isEmpty()) {
+            path = "transactions.csv";
+        }
+        
+        try (Writer writer = new BufferedWriter(new FileWriter(path), 1 << 16)) {
+            int exported = store.exportTransactions(filter, writer);
+            System.out.println("Exported " + exported + " transactions to " + path);
+        } catch (IOException e) {
+            System.out.println("Error exporting transactions: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Import sales and purchases from a CSV file without the interactive menu
+     * @param path CSV file with lines of the form TYPE,productId,quantity
+     * @param checkpointInterval Accepted lines between saves (0 to save only at the end)
+     */
+    public void importTransactions(String path, int checkpointInterval) {
+        System.out.println("\nImporting transactions from " + path);
+        System.out.println("================");
+        
+        try (Reader reader = new FileReader(path)) {
+            BatchImporter.ImportReport report = store.importTransactions(reader, checkpointInterval);
+            
+            System.out.println("------------------------------------------------------------------------------------");
+            System.out.println("Sales imported: " + report.getSales());
+            System.out.println("Purchases imported: " + report.getPurchases());
+            System.out.println("Lines rejected: " + report.getRejected());
+            System.out.printf("Elapsed: %.3f s (%.0f lines/s)%n", report.getElapsedNanos() / 1e9, report.getLinesPerSecond());
+            if (!report.getRejections().isEmpty()) {
+                System.out.println("\nRejected lines:");
+                for (String rejection : report.getRejections()) {
+                    System.out.println("  - " + rejection);
+                }
+                if (report.getRejected() > report.getRejections().size()) {
+                    System.out.println("  ... and " + (report.getRejected() - report.getRejections().size()) + " more");
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading import file: " + e.getMessage());
+        }
+    }
+    
     /**
      * Display the main menu
      */
@@ -737,106 +1158,20 @@ public class MiniMart {
         System.out.println("(1) Display inventory overview");
         System.out.println("(2) Display total profit report");
         System.out.println("(3) View all transactions");
-        System.out.println("(4) Quit");
+        System.out.println("(4) View product history");
+        System.out.println("(5) Display sales by day and hour");
+        System.out.println("(6) Display performance metrics");
+        System.out.println("(7) Audit totals against the full history");
+        System.out.println("(8) Display top products");
+        System.out.println("(9) Quit");
         System.out.print("Enter Your Choice: ");
     }
     
     /**
-     * Initialize the system with sample data for demonstration
-     */
-    private void initializeSampleData() {
-        // Reset counters to start from 1
-        Product.setNextId(1);
-        Transaction.setNextTransactionId(1);
-        
-        // Create sample products with initial stock
-        Product p1 = new Product("Milk", 2.50, 3.99, 50, 20);
-        Product p2 = new Product("Bread", 1.20, 2.49, 30, 15);
-        Product p3 = new Product("Eggs", 2.00, 3.49, 40, 25);
-        Product p4 = new Product("Apples", 1.50, 2.99, 60, 30);
-        Product p5 = new Product("Chicken Breast", 5.00, 8.99, 25, 10);
-        Product p6 = new Product("Rice", 3.00, 5.49, 35, 15);
-        Product p7 = new Product("Tomatoes", 1.80, 3.29, 45, 20);
-        Product p8 = new Product("Orange Juice", 2.30, 4.49, 20, 10);
-        
-        products.add(p1);
-        products.add(p2);
-        products.add(p3);
-        products.add(p4);
-        products.add(p5);
-        products.add(p6);
-        products.add(p7);
-        products.add(p8);
-        
-        // Create some sample purchase transactions (restocking)
-        // These represent initial purchases that brought stock to current levels
-        Transaction t1 = new Transaction(Transaction.TransactionType.PURCHASE, 1, "Milk", 50, 2.50);
-        Transaction t2 = new Transaction(Transaction.TransactionType.PURCHASE, 2, "Bread", 30, 1.20);
-        Transaction t3 = new Transaction(Transaction.TransactionType.PURCHASE, 3, "Eggs", 40, 2.00);
-        Transaction t4 = new Transaction(Transaction.TransactionType.PURCHASE, 4, "Apples", 60, 1.50);
-        Transaction t5 = new Transaction(Transaction.TransactionType.PURCHASE, 5, "Chicken Breast", 25, 5.00);
-        Transaction t6 = new Transaction(Transaction.TransactionType.PURCHASE, 6, "Rice", 35, 3.00);
-        Transaction t7 = new Transaction(Transaction.TransactionType.PURCHASE, 7, "Tomatoes", 45, 1.80);
-        Transaction t8 = new Transaction(Transaction.TransactionType.PURCHASE, 8, "Orange Juice", 20, 2.30);
-        
-        transactions.add(t1);
-        transactions.add(t2);
-        transactions.add(t3);
-        transactions.add(t4);
-        transactions.add(t5);
-        transactions.add(t6);
-        transactions.add(t7);
-        transactions.add(t8);
-        
-        // Create some sample sale transactions
-        // First, record sales and decrease stock accordingly
-        p1.decreaseStock(10); // Milk: 50 -> 40
-        Transaction s1 = new Transaction(Transaction.TransactionType.SALE, 1, "Milk", 10, 3.99);
-        
-        p2.decreaseStock(15); // Bread: 30 -> 15
-        Transaction s2 = new Transaction(Transaction.TransactionType.SALE, 2, "Bread", 15, 2.49);
-        
-        p3.decreaseStock(20); // Eggs: 40 -> 20
-        Transaction s3 = new Transaction(Transaction.TransactionType.SALE, 3, "Eggs", 20, 3.49);
-        
-        p4.decreaseStock(30); // Apples: 60 -> 30
-        Transaction s4 = new Transaction(Transaction.TransactionType.SALE, 4, "Apples", 30, 2.99);
-        
-        p5.decreaseStock(10); // Chicken Breast: 25 -> 15
-        Transaction s5 = new Transaction(Transaction.TransactionType.SALE, 5, "Chicken Breast", 10, 8.99);
-        
-        p1.decreaseStock(5); // Milk: 40 -> 35 (another sale)
-        Transaction s6 = new Transaction(Transaction.TransactionType.SALE, 1, "Milk", 5, 3.99);
-        
-        p6.decreaseStock(20); // Rice: 35 -> 15
-        Transaction s7 = new Transaction(Transaction.TransactionType.SALE, 6, "Rice", 20, 5.49);
-        
-        p7.decreaseStock(25); // Tomatoes: 45 -> 20
-        Transaction s8 = new Transaction(Transaction.TransactionType.SALE, 7, "Tomatoes", 25, 3.29);
-        
-        transactions.add(s1);
-        transactions.add(s2);
-        transactions.add(s3);
-        transactions.add(s4);
-        transactions.add(s5);
-        transactions.add(s6);
-        transactions.add(s7);
-        transactions.add(s8);
-        
-        // Save the sample data to files
-        saveProducts();
-        saveTransactions();
-        
-        System.out.println("Sample data initialized successfully!");
-        System.out.println("  - 8 products added to catalog");
-        System.out.println("  - 8 purchase transactions recorded");
-        System.out.println("  - 8 sale transactions recorded");
-    }
-    
-    /**
-     * Close the scanner when done
+     * Save pending changes, checkpoint the journal into the snapshot file and close the scanner when done
      */
     public void close() {
+        store.close();
         if (scanner != null) {
             scanner.close();
         }
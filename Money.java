@@ -0,0 +1,81 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money class with helpers for amounts held as a whole number of cents in a long
+ * Prices, totals and profits are kept in cents so that sums over millions of sales are exact
+ * and the arithmetic on the sale path allocates nothing
+ */
+public final class Money {
+    // Marks an amount that was never recorded (e.g. the unit cost of sales saved before it was)
+    public static final long UNKNOWN = Long.MIN_VALUE;
+    
+    private Money() {
+    }
+    
+    /**
+     * Convert a dollar amount to cents, rounding half up to the nearest cent
+     * Used for prices read from files written before amounts were stored in cents
+     * @param dollars Amount in dollars (NaN maps to UNKNOWN)
+     * @return amount in cents
+     */
+    public static long fromDollars(double dollars) {
+        if (Double.isNaN(dollars)) {
+            return UNKNOWN;
+        }
+        // valueOf uses the shortest decimal form of the double, so 1.005 rounds to 1.01
+        return BigDecimal.valueOf(dollars).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+    
+    /**
+     * Parse a dollar amount typed by the user, e.g. "3.99" or "$3.99"
+     * @param text Amount in dollars
+     * @return amount in cents, rounded half up to the nearest cent
+     * @throws NumberFormatException if the text is not a number
+     */
+    public static long parse(String text) {
+        String value = text.trim();
+        if (value.startsWith("$")) {
+            value = value.substring(1).trim();
+        }
+        try {
+            return new BigDecimal(value).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+    
+    /**
+     * Multiply a unit amount by a quantity
+     * @param cents Unit amount in cents
+     * @param quantity Number of units
+     * @return total in cents
+     * @throws ArithmeticException if the total overflows a long
+     */
+    public static long times(long cents, int quantity) {
+        return Math.multiplyExact(cents, (long) quantity);
+    }
+    
+    /**
+     * Format an amount as dollars with two decimals, without the currency sign
+     * @param cents Amount in cents
+     * @return e.g. "12.34", "-0.05" or "?" for UNKNOWN
+     */
+    public static String format(long cents) {
+        if (cents == UNKNOWN) {
+            return "?";
+        }
+        long magnitude = Math.abs(cents);
+        long fraction = magnitude % 100;
+        return (cents < 0 ? "-" : "") + magnitude / 100 + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+    
+    /**
+     * Convert cents to dollars, e.g. for reports that need a ratio or an average
+     * @param cents Amount in cents
+     * @return amount in dollars
+     */
+    public static double toDollars(long cents) {
+        return cents / 100.0;
+    }
+}
@@ -0,0 +1,375 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * PackedProductCatalog class holding the store's products in a ProductTable (one primitive array per field)
+ * instead of one Product object each, for catalogs of a million products or more
+ * Every index refers to table rows by number: the ID index is an array addressed by product ID
+ * (IDs are handed out consecutively), the name index maps each name to its rows, and the low-stock
+ * products are a bit per row. Lookups return ProductTable.View flyweights, so no per-product
+ * object is kept and passes over the catalog read consecutive memory.
+ * Behaves like HeapProductCatalog; a read/write lock lets many checkout lanes look products up
+ * while the catalog is edited.
+ */
+public class PackedProductCatalog implements ProductCatalog {
+    private static final int ID_PAGE_BITS = 12;
+    private static final int ID_PAGE_SIZE = 1 << ID_PAGE_BITS;
+    private static final int[] NO_ROWS = new int[0];
+    
+    private final ProductTable table = new ProductTable();
+    private int[][] rowsById = new int[0][]; // ID -> row + 1 (0 if absent), in pages of ID_PAGE_SIZE IDs
+    private int size;
+    private int lastAddedId;
+    private volatile boolean rowsInIdOrder = true; // false once a product was added after one with a higher ID
+    // Lower-cased name -> rows of the products with that name in ID order (usually just one)
+    private final TreeMap<String, int[]> rowsByName = new TreeMap<>();
+    private final BitSet lowStockRows = new BitSet(); // guarded by its own monitor
+    private final List<StockListener> stockListeners = new CopyOnWriteArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    /**
+     * Constructor to create an empty catalog
+     */
+    public PackedProductCatalog() {
+        table.setStockListener((product, lowStock) -> updateLowStock((ProductTable.View) product, true));
+    }
+    
+    /**
+     * Add a product to the catalog, copying its fields into a new table row
+     * @param product Product to add
+     * @return view of the new row (later changes must go through it, not the product passed in)
+     */
+    @Override
+    public Product add(Product product) {
+        int previous;
+        int row;
+        lock.writeLock().lock();
+        try {
+            previous = rowOf(product.getId());
+            if (previous >= 0) {
+                unindexName(previous); // keep a single row per ID
+                table.remove(previous);
+                size--;
+            }
+            if (product.getId() <= lastAddedId) {
+                rowsInIdOrder = false;
+            }
+            lastAddedId = product.getId();
+            row = table.add(product);
+            setRowOf(product.getId(), row);
+            indexName(row);
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (previous >= 0) {
+            synchronized (lowStockRows) {
+                lowStockRows.clear(previous);
+            }
+        }
+        ProductTable.View view = table.view(row);
+        updateLowStock(view, false); // joining the catalog is not a crossing
+        return view;
+    }
+    
+    @Override
+    public Product findById(int id) {
+        lock.readLock().lock();
+        try {
+            int row = rowOf(id);
+            return row < 0 ? null : table.view(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public Product remove(int id) {
+        ProductTable.View removed;
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(id);
+            if (row < 0) {
+                return null;
+            }
+            removed = table.view(row); // keeps reading the row's last values
+            unindexName(row);
+            table.remove(row);
+            setRowOf(id, -1);
+            size--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        synchronized (lowStockRows) {
+            lowStockRows.clear(removed.getRow());
+        }
+        return removed;
+    }
+    
+    @Override
+    public void rename(Product product, String name) {
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(product.getId());
+            boolean indexed = row >= 0 && product.equals(table.view(row));
+            if (indexed) {
+                unindexName(row);
+            }
+            product.setName(name);
+            if (indexed) {
+                indexName(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<Product> getProductsByName() {
+        lock.readLock().lock();
+        try {
+            ArrayList<Product> sorted = new ArrayList<>(size);
+            for (int[] sameName : rowsByName.values()) {
+                addViews(sameName, sorted);
+            }
+            return Collections.unmodifiableList(sorted);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<Product> findByNamePrefix(String prefix) {
+        String key = nameKey(prefix);
+        lock.readLock().lock();
+        try {
+            ArrayList<Product> matches = new ArrayList<>();
+            addPrefixMatches(key, matches);
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<Product> findByName(String text) {
+        String key = nameKey(text);
+        lock.readLock().lock();
+        try {
+            ArrayList<Product> matches = new ArrayList<>();
+            addPrefixMatches(key, matches);
+            for (Map.Entry<String, int[]> entry : rowsByName.entrySet()) {
+                if (!entry.getKey().startsWith(key) && entry.getKey().contains(key)) {
+                    addViews(entry.getValue(), matches);
+                }
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Get the products currently below their low-stock threshold
+     * Walks the set bits of the low-stock row set, so the cost grows with the number of
+     * low-stock products rather than the size of the catalog
+     * @return copy of the low-stock products in ID order
+     */
+    @Override
+    public List<Product> getLowStockProducts() {
+        ArrayList<Product> lowStock = new ArrayList<>();
+        synchronized (lowStockRows) {
+            for (int row = lowStockRows.nextSetBit(0); row >= 0; row = lowStockRows.nextSetBit(row + 1)) {
+                if (table.getId(row) != 0) { // skip a row being removed
+                    lowStock.add(table.view(row));
+                }
+            }
+        }
+        if (!rowsInIdOrder) {
+            lowStock.sort(Comparator.comparingInt(Product::getId));
+        }
+        return lowStock;
+    }
+    
+    @Override
+    public void addStockListener(StockListener listener) {
+        stockListeners.add(listener);
+    }
+    
+    @Override
+    public void removeStockListener(StockListener listener) {
+        stockListeners.remove(listener);
+    }
+    
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    @Override
+    public List<Product> getProducts() {
+        lock.readLock().lock();
+        try {
+            ArrayList<Product> products = new ArrayList<>(size);
+            for (int row = 0; row < table.getRowCount(); row++) {
+                if (table.getId(row) != 0) {
+                    products.add(table.view(row));
+                }
+            }
+            return Collections.unmodifiableList(products);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public Iterator<Product> iterator() {
+        return getProducts().iterator();
+    }
+    
+    /**
+     * Bring a row's low-stock bit in line with its current stock and threshold,
+     * optionally notifying the listeners if it changed
+     * The state is re-read under the set's monitor, so racing crossings settle on the latest values
+     * (the monitor is only ever taken without the catalog's write lock held)
+     */
+    private void updateLowStock(ProductTable.View product, boolean notify) {
+        boolean lowStock;
+        boolean changed;
+        synchronized (lowStockRows) {
+            int row = product.getRow();
+            lock.readLock().lock();
+            try {
+                if (rowOf(product.getId()) != row) {
+                    return; // removed from the catalog meanwhile
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            lowStock = table.isLowStock(row);
+            changed = lowStockRows.get(row) != lowStock;
+            lowStockRows.set(row, lowStock);
+        }
+        if (changed && notify) {
+            for (StockListener listener : stockListeners) {
+                listener.lowStockChanged(product, lowStock);
+            }
+        }
+    }
+    
+    /**
+     * Get the row of a product ID (lock held)
+     * @return row number, or -1 if the ID is not in the catalog
+     */
+    private int rowOf(int id) {
+        int page = id >>> ID_PAGE_BITS;
+        if (id <= 0 || page >= rowsById.length || rowsById[page] == null) {
+            return -1;
+        }
+        return rowsById[page][id & (ID_PAGE_SIZE - 1)] - 1;
+    }
+    
+    /**
+     * Set or clear (row -1) the row of a product ID (write lock held)
+     */
+    private void setRowOf(int id, int row) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("Product IDs must be positive: " + id);
+        }
+        int page = id >>> ID_PAGE_BITS;
+        if (page >= rowsById.length) {
+            rowsById = Arrays.copyOf(rowsById, Math.max(page + 1, rowsById.length * 2));
+        }
+        if (rowsById[page] == null) {
+            rowsById[page] = new int[ID_PAGE_SIZE];
+        }
+        rowsById[page][id & (ID_PAGE_SIZE - 1)] = row + 1;
+    }
+    
+    /**
+     * Add a row to the name index, keeping rows with the same name in ID order (write lock held)
+     */
+    private void indexName(int row) {
+        String key = nameKey(table.getName(row));
+        int[] sameName = rowsByName.getOrDefault(key, NO_ROWS);
+        int id = table.getId(row);
+        int position = 0;
+        while (position < sameName.length && table.getId(sameName[position]) < id) {
+            position++;
+        }
+        int[] rows = new int[sameName.length + 1];
+        System.arraycopy(sameName, 0, rows, 0, position);
+        rows[position] = row;
+        System.arraycopy(sameName, position, rows, position + 1, sameName.length - position);
+        rowsByName.put(key, rows);
+    }
+    
+    /**
+     * Remove a row from the name index (write lock held)
+     */
+    private void unindexName(int row) {
+        String key = nameKey(table.getName(row));
+        int[] sameName = rowsByName.get(key);
+        if (sameName == null) {
+            return;
+        }
+        int position = 0;
+        while (position < sameName.length && sameName[position] != row) {
+            position++;
+        }
+        if (position == sameName.length) {
+            return;
+        }
+        if (sameName.length == 1) {
+            rowsByName.remove(key);
+            return;
+        }
+        int[] rows = new int[sameName.length - 1];
+        System.arraycopy(sameName, 0, rows, 0, position);
+        System.arraycopy(sameName, position + 1, rows, position, rows.length - position);
+        rowsByName.put(key, rows);
+    }
+    
+    /**
+     * Add the products whose name key starts with the given key, in name order (lock held)
+     */
+    private void addPrefixMatches(String key, List<Product> matches) {
+        for (int[] sameName : rowsByName.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+            addViews(sameName, matches);
+        }
+    }
+    
+    private void addViews(int[] rows, List<Product> products) {
+        for (int row : rows) {
+            products.add(table.view(row));
+        }
+    }
+    
+    /**
+     * Get the name index key of a name
+     */
+    private static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * PersistenceScheduler class to move data file writes off the calling thread
+ * Mutations call markDirty(); a background thread coalesces them and runs the save action
+ * once the oldest unsaved change is maxLatencyMillis old or maxPendingOps changes have piled up,
+ * whichever comes first. flush() saves synchronously, e.g. at a checkpoint or on shutdown.
+ */
+public class PersistenceScheduler {
+    private final Runnable saveAction;
+    private final long maxLatencyMillis;
+    private final int maxPendingOps;
+    private final Object saveLock = new Object(); // only one save runs at a time
+    private final Thread worker;
+    private int pendingOps;
+    private long firstDirtyAt; // System.nanoTime() of the oldest unsaved change
+    private boolean running = true;
+    
+    /**
+     * Constructor to create a scheduler and start its background thread
+     * @param saveAction Action that writes the data files
+     * @param maxLatencyMillis Longest time a change may stay unsaved
+     * @param maxPendingOps Number of unsaved changes that triggers an immediate save
+     */
+    public PersistenceScheduler(Runnable saveAction, long maxLatencyMillis, int maxPendingOps) {
+        this.saveAction = saveAction;
+        this.maxLatencyMillis = Math.max(1, maxLatencyMillis);
+        this.maxPendingOps = Math.max(1, maxPendingOps);
+        this.worker = new Thread(this::runWorker, "persistence-scheduler");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+    
+    /**
+     * Note that the data files are out of date; the save happens on the background thread
+     */
+    public synchronized void markDirty() {
+        if (pendingOps == 0) {
+            firstDirtyAt = System.nanoTime();
+        }
+        pendingOps++;
+        if (pendingOps == 1 || pendingOps >= maxPendingOps) {
+            notifyAll();
+        }
+    }
+    
+    /**
+     * Get the number of changes not yet saved
+     * @return pending change count
+     */
+    public synchronized int getPendingOps() {
+        return pendingOps;
+    }
+    
+    /**
+     * Save pending changes now on the calling thread
+     */
+    public void flush() {
+        synchronized (saveLock) {
+            synchronized (this) {
+                if (pendingOps == 0) {
+                    return;
+                }
+                pendingOps = 0;
+            }
+            runSave();
+        }
+    }
+    
+    /**
+     * Stop the background thread and save any pending changes
+     */
+    public void close() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+    
+    /**
+     * Background loop: wait for a change, then for the latency or pending-ops bound, then save
+     */
+    private void runWorker() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (running && pendingOps == 0) {
+                        wait();
+                    }
+                    while (running && pendingOps > 0 && pendingOps < maxPendingOps) {
+                        long waitMillis = maxLatencyMillis - (System.nanoTime() - firstDirtyAt) / 1_000_000L;
+                        if (waitMillis <= 0) {
+                            break;
+                        }
+                        wait(waitMillis);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (!running) {
+                    return; // close() saves whatever is left
+                }
+            }
+            flush();
+        }
+    }
+    
+    /**
+     * Run the save action, reporting rather than propagating failures
+     */
+    private void runSave() {
+        try {
+            saveAction.run();
+        } catch (RuntimeException e) {
+            System.out.println("Error saving data files: " + e.getMessage());
+        }
+    }
+}
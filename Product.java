@@ -1,56 +1,84 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Product class representing a product in the supermarket
- * Implements Serializable for file I/O operations
+ * Prices are held in cents (see Money)
+ * Implements Serializable so products saved by earlier versions can still be read
  */
 public class Product implements Serializable {
     private static final long serialVersionUID = 1L;
     
     private int id;
     private String name;
-    private double purchasePrice;  // Cost price per unit
-    private double sellingPrice;   // Retail price per unit
-    private int stockQuantity;     // Current stock quantity
-    private int lowStockThreshold; // Alert when stock < threshold
-    private static int productCount = 0;
-    private static int nextId = 1;
+    private long purchasePriceCents; // Cost price per unit
+    private long sellingPriceCents;  // Retail price per unit
+    private volatile int stockQuantity; // Current stock quantity (updated atomically)
+    private volatile int lowStockThreshold; // Alert when stock < threshold
+    private transient volatile StockListener stockListener; // set by the catalog holding this product
+    private static final AtomicInteger productCount = new AtomicInteger(0);
+    private static final AtomicInteger nextId = new AtomicInteger(1);
+    private static final AtomicIntegerFieldUpdater<Product> STOCK =
+        AtomicIntegerFieldUpdater.newUpdater(Product.class, "stockQuantity");
+    // Serialized form of earlier versions, which stored prices as double dollars
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("id", int.class),
+        new ObjectStreamField("name", String.class),
+        new ObjectStreamField("purchasePrice", double.class),
+        new ObjectStreamField("sellingPrice", double.class),
+        new ObjectStreamField("stockQuantity", int.class),
+        new ObjectStreamField("lowStockThreshold", int.class)
+    };
     
     /**
      * Constructor to create a new product
      * @param name Product's name
-     * @param purchasePrice Cost price per unit
-     * @param sellingPrice Retail price per unit
+     * @param purchasePriceCents Cost price per unit in cents
+     * @param sellingPriceCents Retail price per unit in cents
      * @param stockQuantity Initial stock quantity
      * @param lowStockThreshold Low stock alert threshold
      */
-    public Product(String name, double purchasePrice, double sellingPrice, int stockQuantity, int lowStockThreshold) {
-        this.id = nextId++;
+    public Product(String name, long purchasePriceCents, long sellingPriceCents, int stockQuantity, int lowStockThreshold) {
+        this.id = nextId.getAndIncrement();
         this.name = name;
-        this.purchasePrice = purchasePrice;
-        this.sellingPrice = sellingPrice;
+        this.purchasePriceCents = purchasePriceCents;
+        this.sellingPriceCents = sellingPriceCents;
         this.stockQuantity = stockQuantity;
         this.lowStockThreshold = lowStockThreshold;
-        productCount++;
+        productCount.incrementAndGet();
     }
     
     /**
      * Constructor with specified ID (for loading from file)
      * @param id Product's ID
      * @param name Product's name
-     * @param purchasePrice Cost price per unit
-     * @param sellingPrice Retail price per unit
+     * @param purchasePriceCents Cost price per unit in cents
+     * @param sellingPriceCents Retail price per unit in cents
      * @param stockQuantity Current stock quantity
      * @param lowStockThreshold Low stock alert threshold
      */
-    public Product(int id, String name, double purchasePrice, double sellingPrice, int stockQuantity, int lowStockThreshold) {
+    public Product(int id, String name, long purchasePriceCents, long sellingPriceCents, int stockQuantity, int lowStockThreshold) {
         this.id = id;
         this.name = name;
-        this.purchasePrice = purchasePrice;
-        this.sellingPrice = sellingPrice;
+        this.purchasePriceCents = purchasePriceCents;
+        this.sellingPriceCents = sellingPriceCents;
         this.stockQuantity = stockQuantity;
         this.lowStockThreshold = lowStockThreshold;
-        productCount++;
+        productCount.incrementAndGet();
+    }
+    
+    /**
+     * Constructor for subclasses that keep the product's data elsewhere (see ProductTable.View)
+     * Does not count as a new product
+     * @param id Product's ID
+     */
+    protected Product(int id) {
+        this.id = id;
     }
     
     // Getter methods
@@ -62,12 +90,12 @@ public class Product implements Serializable {
         return name;
     }
     
-    public double getPurchasePrice() {
-        return purchasePrice;
+    public long getPurchasePriceCents() {
+        return purchasePriceCents;
     }
     
-    public double getSellingPrice() {
-        return sellingPrice;
+    public long getSellingPriceCents() {
+        return sellingPriceCents;
     }
     
     public int getStockQuantity() {
@@ -83,41 +111,93 @@ public class Product implements Serializable {
         this.name = name;
     }
     
-    public void setPurchasePrice(double purchasePrice) {
-        this.purchasePrice = purchasePrice;
+    public void setPurchasePriceCents(long purchasePriceCents) {
+        this.purchasePriceCents = purchasePriceCents;
     }
     
-    public void setSellingPrice(double sellingPrice) {
-        this.sellingPrice = sellingPrice;
+    public void setSellingPriceCents(long sellingPriceCents) {
+        this.sellingPriceCents = sellingPriceCents;
     }
     
     public void setStockQuantity(int stockQuantity) {
-        this.stockQuantity = stockQuantity;
+        int previous = STOCK.getAndSet(this, stockQuantity);
+        checkThresholdCrossed(previous, stockQuantity, lowStockThreshold);
     }
     
     public void setLowStockThreshold(int lowStockThreshold) {
+        int previous = this.lowStockThreshold;
         this.lowStockThreshold = lowStockThreshold;
+        int stock = stockQuantity;
+        if ((stock < previous) != (stock < lowStockThreshold)) {
+            notifyStockListener(stock < lowStockThreshold);
+        }
+    }
+    
+    /**
+     * Set the listener told when this product crosses its low-stock threshold
+     * @param stockListener Listener, or null to stop notifications
+     */
+    public void setStockListener(StockListener stockListener) {
+        this.stockListener = stockListener;
     }
     
     /**
      * Increase stock quantity (for purchasing/restocking)
-     * @param quantity Amount to add to stock
+     * The bound check and the increase happen as one atomic step, so concurrent
+     * purchases can never wrap the stock past Integer.MAX_VALUE
+     * @param quantity Amount to add to stock (must be positive)
+     * @return true if successful, false if the stock would exceed Integer.MAX_VALUE
      */
-    public void increaseStock(int quantity) {
-        this.stockQuantity += quantity;
+    public boolean increaseStock(int quantity) {
+        while (true) {
+            int current = this.stockQuantity;
+            if (current > Integer.MAX_VALUE - quantity) {
+                return false;
+            }
+            if (STOCK.compareAndSet(this, current, current + quantity)) {
+                checkThresholdCrossed(current, current + quantity, lowStockThreshold);
+                return true;
+            }
+        }
     }
     
     /**
      * Decrease stock quantity (for sales)
+     * The stock check and the decrease happen as one atomic step, so concurrent
+     * sales can never take the stock below zero
      * @param quantity Amount to subtract from stock
      * @return true if successful, false if insufficient stock
      */
     public boolean decreaseStock(int quantity) {
-        if (this.stockQuantity >= quantity) {
-            this.stockQuantity -= quantity;
-            return true;
+        while (true) {
+            int current = this.stockQuantity;
+            if (current < quantity) {
+                return false;
+            }
+            if (STOCK.compareAndSet(this, current, current - quantity)) {
+                checkThresholdCrossed(current, current - quantity, lowStockThreshold);
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Notify the listener if a stock change moved the product across its threshold
+     */
+    private void checkThresholdCrossed(int before, int after, int threshold) {
+        if ((before < threshold) != (after < threshold)) {
+            notifyStockListener(after < threshold);
+        }
+    }
+    
+    /**
+     * Tell the listener, if any, that the product crossed its threshold
+     */
+    private void notifyStockListener(boolean lowStock) {
+        StockListener listener = stockListener;
+        if (listener != null) {
+            listener.lowStockChanged(this, lowStock);
         }
-        return false;
     }
     
     /**
@@ -133,14 +213,14 @@ public class Product implements Serializable {
      * @return number of products created
      */
     public static int getProductCount() {
-        return productCount;
+        return productCount.get();
     }
     
     /**
      * Reset the product count to zero
      */
     public static void resetProductCount() {
-        productCount = 0;
+        productCount.set(0);
     }
     
     /**
@@ -148,7 +228,7 @@ public class Product implements Serializable {
      * @param count the new product count
      */
     public static void setProductCount(int count) {
-        productCount = count;
+        productCount.set(count);
     }
     
     /**
@@ -156,7 +236,7 @@ public class Product implements Serializable {
      * @return next ID
      */
     public static int getNextId() {
-        return nextId;
+        return nextId.get();
     }
     
     /**
@@ -164,14 +244,14 @@ public class Product implements Serializable {
      * @param id the next ID to use
      */
     public static void setNextId(int id) {
-        nextId = id;
+        nextId.set(id);
     }
     
     /**
      * Reset the next ID counter
      */
     public static void resetNextId() {
-        nextId = 1;
+        nextId.set(1);
     }
     
     /**
@@ -179,14 +259,43 @@ public class Product implements Serializable {
      */
     public void displayProduct() {
         String stockStatus = isLowStock() ? "LOW" : "OK";
-        System.out.printf("%-3d | %-20s | $%-10.2f | $%-10.2f | %-8d | %-8d | %s%n", 
-                         id, name, purchasePrice, sellingPrice, stockQuantity, lowStockThreshold, stockStatus);
+        System.out.printf("%-3d | %-20s | $%-10s | $%-10s | %-8d | %-8d | %s%n", 
+                         getId(), getName(), Money.format(getPurchasePriceCents()), Money.format(getSellingPriceCents()),
+                         getStockQuantity(), getLowStockThreshold(), stockStatus);
     }
     
     @Override
     public String toString() {
-        return String.format("ID: %d, Name: %s, Purchase Price: $%.2f, Selling Price: $%.2f, Stock: %d, Threshold: %d", 
-                           id, name, purchasePrice, sellingPrice, stockQuantity, lowStockThreshold);
+        return String.format("ID: %d, Name: %s, Purchase Price: $%s, Selling Price: $%s, Stock: %d, Threshold: %d", 
+                           getId(), getName(), Money.format(getPurchasePriceCents()), Money.format(getSellingPriceCents()),
+                           getStockQuantity(), getLowStockThreshold());
+    }
+    
+    /**
+     * Write the product in the serialized form of earlier versions (prices as dollars)
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", getId());
+        fields.put("name", getName());
+        fields.put("purchasePrice", Money.toDollars(getPurchasePriceCents()));
+        fields.put("sellingPrice", Money.toDollars(getSellingPriceCents()));
+        fields.put("stockQuantity", getStockQuantity());
+        fields.put("lowStockThreshold", getLowStockThreshold());
+        out.writeFields();
+    }
+    
+    /**
+     * Read a product saved with Java serialization, converting its prices to cents
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = fields.get("id", 0);
+        name = (String) fields.get("name", null);
+        purchasePriceCents = Money.fromDollars(fields.get("purchasePrice", 0.0));
+        sellingPriceCents = Money.fromDollars(fields.get("sellingPrice", 0.0));
+        stockQuantity = fields.get("stockQuantity", 0);
+        lowStockThreshold = fields.get("lowStockThreshold", 0);
     }
 }
 
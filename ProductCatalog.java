@@ -0,0 +1,99 @@
+import java.util.List;
+
+/**
+ * ProductCatalog interface for the store's set of products and the indexes over it
+ * Lookups by product ID are O(1), listings in name order and name searches need no sorting,
+ * and the products below their low-stock threshold are tracked as their stock crosses it.
+ * Implementations are safe to use from many checkout lanes at once.
+ *
+ * HeapProductCatalog keeps one Product object per product; PackedProductCatalog keeps the
+ * product fields in parallel primitive arrays (ProductTable) for very large catalogs.
+ */
+public interface ProductCatalog extends Iterable<Product> {
+    /**
+     * Add a product to the catalog, replacing any product with the same ID
+     * @param product Product to add
+     * @return the product as held by the catalog (a packed catalog copies it into its table)
+     */
+    Product add(Product product);
+    
+    /**
+     * Find a product by ID
+     * @param id Product ID
+     * @return Product object or null if not found
+     */
+    Product findById(int id);
+    
+    /**
+     * Remove a product from the catalog
+     * @param id Product ID
+     * @return removed Product or null if not found
+     */
+    Product remove(int id);
+    
+    /**
+     * Rename a product, keeping the name index in order
+     * @param product Product in the catalog
+     * @param name New name
+     */
+    void rename(Product product, String name);
+    
+    /**
+     * Get all products sorted by name (ignoring case)
+     * @return read-only copy of the products in name order
+     */
+    List<Product> getProductsByName();
+    
+    /**
+     * Find the products whose name starts with the given text (ignoring case)
+     * @param prefix Start of the name
+     * @return matching products in name order
+     */
+    List<Product> findByNamePrefix(String prefix);
+    
+    /**
+     * Find the products whose name contains the given text anywhere (ignoring case)
+     * Prefix matches come first, followed by the other matches, each in name order
+     * @param text Part of the name
+     * @return matching products
+     */
+    List<Product> findByName(String text);
+    
+    /**
+     * Get the products currently below their low-stock threshold
+     * @return copy of the low-stock products in ID order
+     */
+    List<Product> getLowStockProducts();
+    
+    /**
+     * Register a listener told each time a product in the catalog falls below its
+     * low-stock threshold or is restocked above it (e.g. to trigger a reorder)
+     * Listeners are called on the thread that changed the stock, after the low-stock set was updated
+     * @param listener Listener to add
+     */
+    void addStockListener(StockListener listener);
+    
+    /**
+     * Unregister a stock listener
+     * @param listener Listener to remove
+     */
+    void removeStockListener(StockListener listener);
+    
+    /**
+     * Get the number of products in the catalog
+     * @return number of products
+     */
+    int size();
+    
+    /**
+     * Check whether the catalog is empty
+     * @return true if there are no products
+     */
+    boolean isEmpty();
+    
+    /**
+     * Get all products in insertion order
+     * @return read-only copy of the products
+     */
+    List<Product> getProducts();
+}
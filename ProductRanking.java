@@ -0,0 +1,28 @@
+import java.util.Comparator;
+
+/**
+ * ProductRanking enum listing the orders in which products are ranked in top-N lists
+ * Used by the leaderboard maintained as sales are recorded and by the reports read from the history
+ */
+public enum ProductRanking {
+    UNITS, REVENUE, PROFIT;
+    
+    long valueOf(ProductTotals totals) {
+        switch (this) {
+            case UNITS:
+                return totals.getUnitsSold();
+            case REVENUE:
+                return totals.getRevenueCents();
+            default:
+                return totals.getProfitCents();
+        }
+    }
+    
+    /**
+     * Order products from best to worst, breaking ties by product ID
+     */
+    Comparator<ProductTotals> bestFirst() {
+        return Comparator.comparingLong((ProductTotals totals) -> valueOf(totals)).reversed()
+                         .thenComparingInt(ProductTotals::getProductId);
+    }
+}
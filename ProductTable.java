@@ -0,0 +1,284 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * ProductTable class storing products as parallel primitive arrays (struct of arrays) instead of one object each
+ * Row r holds one product: its ID, name, purchase and selling prices in cents, stock and low-stock threshold,
+ * each in its own array, so a pass over one field (e.g. stock against threshold) reads consecutive memory.
+ * The arrays are split into pages of PAGE_SIZE rows: the table grows by adding pages, never by copying rows,
+ * so stock can be updated with compare-and-set on the array element while rows are being added.
+ * Rows are read and written through View objects, flyweight Products holding only the row number.
+ *
+ * Adding and removing rows is not thread-safe (PackedProductCatalog does it under its write lock);
+ * stock updates through views are atomic and may run on any thread.
+ */
+public class ProductTable {
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    
+    private volatile Page[] pages = new Page[0];
+    private int rowCount;
+    private volatile StockListener stockListener;
+    
+    /**
+     * The columns of PAGE_SIZE consecutive rows
+     */
+    private static class Page {
+        final int[] ids = new int[PAGE_SIZE]; // 0 once the row is removed
+        final String[] names = new String[PAGE_SIZE];
+        final long[] purchasePricesCents = new long[PAGE_SIZE];
+        final long[] sellingPricesCents = new long[PAGE_SIZE];
+        final int[] stockQuantities = new int[PAGE_SIZE];   // accessed through INTS
+        final int[] lowStockThresholds = new int[PAGE_SIZE]; // accessed through INTS
+    }
+    
+    /**
+     * Flyweight Product reading and writing one row of the table
+     * Views are cheap to create and are not kept by the table; two views of the same row are equal.
+     * A view of a removed row keeps showing the row's last values, as a removed Product object would.
+     */
+    public static final class View extends Product {
+        private static final long serialVersionUID = 1L;
+        
+        private final transient ProductTable table;
+        private final transient int row;
+        
+        private View(ProductTable table, int row, int id) {
+            super(id);
+            this.table = table;
+            this.row = row;
+        }
+        
+        /**
+         * Get the row this view reads
+         * @return row number in the table
+         */
+        public int getRow() {
+            return row;
+        }
+        
+        private Page page() {
+            return table.pages[row >>> PAGE_BITS];
+        }
+        
+        @Override
+        public String getName() {
+            return page().names[row & PAGE_MASK];
+        }
+        
+        @Override
+        public long getPurchasePriceCents() {
+            return page().purchasePricesCents[row & PAGE_MASK];
+        }
+        
+        @Override
+        public long getSellingPriceCents() {
+            return page().sellingPricesCents[row & PAGE_MASK];
+        }
+        
+        @Override
+        public int getStockQuantity() {
+            return (int) INTS.getVolatile(page().stockQuantities, row & PAGE_MASK);
+        }
+        
+        @Override
+        public int getLowStockThreshold() {
+            return (int) INTS.getVolatile(page().lowStockThresholds, row & PAGE_MASK);
+        }
+        
+        @Override
+        public void setName(String name) {
+            page().names[row & PAGE_MASK] = name;
+        }
+        
+        @Override
+        public void setPurchasePriceCents(long purchasePriceCents) {
+            page().purchasePricesCents[row & PAGE_MASK] = purchasePriceCents;
+        }
+        
+        @Override
+        public void setSellingPriceCents(long sellingPriceCents) {
+            page().sellingPricesCents[row & PAGE_MASK] = sellingPriceCents;
+        }
+        
+        @Override
+        public void setStockQuantity(int stockQuantity) {
+            int previous = (int) INTS.getAndSet(page().stockQuantities, row & PAGE_MASK, stockQuantity);
+            checkThresholdCrossed(previous, stockQuantity, getLowStockThreshold());
+        }
+        
+        @Override
+        public void setLowStockThreshold(int lowStockThreshold) {
+            int previous = (int) INTS.getAndSet(page().lowStockThresholds, row & PAGE_MASK, lowStockThreshold);
+            int stock = getStockQuantity();
+            if ((stock < previous) != (stock < lowStockThreshold)) {
+                table.notifyStockListener(this, stock < lowStockThreshold);
+            }
+        }
+        
+        /**
+         * Ignored: threshold crossings of every row are reported to the table's listener instead
+         */
+        @Override
+        public void setStockListener(StockListener stockListener) {
+        }
+        
+        @Override
+        public boolean increaseStock(int quantity) {
+            int[] stockQuantities = page().stockQuantities;
+            int index = row & PAGE_MASK;
+            while (true) {
+                int current = (int) INTS.getVolatile(stockQuantities, index);
+                if (current > Integer.MAX_VALUE - quantity) {
+                    return false;
+                }
+                if (INTS.compareAndSet(stockQuantities, index, current, current + quantity)) {
+                    checkThresholdCrossed(current, current + quantity, getLowStockThreshold());
+                    return true;
+                }
+            }
+        }
+        
+        @Override
+        public boolean decreaseStock(int quantity) {
+            int[] stockQuantities = page().stockQuantities;
+            int index = row & PAGE_MASK;
+            while (true) {
+                int current = (int) INTS.getVolatile(stockQuantities, index);
+                if (current < quantity) {
+                    return false;
+                }
+                if (INTS.compareAndSet(stockQuantities, index, current, current - quantity)) {
+                    checkThresholdCrossed(current, current - quantity, getLowStockThreshold());
+                    return true;
+                }
+            }
+        }
+        
+        @Override
+        public boolean isLowStock() {
+            return getStockQuantity() < getLowStockThreshold();
+        }
+        
+        private void checkThresholdCrossed(int before, int after, int threshold) {
+            if ((before < threshold) != (after < threshold)) {
+                table.notifyStockListener(this, after < threshold);
+            }
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof View && ((View) other).table == table && ((View) other).row == row;
+        }
+        
+        @Override
+        public int hashCode() {
+            return row;
+        }
+        
+        /**
+         * Serialize as a plain Product, since the table is not serializable
+         */
+        private Object writeReplace() {
+            return new Product(getId(), getName(), getPurchasePriceCents(), getSellingPriceCents(),
+                               getStockQuantity(), getLowStockThreshold());
+        }
+    }
+    
+    /**
+     * Append a row holding a copy of a product's fields
+     * @param product Product to copy
+     * @return the new row number
+     */
+    public int add(Product product) {
+        int row = rowCount;
+        if ((row >>> PAGE_BITS) == pages.length) {
+            Page[] grown = Arrays.copyOf(pages, pages.length + 1);
+            grown[pages.length] = new Page();
+            pages = grown;
+        }
+        Page page = pages[row >>> PAGE_BITS];
+        int index = row & PAGE_MASK;
+        page.ids[index] = product.getId();
+        page.names[index] = product.getName();
+        page.purchasePricesCents[index] = product.getPurchasePriceCents();
+        page.sellingPricesCents[index] = product.getSellingPriceCents();
+        INTS.setVolatile(page.stockQuantities, index, product.getStockQuantity());
+        INTS.setVolatile(page.lowStockThresholds, index, product.getLowStockThreshold());
+        rowCount = row + 1;
+        return row;
+    }
+    
+    /**
+     * Mark a row as removed (its other fields stay readable through existing views)
+     * Removed rows are not reused, so a view never starts showing another product
+     * @param row Row number
+     */
+    public void remove(int row) {
+        pages[row >>> PAGE_BITS].ids[row & PAGE_MASK] = 0;
+    }
+    
+    /**
+     * Get a view of a row
+     * @param row Row number
+     * @return flyweight Product reading that row
+     */
+    public View view(int row) {
+        return new View(this, row, getId(row));
+    }
+    
+    /**
+     * Get the product ID stored in a row
+     * @param row Row number
+     * @return product ID, or 0 if the row was removed
+     */
+    public int getId(int row) {
+        return pages[row >>> PAGE_BITS].ids[row & PAGE_MASK];
+    }
+    
+    /**
+     * Get the name stored in a row
+     * @param row Row number
+     * @return product name
+     */
+    public String getName(int row) {
+        return pages[row >>> PAGE_BITS].names[row & PAGE_MASK];
+    }
+    
+    /**
+     * Check whether a row's stock is below its threshold
+     * @param row Row number
+     * @return true if the row is low in stock
+     */
+    public boolean isLowStock(int row) {
+        Page page = pages[row >>> PAGE_BITS];
+        int index = row & PAGE_MASK;
+        return (int) INTS.getVolatile(page.stockQuantities, index) < (int) INTS.getVolatile(page.lowStockThresholds, index);
+    }
+    
+    /**
+     * Get the number of rows, including removed ones
+     * @return number of rows added
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+    
+    /**
+     * Set the listener told when a row crosses its low-stock threshold
+     * @param stockListener Listener (called with the view of the row), or null to stop notifications
+     */
+    public void setStockListener(StockListener stockListener) {
+        this.stockListener = stockListener;
+    }
+    
+    private void notifyStockListener(View view, boolean lowStock) {
+        StockListener listener = stockListener;
+        if (listener != null) {
+            listener.lowStockChanged(view, lowStock);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * ProductTotals class holding one product's sales totals together with its ID, for ranking and display
+ */
+public class ProductTotals extends SalesTotals {
+    private final int productId;
+    
+    ProductTotals(int productId) {
+        this.productId = productId;
+    }
+    
+    public int getProductId() {
+        return productId;
+    }
+}
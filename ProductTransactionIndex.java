@@ -0,0 +1,61 @@
+import java.util.Arrays;
+
+/**
+ * ProductTransactionIndex class mapping each product ID to the positions of its transactions
+ * in the transaction history, so one product's history is read without scanning the others
+ * Positions are stable: compaction keeps every transaction at the same position.
+ * Positions are kept in growable primitive int arrays, in increasing order.
+ * Not thread-safe; the TransactionLog guards it with its lock.
+ */
+public class ProductTransactionIndex {
+    private final IntHashMap<Positions> products = new IntHashMap<>();
+    
+    /**
+     * Positions of one product's transactions
+     */
+    private static class Positions {
+        private int[] values = new int[4];
+        private int size;
+        
+        void add(int position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+    }
+    
+    /**
+     * Record the position of a transaction
+     * @param productId Product ID of the transaction
+     * @param position Position of the transaction in the history (above every earlier one)
+     */
+    public void add(int productId, int position) {
+        Positions positions = products.get(productId);
+        if (positions == null) {
+            positions = new Positions();
+            products.put(productId, positions);
+        }
+        positions.add(position);
+    }
+    
+    /**
+     * Get the positions of a product's transactions
+     * @param productId Product ID
+     * @return copy of the positions in increasing order (empty if the product has no transactions)
+     */
+    public int[] getPositions(int productId) {
+        Positions positions = products.get(productId);
+        return positions == null ? new int[0] : Arrays.copyOf(positions.values, positions.size);
+    }
+    
+    /**
+     * Get the number of transactions of a product
+     * @param productId Product ID
+     * @return number of transactions
+     */
+    public int getCount(int productId) {
+        Positions positions = products.get(productId);
+        return positions == null ? 0 : positions.size;
+    }
+}
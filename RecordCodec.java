@@ -0,0 +1,326 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * RecordCodec class encoding products and transactions in MiniMart's binary record format
+ *
+ * Data files start with a header: [int magic][short version]. Products are written as
+ * fixed-width numeric fields followed by a length-prefixed UTF-8 name. Amounts are written
+ * as long cents; records from before that stored double dollars and are converted on read.
+ * Transactions are
+ * written as frames [int payload length][payload][int CRC32 of payload], the same frames
+ * the transaction journal appends, so a frame can be validated wherever it is read from.
+ *
+ * A codec reuses an internal buffer and is not thread-safe.
+ */
+public class RecordCodec {
+    public static final int PRODUCTS_MAGIC = 0x4D4D5044;     // "MMPD"
+    public static final int TRANSACTIONS_MAGIC = 0x4D4D5458; // "MMTX"
+    public static final short FILE_VERSION = 1;
+    
+    // Written before the product count by products files whose prices are in cents;
+    // older files start directly with the (non-negative) count and store double dollars
+    public static final int PRODUCTS_FORMAT_CENTS = -3;
+    // Written instead by products files that also record, after the next ID, the ID of the newest
+    // transaction whose stock change they include; later transactions are re-applied on load
+    public static final int PRODUCTS_FORMAT_LAST_TRANSACTION = -4;
+    // Written before the transaction count by snapshots whose records all have amounts in cents
+    // and a unit cost (version 3 or later); older snapshots start with the count
+    public static final int TRANSACTIONS_FORMAT_CENTS = -3;
+    
+    private static final byte TRANSACTION_VERSION = 4;
+    private static final byte TRANSACTION_VERSION_NO_TIME = 3; // written before the time was recorded
+    private static final byte TRANSACTION_VERSION_DOLLARS = 2; // amounts as double dollars
+    private static final byte TRANSACTION_VERSION_NO_COST = 1; // written before unit cost was recorded
+    // version, id, type, productId, quantity, unitPrice, unitCost, totalAmount, timestamp, name length
+    private static final int TRANSACTION_FIXED_LENGTH = 1 + 4 + 1 + 4 + 4 + 8 + 8 + 8 + 8 + 2;
+    public static final int MIN_TRANSACTION_PAYLOAD = TRANSACTION_FIXED_LENGTH - 16; // version 1
+    public static final int MAX_TRANSACTION_PAYLOAD = 64 * 1024;
+    private static final int MAX_NAME_LENGTH = 0xFFFF;
+    
+    private ByteBuffer buffer = ByteBuffer.allocate(256);
+    private final CRC32 crc = new CRC32();
+    private int olderRecordsDecoded; // records decoded with amounts in dollars (version 2 or earlier)
+    
+    /**
+     * Write a data file header
+     * @param out Destination stream
+     * @param magic PRODUCTS_MAGIC or TRANSACTIONS_MAGIC
+     * @throws IOException if the header cannot be written
+     */
+    public static void writeHeader(DataOutputStream out, int magic) throws IOException {
+        out.writeInt(magic);
+        out.writeShort(FILE_VERSION);
+    }
+    
+    /**
+     * Check whether a stream starts with the given record file header, consuming it if so
+     * The stream is reset to its start otherwise (e.g. for a legacy Java-serialized file)
+     * @param in Source stream (must support mark/reset)
+     * @param magic PRODUCTS_MAGIC or TRANSACTIONS_MAGIC
+     * @return true if the header was found and consumed
+     * @throws IOException if the header has an unsupported version or cannot be read
+     */
+    public static boolean readHeader(DataInputStream in, int magic) throws IOException {
+        in.mark(8);
+        if (in.readInt() != magic) {
+            in.reset();
+            return false;
+        }
+        short version = in.readShort();
+        if (version != FILE_VERSION) {
+            throw new IOException("Unsupported data file version: " + version);
+        }
+        return true;
+    }
+    
+    /**
+     * Write one product record
+     * @param out Destination stream
+     * @param product Product to write
+     * @throws IOException if the record cannot be written
+     */
+    public void writeProduct(DataOutputStream out, Product product) throws IOException {
+        writeProduct(out, product, product.getStockQuantity());
+    }
+    
+    /**
+     * Write one product record with a stock level read earlier
+     * @param out Destination stream
+     * @param product Product to write
+     * @param stockQuantity Stock level to record instead of the product's current one
+     * @throws IOException if the record cannot be written
+     */
+    public void writeProduct(DataOutputStream out, Product product, int stockQuantity) throws IOException {
+        out.writeInt(product.getId());
+        out.writeLong(product.getPurchasePriceCents());
+        out.writeLong(product.getSellingPriceCents());
+        out.writeInt(stockQuantity);
+        out.writeInt(product.getLowStockThreshold());
+        writeString(out, product.getName());
+    }
+    
+    /**
+     * Read one product record
+     * @param in Source stream
+     * @param pricesInCents false for files written before PRODUCTS_FORMAT_CENTS (double dollars)
+     * @return Product with its saved ID
+     * @throws IOException if the record cannot be read
+     */
+    public Product readProduct(DataInputStream in, boolean pricesInCents) throws IOException {
+        int id = in.readInt();
+        long purchasePriceCents = pricesInCents ? in.readLong() : Money.fromDollars(in.readDouble());
+        long sellingPriceCents = pricesInCents ? in.readLong() : Money.fromDollars(in.readDouble());
+        int stockQuantity = in.readInt();
+        int lowStockThreshold = in.readInt();
+        String name = readString(in);
+        return new Product(id, name, purchasePriceCents, sellingPriceCents, stockQuantity, lowStockThreshold);
+    }
+    
+    /**
+     * Write one transaction frame
+     * @param out Destination stream
+     * @param transaction Transaction to write
+     * @throws IOException if the frame cannot be written
+     */
+    public void writeTransaction(DataOutputStream out, Transaction transaction) throws IOException {
+        ByteBuffer frame = encodeTransaction(transaction);
+        out.write(frame.array(), 0, frame.limit());
+    }
+    
+    /**
+     * Read and verify one transaction frame
+     * @param in Source stream
+     * @return decoded Transaction
+     * @throws EOFException if the stream ends before or inside the frame
+     * @throws IOException if the frame is corrupt
+     */
+    public Transaction readTransaction(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < MIN_TRANSACTION_PAYLOAD || length > MAX_TRANSACTION_PAYLOAD) {
+            throw new IOException("Invalid transaction record length: " + length);
+        }
+        ensureCapacity(length);
+        in.readFully(buffer.array(), 0, length);
+        int checksum = in.readInt();
+        if (checksum(buffer.array(), 0, length) != checksum) {
+            throw new IOException("Transaction record checksum mismatch");
+        }
+        buffer.clear();
+        buffer.limit(length);
+        return decodeTransaction(buffer);
+    }
+    
+    /**
+     * Copy one transaction frame unchanged after verifying it, without decoding it
+     * @param in Source stream positioned at a frame
+     * @param out Destination stream
+     * @throws IOException if the frame is corrupt or cannot be copied
+     */
+    public void copyTransaction(DataInputStream in, DataOutputStream out) throws IOException {
+        int length = in.readInt();
+        if (length < MIN_TRANSACTION_PAYLOAD || length > MAX_TRANSACTION_PAYLOAD) {
+            throw new IOException("Invalid transaction record length: " + length);
+        }
+        ensureCapacity(length);
+        in.readFully(buffer.array(), 0, length);
+        int checksum = in.readInt();
+        if (checksum(buffer.array(), 0, length) != checksum) {
+            throw new IOException("Transaction record checksum mismatch");
+        }
+        out.writeInt(length);
+        out.write(buffer.array(), 0, length);
+        out.writeInt(checksum);
+    }
+    
+    /**
+     * Skip one transaction frame without decoding it
+     * The checksum is not verified; records are verified when they are read
+     * @param in Source stream positioned at a frame
+     * @return size of the frame in bytes
+     * @throws IOException if the frame length is invalid or the stream ends
+     */
+    public int skipTransaction(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < MIN_TRANSACTION_PAYLOAD || length > MAX_TRANSACTION_PAYLOAD) {
+            throw new IOException("Invalid transaction record length: " + length);
+        }
+        // Read rather than seek past the frame, so the stream's buffer is reused
+        ensureCapacity(length + 4);
+        in.readFully(buffer.array(), 0, length + 4);
+        return 4 + length + 4;
+    }
+    
+    /**
+     * Get the transaction ID of the frame last passed to skipTransaction()
+     * @return transaction ID
+     */
+    public int getSkippedTransactionId() {
+        return ByteBuffer.wrap(buffer.array()).getInt(1); // after the version byte
+    }
+    
+    /**
+     * Get the product ID of the frame last passed to skipTransaction()
+     * @return product ID
+     */
+    public int getSkippedProductId() {
+        return ByteBuffer.wrap(buffer.array()).getInt(6); // after the version, transaction ID and type
+    }
+    
+    /**
+     * Encode a transaction as a complete frame
+     * @param transaction Transaction to encode
+     * @return internal buffer holding the frame between position 0 and its limit
+     * @throws IOException if the transaction is too large to encode
+     */
+    public ByteBuffer encodeTransaction(Transaction transaction) throws IOException {
+        byte[] name = transaction.getProductName().getBytes(StandardCharsets.UTF_8);
+        int length = TRANSACTION_FIXED_LENGTH + name.length;
+        if (length > MAX_TRANSACTION_PAYLOAD) {
+            throw new IOException("Transaction record too large: " + length + " bytes");
+        }
+        ensureCapacity(length + 8);
+        
+        buffer.clear();
+        buffer.putInt(length);
+        buffer.put(TRANSACTION_VERSION);
+        buffer.putInt(transaction.getTransactionId());
+        buffer.put((byte) transaction.getType().ordinal());
+        buffer.putInt(transaction.getProductId());
+        buffer.putInt(transaction.getQuantity());
+        buffer.putLong(transaction.getUnitPriceCents());
+        buffer.putLong(transaction.getUnitCostCents());
+        buffer.putLong(transaction.getTotalAmountCents());
+        buffer.putLong(transaction.getTimestampMillis());
+        buffer.putShort((short) name.length);
+        buffer.put(name);
+        buffer.putInt(checksum(buffer.array(), 4, length));
+        buffer.flip();
+        return buffer;
+    }
+    
+    /**
+     * Decode a transaction payload (the frame without its length prefix and checksum)
+     * @param payload Buffer positioned at the payload start, limited to its end
+     * @return decoded Transaction (unit cost is Money.UNKNOWN for records written before it was recorded)
+     * @throws IOException if the payload has an unsupported version
+     */
+    public Transaction decodeTransaction(ByteBuffer payload) throws IOException {
+        byte version = payload.get();
+        if (version != TRANSACTION_VERSION && version != TRANSACTION_VERSION_NO_TIME
+                && version != TRANSACTION_VERSION_DOLLARS && version != TRANSACTION_VERSION_NO_COST) {
+            throw new IOException("Unsupported transaction record version: " + version);
+        }
+        int transactionId = payload.getInt();
+        Transaction.TransactionType type = Transaction.TransactionType.values()[payload.get()];
+        int productId = payload.getInt();
+        int quantity = payload.getInt();
+        long unitPriceCents;
+        long unitCostCents;
+        long totalAmountCents;
+        long timestampMillis = Transaction.UNKNOWN_TIME;
+        if (version >= TRANSACTION_VERSION_NO_TIME) {
+            unitPriceCents = payload.getLong();
+            unitCostCents = payload.getLong();
+            totalAmountCents = payload.getLong();
+            if (version == TRANSACTION_VERSION) {
+                timestampMillis = payload.getLong();
+            }
+        } else {
+            olderRecordsDecoded++;
+            unitPriceCents = Money.fromDollars(payload.getDouble());
+            unitCostCents = version == TRANSACTION_VERSION_NO_COST ? Money.UNKNOWN : Money.fromDollars(payload.getDouble());
+            totalAmountCents = Money.fromDollars(payload.getDouble());
+        }
+        int nameLength = payload.getShort() & 0xFFFF;
+        String name = new String(payload.array(), payload.arrayOffset() + payload.position(),
+                                 nameLength, StandardCharsets.UTF_8);
+        payload.position(payload.position() + nameLength);
+        return new Transaction(transactionId, type, productId, name, quantity, unitPriceCents, unitCostCents,
+                               totalAmountCents, timestampMillis);
+    }
+    
+    /**
+     * Get the number of transaction records this codec decoded from an older record version
+     * @return count of records that should be rewritten in the current version
+     */
+    public int getOlderRecordsDecoded() {
+        return olderRecordsDecoded;
+    }
+    
+    /**
+     * Calculate the CRC32 checksum stored after a transaction payload
+     * @param bytes Array holding the payload
+     * @param offset Payload start
+     * @param length Payload length
+     * @return checksum as an int
+     */
+    public int checksum(byte[] bytes, int offset, int length) {
+        crc.reset();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+    
+    private void ensureCapacity(int capacity) {
+        if (buffer.capacity() < capacity) {
+            buffer = ByteBuffer.allocate(Math.max(capacity, buffer.capacity() * 2));
+        }
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_NAME_LENGTH) {
+            throw new IOException("Name too long: " + bytes.length + " bytes");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
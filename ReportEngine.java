@@ -0,0 +1,281 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ReportEngine class computing report totals by reading the whole transaction history, in parallel
+ * The history is split into about PARTITIONS_PER_THREAD ranges per worker thread (at least
+ * MIN_PARTITION_SIZE transactions each, starting at a record of the sparse index), and a fork/join
+ * task reads each range through its own cursor; the partial totals are then merged pairwise.
+ * Every amount is a whole number of cents, so the result does not depend on how the history was
+ * split: the parallel report equals the sequential one exactly, top-N lists included (products
+ * with equal values are ranked by ID).
+ * When the columnar store is enabled, each range is read from its columns instead of a cursor,
+ * so no Transaction objects are created.
+ *
+ * The running totals (SalesAggregate) answer the everyday reports without reading the history;
+ * this engine recomputes them from the records, e.g. to audit the running totals.
+ */
+public class ReportEngine {
+    public static final int MIN_PARTITION_SIZE = 64 * TransactionIndex.STRIDE;
+    // Several ranges per thread let idle threads steal work; more ranges only add merging
+    private static final int PARTITIONS_PER_THREAD = 4;
+    
+    private final TransactionLog log;
+    
+    /**
+     * Totals over a range of the history (the whole history once merged)
+     */
+    public static class Report {
+        private int transactionCount;
+        private int saleCount;
+        private int purchaseCount;
+        private long unitsSold;
+        private long revenueCents;
+        private long costCents;
+        private final IntHashMap<ProductTotals> products = new IntHashMap<>();
+        
+        public int getTransactionCount() {
+            return transactionCount;
+        }
+        
+        public int getSaleCount() {
+            return saleCount;
+        }
+        
+        public int getPurchaseCount() {
+            return purchaseCount;
+        }
+        
+        public long getUnitsSold() {
+            return unitsSold;
+        }
+        
+        public long getRevenueCents() {
+            return revenueCents;
+        }
+        
+        public long getCostCents() {
+            return costCents;
+        }
+        
+        public long getProfitCents() {
+            return revenueCents - costCents;
+        }
+        
+        /**
+         * Get the sales totals of one product
+         * @param productId Product ID
+         * @return totals or null if the product has no sales
+         */
+        public ProductTotals getProductTotals(int productId) {
+            return products.get(productId);
+        }
+        
+        /**
+         * Get the best products by a ranking, keeping only n candidates in a heap while scanning
+         * @param ranking Units sold, revenue or profit
+         * @param n Number of products wanted
+         * @return up to n products, best first
+         */
+        public List<ProductTotals> getTopProducts(ProductRanking ranking, int n) {
+            Comparator<ProductTotals> bestFirst = ranking.bestFirst();
+            PriorityQueue<ProductTotals> candidates = new PriorityQueue<>(Math.max(1, n + 1), bestFirst.reversed());
+            if (n > 0) {
+                products.forEach((productId, totals) -> {
+                    candidates.add(totals);
+                    if (candidates.size() > n) {
+                        candidates.poll(); // drop the worst
+                    }
+                });
+            }
+            List<ProductTotals> top = new ArrayList<>(candidates);
+            top.sort(bestFirst);
+            return top;
+        }
+        
+        /**
+         * Check whether two reports hold exactly the same totals
+         * @param other Report to compare with
+         * @return true if every count, amount and product total is equal
+         */
+        public boolean sameAs(Report other) {
+            if (transactionCount != other.transactionCount || saleCount != other.saleCount
+                || purchaseCount != other.purchaseCount || unitsSold != other.unitsSold
+                || revenueCents != other.revenueCents || costCents != other.costCents
+                || products.size() != other.products.size()) {
+                return false;
+            }
+            for (int productId : products.keys()) {
+                if (!products.get(productId).sameAs(other.products.get(productId))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        void add(Transaction transaction) {
+            if (transaction.getType() != Transaction.TransactionType.SALE) {
+                addPurchase();
+                return;
+            }
+            addSale(transaction.getProductId(), transaction.getQuantity(), transaction.getTotalAmountCents(),
+                    Money.times(transaction.getUnitCostCents(), transaction.getQuantity()));
+        }
+        
+        void addPurchase() {
+            transactionCount++;
+            purchaseCount++;
+        }
+        
+        void addSale(int productId, int quantity, long revenue, long cost) {
+            transactionCount++;
+            saleCount++;
+            unitsSold += quantity;
+            revenueCents += revenue;
+            costCents += cost;
+            ProductTotals totals = products.get(productId);
+            if (totals == null) {
+                totals = new ProductTotals(productId);
+                products.put(productId, totals);
+            }
+            totals.add(1, quantity, revenue, cost);
+        }
+        
+        /**
+         * Add another report's totals to this one
+         * @return this report
+         */
+        Report merge(Report other) {
+            transactionCount += other.transactionCount;
+            saleCount += other.saleCount;
+            purchaseCount += other.purchaseCount;
+            unitsSold += other.unitsSold;
+            revenueCents += other.revenueCents;
+            costCents += other.costCents;
+            other.products.forEach((productId, totals) -> {
+                ProductTotals sum = products.get(productId);
+                if (sum == null) {
+                    sum = new ProductTotals(productId);
+                    products.put(productId, sum);
+                }
+                sum.add(totals);
+            });
+            return this;
+        }
+    }
+    
+    /**
+     * Fork/join task totalling a range of the history, splitting it while it spans several partitions
+     */
+    private class ScanTask extends RecursiveTask<Report> {
+        private static final long serialVersionUID = 1L;
+        
+        private final int from; // always a multiple of partitionSize
+        private final int to;
+        private final int partitionSize;
+        
+        ScanTask(int from, int to, int partitionSize) {
+            this.from = from;
+            this.to = to;
+            this.partitionSize = partitionSize;
+        }
+        
+        @Override
+        protected Report compute() {
+            if (to - from <= partitionSize) {
+                try {
+                    return scan(from, to);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int middle = from + Math.max(1, (to - from) / 2 / partitionSize) * partitionSize;
+            ScanTask left = new ScanTask(from, middle, partitionSize);
+            left.fork();
+            Report right = new ScanTask(middle, to, partitionSize).compute();
+            return left.join().merge(right);
+        }
+    }
+    
+    /**
+     * Constructor to create an engine reading a transaction log
+     * @param log Transaction log to read
+     */
+    public ReportEngine(TransactionLog log) {
+        this.log = log;
+    }
+    
+    /**
+     * Total the history as it is now, reading its partitions in parallel
+     * @param pool Fork/join pool running the partitions
+     * @return totals over every transaction recorded before the call
+     * @throws IOException if the transactions cannot be read
+     */
+    public Report compute(ForkJoinPool pool) throws IOException {
+        int size = log.size();
+        if (size == 0) {
+            return new Report();
+        }
+        long partitions = (long) pool.getParallelism() * PARTITIONS_PER_THREAD;
+        long perPartition = (size + partitions - 1) / partitions;
+        int stride = TransactionIndex.STRIDE;
+        int partitionSize = (int) Math.max(MIN_PARTITION_SIZE, (perPartition + stride - 1) / stride * stride);
+        try {
+            return pool.invoke(new ScanTask(0, size, partitionSize));
+        } catch (UncheckedIOException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Total the history as it is now with a single cursor, in order
+     * @return totals over every transaction recorded before the call
+     * @throws IOException if the transactions cannot be read
+     */
+    public Report computeSequential() throws IOException {
+        return scan(0, log.size());
+    }
+    
+    /**
+     * Total the transactions at positions from (inclusive) to to (exclusive)
+     */
+    private Report scan(int from, int to) throws IOException {
+        ColumnarTransactionStore columns = log.getColumnarStore();
+        if (columns != null && columns.size() >= to) {
+            return scanColumns(columns, from, to);
+        }
+        Report report = new Report();
+        try (TransactionCursor cursor = log.openCursorAt(from)) {
+            for (int position = from; position < to && cursor.hasNext(); position++) {
+                report.add(cursor.next());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return report;
+    }
+    
+    /**
+     * Total the rows at positions from (inclusive) to to (exclusive) of the columnar store,
+     * whose rows are at the same positions as in the history
+     */
+    private static Report scanColumns(ColumnarTransactionStore columns, int from, int to) {
+        Report report = new Report();
+        for (int row = from; row < to; row++) {
+            if (!columns.isSale(row)) {
+                report.addPurchase();
+                continue;
+            }
+            int quantity = columns.getQuantity(row);
+            report.addSale(columns.getProductId(row), quantity, columns.getTotalCents(row),
+                           Money.times(columns.getUnitCostCents(row), quantity));
+        }
+        return report;
+    }
+}
@@ -0,0 +1,163 @@
+import java.io.*;
+
+/**
+ * SalesAggregate class maintaining running revenue, cost and profit totals over all sales
+ * Totals are kept in cents so they stay exact however many sales are added
+ * Totals are updated as each sale is recorded so reports never rescan the transaction history
+ * Methods are synchronized so reports can read the totals while checkout lanes record sales
+ */
+public class SalesAggregate {
+    private static final int FILE_VERSION = 3; // 2 held double dollars and is rebuilt from the history
+    
+    private int saleCount;
+    private long totalRevenueCents;
+    private long totalCostCents;
+    private int lastTransactionId; // newest transaction reflected in the totals
+    private final IntHashMap<SalesTotals> productTotals;
+    private final Object saveLock = new Object(); // one save copies and writes the file at a time
+    
+    /**
+     * Constructor to create empty totals
+     */
+    public SalesAggregate() {
+        this.productTotals = new IntHashMap<>();
+    }
+    
+    /**
+     * Add a transaction to the totals (purchases only advance the last transaction ID)
+     * @param transaction Transaction being recorded
+     */
+    public synchronized void apply(Transaction transaction) {
+        lastTransactionId = Math.max(lastTransactionId, transaction.getTransactionId());
+        if (transaction.getType() != Transaction.TransactionType.SALE) {
+            return;
+        }
+        
+        long revenueCents = transaction.getTotalAmountCents();
+        long costCents = Money.times(transaction.getUnitCostCents(), transaction.getQuantity());
+        saleCount++;
+        totalRevenueCents += revenueCents;
+        totalCostCents += costCents;
+        
+        SalesTotals totals = productTotals.get(transaction.getProductId());
+        if (totals == null) {
+            totals = new SalesTotals();
+            productTotals.put(transaction.getProductId(), totals);
+        }
+        totals.add(1, transaction.getQuantity(), revenueCents, costCents);
+    }
+    
+    // Getter methods
+    public synchronized int getSaleCount() {
+        return saleCount;
+    }
+    
+    public synchronized long getTotalRevenueCents() {
+        return totalRevenueCents;
+    }
+    
+    public synchronized long getTotalCostCents() {
+        return totalCostCents;
+    }
+    
+    public synchronized long getTotalProfitCents() {
+        return totalRevenueCents - totalCostCents;
+    }
+    
+    public synchronized int getLastTransactionId() {
+        return lastTransactionId;
+    }
+    
+    /**
+     * Get the running totals for one product
+     * @param productId Product ID
+     * @return copy of the totals, or null if the product has no sales
+     */
+    public synchronized SalesTotals getProductTotals(int productId) {
+        SalesTotals totals = productTotals.get(productId);
+        if (totals == null) {
+            return null;
+        }
+        SalesTotals copy = new SalesTotals();
+        copy.add(totals);
+        return copy;
+    }
+    
+    /**
+     * Get the IDs of the products with sales
+     * @return product IDs (in no particular order)
+     */
+    public synchronized int[] getProductIds() {
+        return productTotals.keys();
+    }
+    
+    /**
+     * Discard all totals
+     */
+    public synchronized void clear() {
+        saleCount = 0;
+        totalRevenueCents = 0;
+        totalCostCents = 0;
+        lastTransactionId = 0;
+        productTotals.clear();
+    }
+    
+    /**
+     * Save the totals to a file, copied under the lock and written after releasing it
+     * @param file Destination file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        SnapshotFile.writeCopy(file, saveLock, this::writeTo);
+    }
+    
+    /**
+     * Write the totals in the file format
+     * @param out Destination stream
+     */
+    private synchronized void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FILE_VERSION);
+        out.writeInt(lastTransactionId);
+        out.writeInt(saleCount);
+        out.writeLong(totalRevenueCents);
+        out.writeLong(totalCostCents);
+        out.writeInt(productTotals.size());
+        for (int productId : productTotals.keys()) {
+            SalesTotals totals = productTotals.get(productId);
+            out.writeInt(productId);
+            out.writeInt(totals.getSaleCount());
+            out.writeLong(totals.getUnitsSold());
+            out.writeLong(totals.getRevenueCents());
+            out.writeLong(totals.getCostCents());
+        }
+    }
+    
+    /**
+     * Replace the totals with those saved in a file
+     * @param file Source file
+     * @throws IOException if the file cannot be read or has an unknown version
+     */
+    public synchronized void load(File file) throws IOException {
+        clear();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int version = in.readInt();
+            if (version != FILE_VERSION) {
+                throw new IOException("Unsupported sales summary version: " + version);
+            }
+            lastTransactionId = in.readInt();
+            saleCount = in.readInt();
+            totalRevenueCents = in.readLong();
+            totalCostCents = in.readLong();
+            int productCount = in.readInt();
+            for (int i = 0; i < productCount; i++) {
+                int productId = in.readInt();
+                SalesTotals totals = new SalesTotals();
+                totals.add(in.readInt(), in.readLong(), in.readLong(), in.readLong());
+                productTotals.put(productId, totals);
+            }
+        } catch (IOException e) {
+            clear();
+            throw e;
+        }
+    }
+}
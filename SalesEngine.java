@@ -0,0 +1,237 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * SalesEngine class applying sales and purchases to the catalog and transaction log
+ * Safe to call from several checkout lanes at once: stock is adjusted atomically per product
+ * and transactions are recorded through the log, which hands out unique IDs.
+ * Persisting the product catalog is left to the caller; withStockSettled() lets it read stock
+ * that agrees with the transactions recorded so far.
+ */
+public class SalesEngine {
+    private final ProductCatalog catalog;
+    private final TransactionLog log;
+    // Held shared from a stock change until its transaction is recorded; held exclusively to read settled stock
+    private final ReadWriteLock stockLock = new ReentrantReadWriteLock();
+    
+    /**
+     * Constructor to create an engine over a catalog and transaction log
+     * @param catalog Product catalog
+     * @param log Transaction log receiving recorded transactions
+     */
+    public SalesEngine(ProductCatalog catalog, TransactionLog log) {
+        this.catalog = catalog;
+        this.log = log;
+    }
+    
+    /**
+     * Sell a quantity of a product if enough stock is available
+     * @param productId Product ID
+     * @param quantity Quantity to sell (must be positive)
+     * @return result holding the recorded sale or the reason it was rejected
+     */
+    public TransactionResult sell(int productId, int quantity) {
+        long start = System.nanoTime();
+        TransactionResult result = applySale(productId, quantity);
+        if (result.isSuccess()) {
+            Metrics.SALES.increment();
+            Metrics.SALE_LATENCY.record(System.nanoTime() - start);
+        } else {
+            Metrics.SALES_REJECTED.increment();
+        }
+        return result;
+    }
+    
+    private TransactionResult applySale(int productId, int quantity) {
+        Product product = findProduct(productId);
+        if (product == null) {
+            return new TransactionResult(TransactionResult.Status.PRODUCT_NOT_FOUND, null, null, 0);
+        }
+        if (quantity <= 0) {
+            return new TransactionResult(TransactionResult.Status.INVALID_QUANTITY, product, null,
+                                         product.getStockQuantity());
+        }
+        long unitPriceCents = product.getSellingPriceCents();
+        long unitCostCents = product.getPurchasePriceCents();
+        if (!amountsFit(unitPriceCents, unitCostCents, quantity)) {
+            return new TransactionResult(TransactionResult.Status.AMOUNT_TOO_LARGE, product, null,
+                                         product.getStockQuantity());
+        }
+        
+        Transaction sale;
+        stockLock.readLock().lock();
+        try {
+            // Check and decrease stock in one atomic step
+            if (!product.decreaseStock(quantity)) {
+                return new TransactionResult(TransactionResult.Status.INSUFFICIENT_STOCK, product, null,
+                                             product.getStockQuantity());
+            }
+            
+            sale = log.record(Transaction.TransactionType.SALE, product.getId(), product.getName(),
+                              quantity, unitPriceCents, unitCostCents);
+        } finally {
+            stockLock.readLock().unlock();
+        }
+        return new TransactionResult(TransactionResult.Status.OK, product, sale, product.getStockQuantity());
+    }
+    
+    /**
+     * Purchase (restock) a quantity of a product
+     * @param productId Product ID
+     * @param quantity Quantity to add to stock (must be positive)
+     * @return result holding the recorded purchase or the reason it was rejected
+     */
+    public TransactionResult purchase(int productId, int quantity) {
+        long start = System.nanoTime();
+        TransactionResult result = applyPurchase(productId, quantity);
+        if (result.isSuccess()) {
+            Metrics.PURCHASES.increment();
+            Metrics.PURCHASE_LATENCY.record(System.nanoTime() - start);
+        } else {
+            Metrics.PURCHASES_REJECTED.increment();
+        }
+        return result;
+    }
+    
+    private TransactionResult applyPurchase(int productId, int quantity) {
+        Product product = findProduct(productId);
+        if (product == null) {
+            return new TransactionResult(TransactionResult.Status.PRODUCT_NOT_FOUND, null, null, 0);
+        }
+        if (quantity <= 0) {
+            return new TransactionResult(TransactionResult.Status.INVALID_QUANTITY, product, null,
+                                         product.getStockQuantity());
+        }
+        long unitCostCents = product.getPurchasePriceCents();
+        if (!amountsFit(unitCostCents, unitCostCents, quantity)) {
+            return new TransactionResult(TransactionResult.Status.AMOUNT_TOO_LARGE, product, null,
+                                         product.getStockQuantity());
+        }
+        
+        Transaction purchase;
+        stockLock.readLock().lock();
+        try {
+            if (!product.increaseStock(quantity)) {
+                return new TransactionResult(TransactionResult.Status.STOCK_TOO_LARGE, product, null,
+                                             product.getStockQuantity());
+            }
+            
+            purchase = log.record(Transaction.TransactionType.PURCHASE, product.getId(), product.getName(),
+                                  quantity, unitCostCents, unitCostCents);
+        } finally {
+            stockLock.readLock().unlock();
+        }
+        return new TransactionResult(TransactionResult.Status.OK, product, purchase, product.getStockQuantity());
+    }
+    
+    /**
+     * Sell every line of a basket, or nothing at all
+     * Stock is reserved line by line; if any line fails, the stock already reserved is
+     * returned. On success all sales are recorded as one batch with a single journal sync.
+     * @param basket Lines to sell
+     * @return result holding the recorded sales or the first line that was rejected
+     */
+    public CheckoutResult checkout(Basket basket) {
+        List<Basket.Line> lines = basket.getLines();
+        List<Product> products = new ArrayList<>(lines.size());
+        for (Basket.Line line : lines) {
+            Product product = findProduct(line.getProductId());
+            if (product == null) {
+                return rejected(TransactionResult.Status.PRODUCT_NOT_FOUND, line, 0);
+            }
+            if (line.getQuantity() <= 0) {
+                return rejected(TransactionResult.Status.INVALID_QUANTITY, line, product.getStockQuantity());
+            }
+            if (!amountsFit(product.getSellingPriceCents(), product.getPurchasePriceCents(), line.getQuantity())) {
+                return rejected(TransactionResult.Status.AMOUNT_TOO_LARGE, line, product.getStockQuantity());
+            }
+            products.add(product);
+        }
+        
+        List<Transaction> sales;
+        stockLock.readLock().lock();
+        try {
+            // Reserve stock for every line, undoing earlier reservations if one fails
+            for (int i = 0; i < lines.size(); i++) {
+                if (!products.get(i).decreaseStock(lines.get(i).getQuantity())) {
+                    for (int j = 0; j < i; j++) {
+                        products.get(j).increaseStock(lines.get(j).getQuantity());
+                    }
+                    return rejected(TransactionResult.Status.INSUFFICIENT_STOCK, lines.get(i),
+                                    products.get(i).getStockQuantity());
+                }
+            }
+            
+            try {
+                sales = log.recordSales(products, lines);
+            } catch (ArithmeticException e) {
+                // A price changed since the lines were checked and a total overflowed; nothing was recorded
+                int failed = 0;
+                for (int i = 0; i < lines.size(); i++) {
+                    Product product = products.get(i);
+                    product.increaseStock(lines.get(i).getQuantity());
+                    if (!amountsFit(product.getSellingPriceCents(), product.getPurchasePriceCents(),
+                                    lines.get(i).getQuantity())) {
+                        failed = i;
+                    }
+                }
+                return rejected(TransactionResult.Status.AMOUNT_TOO_LARGE, lines.get(failed),
+                                products.get(failed).getStockQuantity());
+            }
+        } finally {
+            stockLock.readLock().unlock();
+        }
+        Metrics.CHECKOUTS.increment();
+        Metrics.SALES.add(sales.size());
+        return new CheckoutResult(TransactionResult.Status.OK, sales, null, 0);
+    }
+    
+    /**
+     * Run an action while no sale or purchase is between changing stock and recording its transaction,
+     * so the stock it reads agrees with the newest recorded transaction
+     * Sales and purchases wait until it returns, so the action should only copy what it needs
+     * @param action Action reading stock levels
+     * @return the action's result
+     */
+    public <T> T withStockSettled(Supplier<T> action) {
+        stockLock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            stockLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Check that the total price and total cost of a line fit in a long number of cents,
+     * so a transaction can be recorded for stock that has been reserved
+     */
+    private static boolean amountsFit(long unitPriceCents, long unitCostCents, int quantity) {
+        try {
+            Money.times(unitPriceCents, quantity);
+            Money.times(unitCostCents, quantity);
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Find a product by ID, timing the lookup
+     */
+    private Product findProduct(int productId) {
+        long start = System.nanoTime();
+        Product product = catalog.findById(productId);
+        Metrics.LOOKUP_LATENCY.record(System.nanoTime() - start);
+        return product;
+    }
+    
+    private static CheckoutResult rejected(TransactionResult.Status status, Basket.Line line, int availableStock) {
+        Metrics.CHECKOUTS_REJECTED.increment();
+        return new CheckoutResult(status, Collections.emptyList(), line, availableStock);
+    }
+}
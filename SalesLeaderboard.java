@@ -0,0 +1,102 @@
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * SalesLeaderboard class ranking products by units sold, revenue and profit as each sale is recorded
+ * Each ranking is a sorted set of the products' running totals, best first (equal values ranked by
+ * product ID). A sale moves its product within each set in O(log n), so the top k products of any
+ * ranking are read in O(k) at any time, without scanning the history or sorting the catalog.
+ *
+ * The leaderboard is not saved: it is rebuilt from the per-product totals of the sales summary on startup.
+ * Methods are synchronized so the rankings can be read while checkout lanes record sales
+ */
+public class SalesLeaderboard {
+    private final IntHashMap<ProductTotals> products = new IntHashMap<>();
+    private final Map<ProductRanking, TreeSet<ProductTotals>> rankings =
+        new EnumMap<>(ProductRanking.class);
+    
+    /**
+     * Constructor to create an empty leaderboard
+     */
+    public SalesLeaderboard() {
+        for (ProductRanking ranking : ProductRanking.values()) {
+            rankings.put(ranking, new TreeSet<>(ranking.bestFirst()));
+        }
+    }
+    
+    /**
+     * Add a sale to its product's totals (purchases are ignored)
+     * @param transaction Transaction being recorded
+     */
+    public synchronized void apply(Transaction transaction) {
+        if (transaction.getType() != Transaction.TransactionType.SALE) {
+            return;
+        }
+        add(transaction.getProductId(), 1, transaction.getQuantity(), transaction.getTotalAmountCents(),
+            Money.times(transaction.getUnitCostCents(), transaction.getQuantity()));
+    }
+    
+    /**
+     * Add sales to a product's totals and move it to its new place in each ranking
+     * @param productId Product ID
+     * @param saleCount Number of sales
+     * @param unitsSold Units sold
+     * @param revenueCents Revenue in cents
+     * @param costCents Cost of goods sold in cents
+     */
+    public synchronized void add(int productId, int saleCount, long unitsSold, long revenueCents, long costCents) {
+        ProductTotals totals = products.get(productId);
+        if (totals == null) {
+            totals = new ProductTotals(productId);
+            products.put(productId, totals);
+        } else {
+            for (TreeSet<ProductTotals> ranked : rankings.values()) {
+                ranked.remove(totals); // must leave the sets before its sort keys change
+            }
+        }
+        totals.add(saleCount, unitsSold, revenueCents, costCents);
+        for (TreeSet<ProductTotals> ranked : rankings.values()) {
+            ranked.add(totals);
+        }
+    }
+    
+    /**
+     * Get the best products of a ranking
+     * @param ranking Units sold, revenue or profit
+     * @param k Number of products wanted
+     * @return copies of the totals of up to k products, best first
+     */
+    public synchronized List<ProductTotals> getTop(ProductRanking ranking, int k) {
+        List<ProductTotals> top = new ArrayList<>(Math.max(0, Math.min(k, products.size())));
+        Iterator<ProductTotals> best = rankings.get(ranking).iterator();
+        while (top.size() < k && best.hasNext()) {
+            ProductTotals totals = best.next();
+            ProductTotals copy = new ProductTotals(totals.getProductId());
+            copy.add(totals.getSaleCount(), totals.getUnitsSold(), totals.getRevenueCents(), totals.getCostCents());
+            top.add(copy);
+        }
+        return top;
+    }
+    
+    /**
+     * Get the number of products ranked
+     * @return number of products with at least one sale
+     */
+    public synchronized int size() {
+        return products.size();
+    }
+    
+    /**
+     * Discard all totals
+     */
+    public synchronized void clear() {
+        products.clear();
+        for (TreeSet<ProductTotals> ranked : rankings.values()) {
+            ranked.clear();
+        }
+    }
+}
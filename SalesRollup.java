@@ -0,0 +1,269 @@
+import java.io.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * SalesRollup class maintaining sales totals per hour and per day, overall and per product
+ * Buckets are updated as each sale is recorded, so questions such as today's profit or the
+ * last 7 days by product are answered from a few buckets instead of scanning the history.
+ *
+ * Hours are kept for the last HOURS_KEPT hours and days for the last DAYS_KEPT days; days follow
+ * the time zone the rollup was created with. Sales recorded before transactions carried their
+ * time cannot be bucketed and are left out, as are sales dated more than FUTURE_TOLERANCE_MILLIS
+ * ahead of the clock (the kept range follows the newest bucket, so one such sale would push every
+ * real bucket out of it).
+ * Methods are synchronized so reports can read buckets while checkout lanes record sales
+ */
+public class SalesRollup {
+    public static final int HOURS_KEPT = 7 * 24;
+    public static final int DAYS_KEPT = 400;
+    public static final long FUTURE_TOLERANCE_MILLIS = 5 * 60 * 1000L; // clock differences between lanes
+    private static final int FILE_VERSION = 1;
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+    
+    private final ZoneId zone;
+    private final TreeMap<Long, Bucket> hours = new TreeMap<>(); // keyed by hours since the epoch
+    private final TreeMap<Long, Bucket> days = new TreeMap<>();  // keyed by LocalDate.toEpochDay()
+    private int lastTransactionId; // newest transaction reflected in the buckets
+    private final Object saveLock = new Object(); // one save copies and writes the file at a time
+    // Bounds of the day the last sale fell on, so most sales skip the time zone conversion
+    private long cachedDayStart = Long.MAX_VALUE;
+    private long cachedDayEnd = Long.MIN_VALUE;
+    private long cachedDay;
+    
+    /**
+     * Totals of one hour or day, overall and per product
+     */
+    private static class Bucket {
+        final SalesTotals totals = new SalesTotals();
+        final IntHashMap<SalesTotals> products = new IntHashMap<>();
+        
+        SalesTotals product(int productId) {
+            SalesTotals product = products.get(productId);
+            if (product == null) {
+                product = new SalesTotals();
+                products.put(productId, product);
+            }
+            return product;
+        }
+    }
+    
+    /**
+     * Constructor to create empty buckets
+     * @param zone Time zone whose calendar days the daily buckets follow
+     */
+    public SalesRollup(ZoneId zone) {
+        this.zone = zone;
+    }
+    
+    /**
+     * Add a transaction to its hour and day (purchases only advance the last transaction ID)
+     * @param transaction Transaction being recorded
+     */
+    public synchronized void apply(Transaction transaction) {
+        lastTransactionId = Math.max(lastTransactionId, transaction.getTransactionId());
+        if (transaction.getType() != Transaction.TransactionType.SALE || !transaction.hasTimestamp()) {
+            return;
+        }
+        long timestamp = transaction.getTimestampMillis();
+        if (timestamp > System.currentTimeMillis() + FUTURE_TOLERANCE_MILLIS) {
+            return; // Clock skew or a bad imported time
+        }
+        
+        long revenueCents = transaction.getTotalAmountCents();
+        long costCents = Money.times(transaction.getUnitCostCents(), transaction.getQuantity());
+        add(hours, Math.floorDiv(timestamp, HOUR_MILLIS), HOURS_KEPT, transaction.getProductId(),
+            transaction.getQuantity(), revenueCents, costCents);
+        add(days, dayOf(timestamp), DAYS_KEPT, transaction.getProductId(),
+            transaction.getQuantity(), revenueCents, costCents);
+    }
+    
+    /**
+     * Add a sale to a bucket, creating it if needed and dropping buckets that fall out of the kept range
+     */
+    private static void add(TreeMap<Long, Bucket> buckets, long key, int kept, int productId,
+                            int quantity, long revenueCents, long costCents) {
+        if (!buckets.isEmpty() && key <= buckets.lastKey() - kept) {
+            return; // Older than every bucket still kept
+        }
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new Bucket();
+            buckets.put(key, bucket);
+            while (buckets.firstKey() <= buckets.lastKey() - kept) {
+                buckets.pollFirstEntry();
+            }
+        }
+        bucket.totals.add(1, quantity, revenueCents, costCents);
+        bucket.product(productId).add(1, quantity, revenueCents, costCents);
+    }
+    
+    /**
+     * Get the calendar day of a time in the rollup's time zone
+     */
+    private long dayOf(long timestamp) {
+        if (timestamp < cachedDayStart || timestamp >= cachedDayEnd) {
+            LocalDate date = Instant.ofEpochMilli(timestamp).atZone(zone).toLocalDate();
+            cachedDay = date.toEpochDay();
+            cachedDayStart = date.atStartOfDay(zone).toInstant().toEpochMilli();
+            cachedDayEnd = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+        return cachedDay;
+    }
+    
+    // Getter methods
+    public ZoneId getZone() {
+        return zone;
+    }
+    
+    public synchronized int getLastTransactionId() {
+        return lastTransactionId;
+    }
+    
+    /**
+     * Get the sales totals of one hour
+     * @param hourStartMillis Any time within the hour
+     * @return copy of the totals (zero if there were no sales or the hour is no longer kept)
+     */
+    public synchronized SalesTotals getHour(long hourStartMillis) {
+        SalesTotals totals = new SalesTotals();
+        Bucket bucket = hours.get(Math.floorDiv(hourStartMillis, HOUR_MILLIS));
+        if (bucket != null) {
+            totals.add(bucket.totals);
+        }
+        return totals;
+    }
+    
+    /**
+     * Get the sales totals of a range of days
+     * @param from First day
+     * @param to Last day (inclusive)
+     * @return copy of the totals summed over the days still kept
+     */
+    public synchronized SalesTotals getDays(LocalDate from, LocalDate to) {
+        SalesTotals totals = new SalesTotals();
+        for (Bucket bucket : days.subMap(from.toEpochDay(), true, to.toEpochDay(), true).values()) {
+            totals.add(bucket.totals);
+        }
+        return totals;
+    }
+    
+    /**
+     * Get the sales totals of each product over a range of days
+     * @param from First day
+     * @param to Last day (inclusive)
+     * @return product ID to a copy of its totals, for products sold in those days
+     */
+    public synchronized IntHashMap<SalesTotals> getDaysByProduct(LocalDate from, LocalDate to) {
+        IntHashMap<SalesTotals> products = new IntHashMap<>();
+        for (Bucket bucket : days.subMap(from.toEpochDay(), true, to.toEpochDay(), true).values()) {
+            bucket.products.forEach((productId, totals) -> {
+                SalesTotals sum = products.get(productId);
+                if (sum == null) {
+                    sum = new SalesTotals();
+                    products.put(productId, sum);
+                }
+                sum.add(totals);
+            });
+        }
+        return products;
+    }
+    
+    /**
+     * Discard all buckets
+     */
+    public synchronized void clear() {
+        hours.clear();
+        days.clear();
+        lastTransactionId = 0;
+    }
+    
+    /**
+     * Save the buckets to a file, copied under the lock and written after releasing it
+     * @param file Destination file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        SnapshotFile.writeCopy(file, saveLock, this::writeTo);
+    }
+    
+    /**
+     * Write the buckets in the file format
+     * @param out Destination stream
+     */
+    private synchronized void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FILE_VERSION);
+        out.writeUTF(zone.getId());
+        out.writeInt(lastTransactionId);
+        writeBuckets(out, hours);
+        writeBuckets(out, days);
+    }
+    
+    /**
+     * Replace the buckets with those saved in a file
+     * @param file Source file
+     * @throws IOException if the file cannot be read, has an unknown version or
+     *         was saved for another time zone
+     */
+    public synchronized void load(File file) throws IOException {
+        clear();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int version = in.readInt();
+            if (version != FILE_VERSION) {
+                throw new IOException("Unsupported sales rollup version: " + version);
+            }
+            String savedZone = in.readUTF();
+            if (!savedZone.equals(zone.getId())) {
+                throw new IOException("sales rollup saved for time zone " + savedZone);
+            }
+            lastTransactionId = in.readInt();
+            readBuckets(in, hours);
+            readBuckets(in, days);
+        } catch (IOException e) {
+            clear();
+            throw e;
+        }
+    }
+    
+    private static void writeBuckets(DataOutputStream out, TreeMap<Long, Bucket> buckets) throws IOException {
+        out.writeInt(buckets.size());
+        for (Map.Entry<Long, Bucket> entry : buckets.entrySet()) {
+            out.writeLong(entry.getKey());
+            writeTotals(out, entry.getValue().totals);
+            IntHashMap<SalesTotals> products = entry.getValue().products;
+            out.writeInt(products.size());
+            for (int productId : products.keys()) {
+                out.writeInt(productId);
+                writeTotals(out, products.get(productId));
+            }
+        }
+    }
+    
+    private static void readBuckets(DataInputStream in, TreeMap<Long, Bucket> buckets) throws IOException {
+        int bucketCount = in.readInt();
+        for (int i = 0; i < bucketCount; i++) {
+            long key = in.readLong();
+            Bucket bucket = new Bucket();
+            readTotals(in, bucket.totals);
+            int productCount = in.readInt();
+            for (int j = 0; j < productCount; j++) {
+                readTotals(in, bucket.product(in.readInt()));
+            }
+            buckets.put(key, bucket);
+        }
+    }
+    
+    private static void writeTotals(DataOutputStream out, SalesTotals totals) throws IOException {
+        out.writeInt(totals.getSaleCount());
+        out.writeLong(totals.getUnitsSold());
+        out.writeLong(totals.getRevenueCents());
+        out.writeLong(totals.getCostCents());
+    }
+    
+    private static void readTotals(DataInputStream in, SalesTotals totals) throws IOException {
+        totals.add(in.readInt(), in.readLong(), in.readLong(), in.readLong());
+    }
+}
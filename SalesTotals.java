@@ -0,0 +1,47 @@
+/**
+ * SalesTotals class holding the sale count, units, revenue and cost of a set of sales
+ * Used for the hourly and daily buckets of SalesRollup, the per-product running totals of
+ * SalesAggregate and, with a product ID, the per-product totals of reports (ProductTotals)
+ */
+public class SalesTotals {
+    private int saleCount;
+    private long unitsSold;
+    private long revenueCents;
+    private long costCents;
+    
+    public int getSaleCount() {
+        return saleCount;
+    }
+    
+    public long getUnitsSold() {
+        return unitsSold;
+    }
+    
+    public long getRevenueCents() {
+        return revenueCents;
+    }
+    
+    public long getCostCents() {
+        return costCents;
+    }
+    
+    public long getProfitCents() {
+        return revenueCents - costCents;
+    }
+    
+    void add(int sales, long units, long revenue, long cost) {
+        saleCount += sales;
+        unitsSold += units;
+        revenueCents += revenue;
+        costCents += cost;
+    }
+    
+    void add(SalesTotals other) {
+        add(other.saleCount, other.unitsSold, other.revenueCents, other.costCents);
+    }
+    
+    boolean sameAs(SalesTotals other) {
+        return other != null && saleCount == other.saleCount && unitsSold == other.unitsSold
+               && revenueCents == other.revenueCents && costCents == other.costCents;
+    }
+}
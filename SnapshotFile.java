@@ -0,0 +1,288 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * SnapshotFile class writing a data file as a complete, crash-safe snapshot
+ *
+ * A snapshot is written to a temporary file next to the target, forced to disk and then
+ * atomically renamed over the target, so a crash leaves either the old or the new snapshot
+ * and never a half-written one.
+ *
+ * Layout: [int magic][short version][long generation][body][int END_MAGIC][int CRC32 of all preceding bytes]
+ *
+ * On load the newest snapshot whose trailer checks out is used; this can be the temporary
+ * file if a crash happened after it was forced but before the rename. Only then are the
+ * candidates checksummed end to end; otherwise opening checks the header and trailer alone,
+ * so startup does not read the whole file. Version 1 files (written in place, without
+ * generation or trailer) are still accepted as generation 0.
+ */
+public class SnapshotFile {
+    public static final short SNAPSHOT_VERSION = 2;
+    private static final short UNVERSIONED_SNAPSHOT = 1; // RecordCodec.FILE_VERSION files
+    private static final int END_MAGIC = 0x4D4D454E; // "MMEN"
+    private static final int HEADER_LENGTH = 4 + 2 + 8;
+    private static final int TRAILER_LENGTH = 4 + 4;
+    private static final String TEMP_SUFFIX = ".tmp";
+    
+    /**
+     * Writes the body of a snapshot
+     */
+    public interface BodyWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+    
+    private final File file;
+    private final File tempFile;
+    private final int magic;
+    private long generation;
+    
+    /**
+     * Constructor to create a snapshot stored in the given file
+     * @param file Snapshot file
+     * @param magic RecordCodec.PRODUCTS_MAGIC or RecordCodec.TRANSACTIONS_MAGIC
+     */
+    public SnapshotFile(File file, int magic) {
+        this.file = file;
+        this.tempFile = new File(file.getPath() + TEMP_SUFFIX);
+        this.magic = magic;
+    }
+    
+    /**
+     * Get the generation of the snapshot last loaded or written
+     * @return generation number (0 if none)
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+    
+    /**
+     * Check whether a snapshot or a leftover temporary snapshot exists
+     * @return true if there is anything to load
+     */
+    public boolean exists() {
+        return file.exists() || tempFile.exists();
+    }
+    
+    /**
+     * Get the snapshot file
+     * @return target file of the snapshot
+     */
+    public File getFile() {
+        return file;
+    }
+    
+    /**
+     * Write a new generation of the snapshot and atomically replace the previous one
+     * @param body Writes the snapshot body
+     * @throws IOException if the snapshot cannot be written (the previous one is left intact)
+     */
+    public synchronized void write(BodyWriter body) throws IOException {
+        long nextGeneration = generation + 1;
+        writeAtomically(file, out -> {
+            CheckedOutputStream checked = new CheckedOutputStream(out, new CRC32());
+            DataOutputStream data = new DataOutputStream(checked);
+            data.writeInt(magic);
+            data.writeShort(SNAPSHOT_VERSION);
+            data.writeLong(nextGeneration);
+            body.write(data);
+            data.flush();
+            int crc = (int) checked.getChecksum().getValue();
+            out.writeInt(END_MAGIC);
+            out.writeInt(crc);
+        });
+        generation = nextGeneration;
+    }
+    
+    /**
+     * Open the newest complete snapshot for reading
+     * A complete temporary snapshot newer than the target is renamed into place first;
+     * an incomplete one is deleted.
+     * @return stream positioned at the start of the body, or null if there is no snapshot
+     *         in the record format (no file yet, or a legacy Java-serialized file)
+     * @throws IOException if record-format snapshots exist but none of them is complete
+     */
+    public synchronized DataInputStream open() throws IOException {
+        long fileGeneration = -1;
+        long tempGeneration = -1;
+        IOException failure = null;
+        boolean recovering = tempFile.exists();
+        try {
+            fileGeneration = verify(file, recovering);
+        } catch (IOException e) {
+            failure = e;
+        }
+        try {
+            tempGeneration = verify(tempFile, true);
+        } catch (IOException e) {
+            // A temporary file torn by a crash during write
+        }
+        
+        if (tempGeneration > fileGeneration) {
+            moveAtomically(tempFile, file);
+            fileGeneration = tempGeneration;
+            System.out.println("Recovered snapshot generation " + tempGeneration + " of " + file.getName() + ".");
+        } else if (tempFile.exists()) {
+            tempFile.delete();
+        }
+        
+        if (fileGeneration < 0) {
+            if (failure != null) {
+                throw new IOException("No complete snapshot in " + file.getName() + ": " + failure.getMessage());
+            }
+            return null;
+        }
+        
+        generation = fileGeneration;
+        return read();
+    }
+    
+    /**
+     * Open the current snapshot for reading without any recovery or verification,
+     * e.g. to page through it after it was opened once at startup
+     * A reader keeps seeing the snapshot it opened even if a new generation replaces it meanwhile
+     * @return stream positioned at the start of the body
+     * @throws IOException if the snapshot cannot be opened
+     */
+    public DataInputStream read() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            in.readInt();
+            short version = in.readShort();
+            if (version == SNAPSHOT_VERSION) {
+                in.readLong();
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return in;
+    }
+    
+    /**
+     * Write a file through a forced temporary file and an atomic rename
+     * @param target File to replace
+     * @param body Writes the whole file content
+     * @throws IOException if the file cannot be written (the previous one is left intact)
+     */
+    public static void writeAtomically(File target, BodyWriter body) throws IOException {
+        File temp = new File(target.getPath() + TEMP_SUFFIX);
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            body.write(out);
+            out.flush();
+            Metrics.BYTES_PER_SAVE.record(fileOut.getChannel().position());
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        moveAtomically(temp, target);
+    }
+    
+    /**
+     * Write a copy of state that other threads keep changing, without holding their lock on the disk
+     * The copy is taken in memory first and then written through writeAtomically; saves sharing a lock
+     * run one at a time from copy to rename, so an older copy is never written after a newer one
+     * @param target File to replace
+     * @param saveLock Lock shared by every save of the same state
+     * @param copy Writes the whole file content, holding the state's own lock while it runs
+     * @throws IOException if the file cannot be written (the previous one is left intact)
+     */
+    public static void writeCopy(File target, Object saveLock, BodyWriter copy) throws IOException {
+        synchronized (saveLock) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            copy.write(out);
+            out.flush();
+            byte[] body = bytes.toByteArray();
+            writeAtomically(target, data -> data.write(body));
+        }
+    }
+    
+    /**
+     * Rename a file over another in one step and make the rename durable
+     * @param source File to rename
+     * @param target File to replace
+     * @throws IOException if the file cannot be renamed
+     */
+    public static void moveAtomically(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        
+        // Force the directory entry so the rename survives a power loss (not supported everywhere)
+        File directory = target.getAbsoluteFile().getParentFile();
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened for syncing on this platform
+        }
+    }
+    
+    /**
+     * Check a snapshot candidate
+     * @param candidate File to check
+     * @param checksum true to checksum the whole file, false to check just its header and trailer
+     * @return its generation, or -1 if it does not exist or is not in the record format
+     * @throws IOException if it is in the record format but incomplete or corrupt
+     */
+    private long verify(File candidate, boolean checksum) throws IOException {
+        if (!candidate.exists()) {
+            return -1;
+        }
+        long length = candidate.length();
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(candidate)), new CRC32())) {
+            DataInputStream in = new DataInputStream(checked);
+            if (length < 6 || in.readInt() != magic) {
+                return -1;
+            }
+            short version = in.readShort();
+            if (version == UNVERSIONED_SNAPSHOT) {
+                return 0;
+            }
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported data file version: " + version);
+            }
+            if (length < HEADER_LENGTH + TRAILER_LENGTH) {
+                throw new IOException("truncated snapshot");
+            }
+            long candidateGeneration = in.readLong();
+            if (!checksum) {
+                try (RandomAccessFile trailer = new RandomAccessFile(candidate, "r")) {
+                    trailer.seek(length - TRAILER_LENGTH);
+                    if (trailer.readInt() != END_MAGIC) {
+                        throw new IOException("snapshot trailer missing");
+                    }
+                }
+                return candidateGeneration;
+            }
+            
+            // Run the body through the checksum
+            long remaining = length - HEADER_LENGTH - TRAILER_LENGTH;
+            byte[] chunk = new byte[8192];
+            while (remaining > 0) {
+                int read = in.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+                if (read < 0) {
+                    throw new EOFException("truncated snapshot");
+                }
+                remaining -= read;
+            }
+            int expected = (int) checked.getChecksum().getValue();
+            
+            if (in.readInt() != END_MAGIC || in.readInt() != expected) {
+                throw new IOException("snapshot checksum mismatch");
+            }
+            return candidateGeneration;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * StockListener interface notified when a product's stock crosses its low-stock threshold
+ */
+public interface StockListener {
+    
+    /**
+     * Called when a product falls below or climbs back to its low-stock threshold
+     * @param product Product whose stock or threshold changed
+     * @param lowStock true if the product is now low in stock, false if it has been restocked
+     */
+    void lowStockChanged(Product product, boolean lowStock);
+}
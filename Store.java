@@ -0,0 +1,749 @@
+import java.io.*;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Store class holding the store's products, transactions and data files behind a headless API
+ * Every operation takes plain values and returns a result object instead of prompting and printing,
+ * so the same logic serves the console menu, batch imports, benchmarks and other front ends.
+ * Sales and purchases are saved in the background by a PersistenceScheduler; close() saves what is left.
+ * Adding, editing and deleting products are not journaled, so they save the products file before returning.
+ * Sales and purchases reach the journal at once but the products file only at the next save,
+ * so the products file records the newest transaction its stock includes, and the stock changes
+ * of later transactions are re-applied when it is loaded (e.g. after a crash between the two).
+ */
+public class Store {
+    private static final String PRODUCTS_FILE = "products.bin";
+    // Set -Dminimart.store=columnar to mirror transactions into memory-mapped columns for reporting
+    private static final boolean COLUMNAR_STORE = "columnar".equalsIgnoreCase(System.getProperty("minimart.store"));
+    // Set -Dminimart.products=packed to hold products in parallel primitive arrays (for very large catalogs)
+    private static final boolean PACKED_PRODUCTS = "packed".equalsIgnoreCase(System.getProperty("minimart.products"));
+    // Journal fsync policy: per-record, group (commit every JOURNAL_GROUP_COMMIT_MS) or none
+    private static final String JOURNAL_SYNC = System.getProperty("minimart.journal.sync", "per-record");
+    private static final long JOURNAL_GROUP_COMMIT_MS = Long.getLong("minimart.journal.groupCommitMs", 50);
+    // The journal is folded into a new transactions.bin generation once it holds this many records
+    private static final int JOURNAL_COMPACT_AFTER = Integer.getInteger("minimart.journal.compactAfter", 10000);
+    // Products and sales totals are saved in the background at most this long after a change...
+    private static final long PERSIST_MAX_LATENCY_MS = Long.getLong("minimart.persist.maxLatencyMs", 200);
+    // ...or as soon as this many changes are waiting, whichever comes first
+    private static final int PERSIST_MAX_PENDING_OPS = Integer.getInteger("minimart.persist.maxPendingOps", 64);
+    
+    private final File directory;
+    private final ProductCatalog catalog;
+    private final TransactionLog transactionLog;
+    private final SalesEngine salesEngine;
+    private final ReportEngine reportEngine;
+    private final RecordCodec codec;
+    private final SnapshotFile productsSnapshot;
+    private final PersistenceScheduler persistence;
+    private int productsLastTransactionId = -1; // newest transaction in the loaded products' stock, -1 if unknown
+    
+    /**
+     * Products copied for saving, with the stock levels and newest transaction ID read together
+     */
+    private static class CatalogCopy {
+        final List<Product> products;
+        final int[] stockQuantities;
+        final int lastTransactionId;
+        
+        CatalogCopy(List<Product> products, int[] stockQuantities, int lastTransactionId) {
+            this.products = products;
+            this.stockQuantities = stockQuantities;
+            this.lastTransactionId = lastTransactionId;
+        }
+    }
+    
+    /**
+     * Totals of the profit report and the transaction counts
+     */
+    public static class ProfitReport {
+        private final int transactionCount;
+        private final int saleCount;
+        private final long revenueCents;
+        private final long costCents;
+        
+        ProfitReport(int transactionCount, int saleCount, long revenueCents, long costCents) {
+            this.transactionCount = transactionCount;
+            this.saleCount = saleCount;
+            this.revenueCents = revenueCents;
+            this.costCents = costCents;
+        }
+        
+        public int getTransactionCount() {
+            return transactionCount;
+        }
+        
+        public int getSaleCount() {
+            return saleCount;
+        }
+        
+        public int getPurchaseCount() {
+            return transactionCount - saleCount;
+        }
+        
+        public long getRevenueCents() {
+            return revenueCents;
+        }
+        
+        public long getCostCents() {
+            return costCents;
+        }
+        
+        public long getProfitCents() {
+            return revenueCents - costCents;
+        }
+    }
+    
+    /**
+     * One product's purchases and sales with their totals
+     */
+    public static class ProductHistory {
+        private final int productId;
+        private final Product product; // null if the product has been deleted
+        private final List<Transaction> transactions;
+        private int purchaseCount;
+        private long unitsPurchased;
+        private long purchaseCents;
+        private int saleCount;
+        private long unitsSold;
+        private long revenueCents;
+        private long profitCents;
+        
+        ProductHistory(int productId, Product product, List<Transaction> transactions) {
+            this.productId = productId;
+            this.product = product;
+            this.transactions = transactions;
+            for (Transaction transaction : transactions) {
+                if (transaction.getType() == Transaction.TransactionType.PURCHASE) {
+                    purchaseCount++;
+                    unitsPurchased += transaction.getQuantity();
+                    purchaseCents += transaction.getTotalAmountCents();
+                } else {
+                    saleCount++;
+                    unitsSold += transaction.getQuantity();
+                    revenueCents += transaction.getTotalAmountCents();
+                    profitCents += transaction.getProfitCents();
+                }
+            }
+        }
+        
+        public int getProductId() {
+            return productId;
+        }
+        
+        public Product getProduct() {
+            return product;
+        }
+        
+        /**
+         * Get the product's current name, or its name when last recorded if it has been deleted
+         * @return product name, or null if the product is unknown and has no transactions
+         */
+        public String getProductName() {
+            if (product != null) {
+                return product.getName();
+            }
+            return transactions.isEmpty() ? null : transactions.get(transactions.size() - 1).getProductName();
+        }
+        
+        public List<Transaction> getTransactions() {
+            return transactions;
+        }
+        
+        public int getPurchaseCount() {
+            return purchaseCount;
+        }
+        
+        public long getUnitsPurchased() {
+            return unitsPurchased;
+        }
+        
+        public long getPurchaseCents() {
+            return purchaseCents;
+        }
+        
+        public int getSaleCount() {
+            return saleCount;
+        }
+        
+        public long getUnitsSold() {
+            return unitsSold;
+        }
+        
+        public long getRevenueCents() {
+            return revenueCents;
+        }
+        
+        public long getProfitCents() {
+            return profitCents;
+        }
+    }
+    
+    /**
+     * Constructor to open the store in a directory with the settings given as system properties
+     * @param directory Directory holding the data files
+     */
+    public Store(File directory) {
+        this(directory, parseSyncPolicy(JOURNAL_SYNC), JOURNAL_GROUP_COMMIT_MS, JOURNAL_COMPACT_AFTER,
+             COLUMNAR_STORE, PERSIST_MAX_LATENCY_MS, PERSIST_MAX_PENDING_OPS);
+    }
+    
+    /**
+     * Constructor to open the store in a directory and load its data files
+     * @param directory Directory holding the data files
+     * @param syncPolicy When journal records are forced to disk
+     * @param groupCommitMillis Journal group commit interval (only used by GROUP_COMMIT)
+     * @param compactThreshold Journal records that trigger a compaction into the snapshot
+     * @param columnar true to mirror transactions into the columnar reporting store
+     * @param persistMaxLatencyMillis Longest time a change may stay unsaved
+     * @param persistMaxPendingOps Number of unsaved changes that triggers an immediate save
+     */
+    public Store(File directory, TransactionJournal.SyncPolicy syncPolicy, long groupCommitMillis, int compactThreshold,
+                 boolean columnar, long persistMaxLatencyMillis, int persistMaxPendingOps) {
+        this.directory = directory;
+        this.catalog = PACKED_PRODUCTS ? new PackedProductCatalog() : new HeapProductCatalog();
+        this.codec = new RecordCodec();
+        this.productsSnapshot = new SnapshotFile(new File(directory, PRODUCTS_FILE), RecordCodec.PRODUCTS_MAGIC);
+        this.transactionLog = new TransactionLog(directory, syncPolicy, groupCommitMillis, compactThreshold, columnar, catalog);
+        this.salesEngine = new SalesEngine(catalog, transactionLog);
+        this.reportEngine = new ReportEngine(transactionLog);
+        loadData();
+        this.persistence = new PersistenceScheduler(this::saveData, persistMaxLatencyMillis, persistMaxPendingOps);
+    }
+    
+    /**
+     * Load products and transactions from data files
+     */
+    private void loadData() {
+        loadProducts();
+        transactionLog.load();
+        reapplyStockChanges();
+    }
+    
+    /**
+     * Load products from the data file
+     */
+    private void loadProducts() {
+        if (!productsSnapshot.exists()) {
+            System.out.println("No existing products file found. Starting with empty product catalog.");
+            return;
+        }
+        
+        boolean migrate = false; // file needs rewriting in the current format
+        try (DataInputStream in = productsSnapshot.open()) {
+            if (in == null) {
+                migrate = true;
+                try (InputStream legacyIn = new BufferedInputStream(new FileInputStream(productsSnapshot.getFile()))) {
+                    loadLegacyProducts(legacyIn);
+                }
+                return;
+            }
+            
+            // Read the format marker, or the number of products in files with prices in dollars
+            int header = in.readInt();
+            boolean lastTransactionKnown = header == RecordCodec.PRODUCTS_FORMAT_LAST_TRANSACTION;
+            boolean pricesInCents = lastTransactionKnown || header == RecordCodec.PRODUCTS_FORMAT_CENTS;
+            migrate = !pricesInCents;
+            
+            // Read the number of products
+            int productCount = pricesInCents ? in.readInt() : header;
+            Product.setProductCount(productCount);
+            
+            // Read the next ID
+            int nextId = in.readInt();
+            Product.setNextId(nextId);
+            
+            // Read the ID of the newest transaction included in the stock levels
+            if (lastTransactionKnown) {
+                productsLastTransactionId = in.readInt();
+            }
+            
+            // Read products
+            for (int i = 0; i < productCount; i++) {
+                catalog.add(codec.readProduct(in, pricesInCents));
+            }
+            
+            System.out.println("Loaded " + productCount + " products from file.");
+        } catch (IOException | ClassNotFoundException e) {
+            System.out.println("Error loading products from file: " + e.getMessage());
+            System.out.println("Starting with empty product catalog.");
+            migrate = false;
+        } finally {
+            if (migrate) {
+                saveProducts(); // Migrate to the current format
+            }
+        }
+    }
+    
+    /**
+     * Load products from a data file written with Java serialization by earlier versions
+     * @param in Stream positioned at the start of the file
+     */
+    private void loadLegacyProducts(InputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream ois = new ObjectInputStream(in);
+        
+        // Read the number of products
+        int productCount = ois.readInt();
+        Product.setProductCount(productCount);
+        
+        // Read the next ID
+        int nextId = ois.readInt();
+        Product.setNextId(nextId);
+        
+        // Read products
+        for (int i = 0; i < productCount; i++) {
+            Product product = (Product) ois.readObject();
+            catalog.add(product);
+        }
+        
+        System.out.println("Loaded " + productCount + " products from legacy file.");
+    }
+    
+    /**
+     * Re-apply the stock changes of the transactions recorded after the products file was saved,
+     * e.g. sales journaled just before a crash that came before the next background save
+     * Files written before the newest transaction was recorded in them are taken as they are
+     */
+    private void reapplyStockChanges() {
+        if (productsLastTransactionId < 0) {
+            return;
+        }
+        
+        int reapplied = 0;
+        int highestProductId = 0;
+        try (TransactionCursor cursor = transactionLog.openCursorAt(transactionLog.positionOf(productsLastTransactionId + 1))) {
+            while (cursor.hasNext()) {
+                Transaction transaction = cursor.next();
+                if (transaction.getTransactionId() <= productsLastTransactionId) {
+                    continue;
+                }
+                highestProductId = Math.max(highestProductId, transaction.getProductId());
+                Product product = catalog.findById(transaction.getProductId());
+                if (product == null) {
+                    continue; // Deleted products have no stock to correct
+                }
+                if (transaction.getType() == Transaction.TransactionType.SALE) {
+                    product.setStockQuantity(product.getStockQuantity() - transaction.getQuantity());
+                } else if (!product.increaseStock(transaction.getQuantity())) {
+                    System.out.println("Error re-applying transaction " + transaction.getTransactionId()
+                                       + ": stock would exceed " + Integer.MAX_VALUE + " units");
+                    continue;
+                }
+                reapplied++;
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error re-applying stock changes from the transaction history: " + e.getMessage());
+            return;
+        }
+        
+        // Never hand out again the ID of a product whose sales are in the journal but not in the file
+        boolean idsReserved = highestProductId >= Product.getNextId();
+        if (idsReserved) {
+            Product.setNextId(highestProductId + 1);
+        }
+        if (reapplied > 0) {
+            System.out.println("Re-applied the stock changes of " + reapplied + " transactions recorded after the products were saved.");
+        }
+        if (reapplied > 0 || idsReserved) {
+            saveProducts();
+        }
+    }
+    
+    /**
+     * Parse the journal sync policy setting
+     * @param value per-record, group or none
+     * @return matching sync policy (per-record if unrecognised)
+     */
+    public static TransactionJournal.SyncPolicy parseSyncPolicy(String value) {
+        switch (value.trim().toLowerCase()) {
+            case "group":
+                return TransactionJournal.SyncPolicy.GROUP_COMMIT;
+            case "none":
+                return TransactionJournal.SyncPolicy.NONE;
+            default:
+                return TransactionJournal.SyncPolicy.PER_RECORD;
+        }
+    }
+    
+    /**
+     * Save products and the running sales totals (run by the persistence scheduler)
+     */
+    private void saveData() {
+        long start = System.nanoTime();
+        saveProducts();
+        transactionLog.flush();
+        Metrics.SAVE_LATENCY.record(System.nanoTime() - start);
+    }
+    
+    /**
+     * Save products to the data file as a new snapshot generation
+     * Saves run one at a time (the snapshot's own lock), so an older copy is never written after a newer one
+     */
+    private void saveProducts() {
+        synchronized (productsSnapshot) {
+            // Copy the stock levels while no sale is half-recorded, so they include exactly
+            // the transactions up to lastTransactionId; the file is written after sales resume
+            CatalogCopy copy = salesEngine.withStockSettled(() -> {
+                List<Product> products = catalog.getProducts();
+                int[] stockQuantities = new int[products.size()];
+                for (int i = 0; i < stockQuantities.length; i++) {
+                    stockQuantities[i] = products.get(i).getStockQuantity();
+                }
+                return new CatalogCopy(products, stockQuantities, transactionLog.getLastTransactionId());
+            });
+            try {
+                productsSnapshot.write(out -> {
+                    // Write the format marker (prices in cents, newest transaction recorded)
+                    out.writeInt(RecordCodec.PRODUCTS_FORMAT_LAST_TRANSACTION);
+                    
+                    // Write the number of products
+                    out.writeInt(copy.products.size());
+                    
+                    // Write the next ID
+                    out.writeInt(Product.getNextId());
+                    
+                    // Write the ID of the newest transaction included in the stock levels
+                    out.writeInt(copy.lastTransactionId);
+                    
+                    // Write all products
+                    for (int i = 0; i < copy.products.size(); i++) {
+                        codec.writeProduct(out, copy.products.get(i), copy.stockQuantities[i]);
+                    }
+                });
+            } catch (IOException e) {
+                System.out.println("Error saving products to file: " + e.getMessage());
+            }
+        }
+    }
+    
+    // Getter methods
+    public File getDirectory() {
+        return directory;
+    }
+    
+    public SalesEngine getSalesEngine() {
+        return salesEngine;
+    }
+    
+    /**
+     * Find a product by ID
+     * @param productId Product ID
+     * @return Product object or null if not found
+     */
+    public Product findProduct(int productId) {
+        long start = System.nanoTime();
+        Product product = catalog.findById(productId);
+        Metrics.LOOKUP_LATENCY.record(System.nanoTime() - start);
+        return product;
+    }
+    
+    /**
+     * Get the number of products in the catalog
+     * @return product count
+     */
+    public int getProductCount() {
+        return catalog.size();
+    }
+    
+    /**
+     * Get all products in ID order
+     * @return read-only copy of the products
+     */
+    public List<Product> getProducts() {
+        return catalog.getProducts();
+    }
+    
+    /**
+     * Get all products sorted by name (ignoring case)
+     * @return read-only copy of the products in name order
+     */
+    public List<Product> getProductsByName() {
+        return catalog.getProductsByName();
+    }
+    
+    /**
+     * Get the products whose stock is below their low-stock threshold
+     * @return products needing restocking
+     */
+    public List<Product> getLowStockProducts() {
+        return catalog.getLowStockProducts();
+    }
+    
+    /**
+     * Find the products whose name contains the given text (ignoring case)
+     * @param text Part of the name
+     * @return matching products in name order
+     */
+    public List<Product> searchProducts(String text) {
+        return catalog.findByName(text);
+    }
+    
+    /**
+     * Register a listener notified when a product falls below (or is restocked above) its threshold
+     * @param listener Listener to add
+     */
+    public void addStockListener(StockListener listener) {
+        catalog.addStockListener(listener);
+    }
+    
+    /**
+     * Add a new product with no stock (stock arrives through purchases)
+     * @param name Product name
+     * @param purchasePriceCents Cost per unit in cents
+     * @param sellingPriceCents Retail price per unit in cents
+     * @param lowStockThreshold Stock level below which the product is flagged
+     * @return the new product with its assigned ID
+     */
+    public Product addProduct(String name, long purchasePriceCents, long sellingPriceCents, int lowStockThreshold) {
+        Product product = catalog.add(new Product(name, purchasePriceCents, sellingPriceCents, 0, lowStockThreshold));
+        saveProducts(); // the ID must be on disk before it can be sold, or a restart could hand it out again
+        return product;
+    }
+    
+    /**
+     * Replace a product's information
+     * @param productId Product ID
+     * @param name New name
+     * @param purchasePriceCents New cost per unit in cents
+     * @param sellingPriceCents New retail price per unit in cents
+     * @param stockQuantity New stock level
+     * @param lowStockThreshold New low-stock threshold
+     * @return the updated product, or null if not found
+     */
+    public Product editProduct(int productId, String name, long purchasePriceCents, long sellingPriceCents,
+                               int stockQuantity, int lowStockThreshold) {
+        // No sale may be between taking stock and recording it while the stock is overwritten
+        Product product = salesEngine.withStockSettled(() -> {
+            Product found = catalog.findById(productId);
+            if (found == null) {
+                return null;
+            }
+            if (!name.equals(found.getName())) {
+                catalog.rename(found, name);
+            }
+            found.setPurchasePriceCents(purchasePriceCents);
+            found.setSellingPriceCents(sellingPriceCents);
+            found.setStockQuantity(stockQuantity);
+            found.setLowStockThreshold(lowStockThreshold);
+            return found;
+        });
+        if (product != null) {
+            saveProducts();
+        }
+        return product;
+    }
+    
+    /**
+     * Delete a product from the catalog (its transactions are kept)
+     * @param productId Product ID
+     * @return the removed product, or null if not found
+     */
+    public Product deleteProduct(int productId) {
+        Product removed = salesEngine.withStockSettled(() -> catalog.remove(productId));
+        if (removed != null) {
+            saveProducts();
+        }
+        return removed;
+    }
+    
+    /**
+     * Purchase (restock) a quantity of a product
+     * @param productId Product ID
+     * @param quantity Quantity to add to stock (must be positive)
+     * @return result holding the recorded purchase or the reason it was rejected
+     */
+    public TransactionResult purchase(int productId, int quantity) {
+        TransactionResult result = salesEngine.purchase(productId, quantity);
+        if (result.isSuccess()) {
+            persistence.markDirty();
+        }
+        return result;
+    }
+    
+    /**
+     * Sell a quantity of a product if enough stock is available
+     * @param productId Product ID
+     * @param quantity Quantity to sell (must be positive)
+     * @return result holding the recorded sale or the reason it was rejected
+     */
+    public TransactionResult sale(int productId, int quantity) {
+        TransactionResult result = salesEngine.sell(productId, quantity);
+        if (result.isSuccess()) {
+            persistence.markDirty();
+        }
+        return result;
+    }
+    
+    /**
+     * Sell every line of a basket, or nothing if any line cannot be sold
+     * @param basket Products and quantities to sell
+     * @return result holding the recorded sales or the line that was rejected
+     */
+    public CheckoutResult checkout(Basket basket) {
+        CheckoutResult result = salesEngine.checkout(basket);
+        if (result.isSuccess()) {
+            persistence.markDirty(); // once for the whole basket
+        }
+        return result;
+    }
+    
+    /**
+     * Get the profit report, from the totals maintained as each sale is recorded
+     * @return transaction counts, revenue, cost of goods sold and profit
+     */
+    public ProfitReport getProfitReport() {
+        long start = System.nanoTime();
+        SalesAggregate salesAggregate = transactionLog.getSalesAggregate();
+        ProfitReport report;
+        // The log's lock holds off recording, so the count and the totals cover the same transactions
+        // (taken before the totals' lock, in the order recording takes them)
+        synchronized (transactionLog) {
+            synchronized (salesAggregate) {
+                report = new ProfitReport(transactionLog.size(), salesAggregate.getSaleCount(),
+                                          salesAggregate.getTotalRevenueCents(), salesAggregate.getTotalCostCents());
+            }
+        }
+        Metrics.REPORT_LATENCY.record(System.nanoTime() - start);
+        return report;
+    }
+    
+    /**
+     * Get the best-selling products from the leaderboard maintained as each sale is recorded
+     * @param ranking Rank by units sold, revenue or profit
+     * @param count Number of products wanted
+     * @return totals of up to count products, best first (read in O(count))
+     */
+    public List<ProductTotals> getTopProducts(ProductRanking ranking, int count) {
+        long start = System.nanoTime();
+        List<ProductTotals> top = transactionLog.getSalesLeaderboard().getTop(ranking, count);
+        Metrics.REPORT_LATENCY.record(System.nanoTime() - start);
+        return top;
+    }
+    
+    /**
+     * Recompute the sales totals by reading the whole transaction history, in parallel on the common fork/join pool
+     * @return counts, revenue, cost of goods sold and per-product sales read from the transactions themselves
+     * @throws IOException if the transactions cannot be read
+     */
+    public ReportEngine.Report getHistoryReport() throws IOException {
+        long start = System.nanoTime();
+        ReportEngine.Report report = reportEngine.compute(ForkJoinPool.commonPool());
+        Metrics.REPORT_LATENCY.record(System.nanoTime() - start);
+        return report;
+    }
+    
+    /**
+     * Get one product's purchases and sales, read through the per-product index
+     * @param productId Product ID
+     * @return the product's history (with no transactions if it has none or does not exist)
+     * @throws IOException if the transactions cannot be read
+     */
+    public ProductHistory getProductHistory(int productId) throws IOException {
+        long start = System.nanoTime();
+        List<Transaction> transactions = transactionLog.getProductTransactions(productId);
+        ProductHistory history = new ProductHistory(productId, catalog.findById(productId), transactions);
+        Metrics.REPORT_LATENCY.record(System.nanoTime() - start);
+        return history;
+    }
+    
+    /**
+     * Get the hourly and daily sales buckets
+     * @return sales rollup kept up to date as sales are recorded
+     */
+    public SalesRollup getSalesRollup() {
+        return transactionLog.getSalesRollup();
+    }
+    
+    /**
+     * Find where a listing starting at a transaction ID begins (see TransactionLog.positionOf)
+     * @param transactionId Transaction ID
+     * @return position of the first transaction with an ID at or above it
+     * @throws IOException if the transactions cannot be read
+     */
+    public int positionOf(int transactionId) throws IOException {
+        return transactionLog.positionOf(transactionId);
+    }
+    
+    /**
+     * Read one page of the transactions matching a filter (see TransactionLog.readPage)
+     * @param start Position to start reading at
+     * @param filter Transactions to keep
+     * @param pageSize Maximum number of transactions on the page
+     * @return the page and where the next one starts
+     * @throws IOException if the transactions cannot be read
+     */
+    public TransactionLog.Page readPage(int start, TransactionFilter filter, int pageSize) throws IOException {
+        long begin = System.nanoTime();
+        TransactionLog.Page page = transactionLog.readPage(start, filter, pageSize);
+        Metrics.REPORT_LATENCY.record(System.nanoTime() - begin);
+        return page;
+    }
+    
+    /**
+     * Write the transactions matching a filter as CSV (see Transaction.CSV_HEADER)
+     * Rows are streamed from disk, so any number can be exported
+     * @param filter Transactions to export
+     * @param writer Destination (ideally buffered)
+     * @return number of transactions written
+     * @throws IOException if the transactions cannot be read or written
+     */
+    public int exportTransactions(TransactionFilter filter, Writer writer) throws IOException {
+        int exported = 0;
+        try (TransactionCursor cursor = transactionLog.openCursorAt(transactionLog.positionOf(filter.getMinTransactionId()))) {
+            writer.write(Transaction.CSV_HEADER);
+            writer.write('\n');
+            while (cursor.hasNext()) {
+                Transaction transaction = cursor.next();
+                if (transaction.getTransactionId() > filter.getMaxTransactionId()) {
+                    break;
+                }
+                if (filter.matches(transaction)) {
+                    transaction.writeCsv(writer);
+                    exported++;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return exported;
+    }
+    
+    /**
+     * Import sales and purchases from CSV lines of the form TYPE,productId,quantity
+     * @param reader CSV source
+     * @param checkpointInterval Accepted lines between saves (0 to save only at the end)
+     * @return counts, rejected lines and timing
+     * @throws IOException if the source cannot be read
+     */
+    public BatchImporter.ImportReport importTransactions(Reader reader, int checkpointInterval) throws IOException {
+        // Checkpoints save synchronously so the import never runs ahead of the data files
+        BatchImporter importer = new BatchImporter(salesEngine, () -> {
+            persistence.markDirty();
+            persistence.flush();
+        }, checkpointInterval);
+        
+        transactionLog.setBatchMode(true);
+        try {
+            return importer.importCsv(reader);
+        } finally {
+            transactionLog.setBatchMode(false);
+        }
+    }
+    
+    /**
+     * Save pending changes now instead of waiting for the background save
+     */
+    public void flush() {
+        persistence.markDirty();
+        persistence.flush();
+    }
+    
+    /**
+     * Save pending changes, checkpoint the journal into the snapshot file and write the metrics file
+     */
+    public void close() {
+        persistence.close();
+        transactionLog.close();
+        Metrics.writeTo(new File(directory, Metrics.METRICS_FILE));
+    }
+}
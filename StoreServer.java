@@ -0,0 +1,351 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StoreServer class exposing the Store over HTTP with JSON responses, for POS terminals
+ * Endpoints (parameters come from the query string or a form-encoded body):
+ *   GET  /products/{id}                    product lookup
+ *   GET  /products?q=text                  product search by name
+ *   GET  /inventory                        all products in name order and the low-stock list
+ *   POST /sales?productId=1&quantity=2     record a sale
+ *   POST /purchases?productId=1&quantity=2 record a purchase (restocking)
+ *   GET  /profit                           profit report
+ * Each request runs on its own virtual thread when the JDK has them (Java 21+),
+ * otherwise on a cached thread pool; the Store is safe to call from many threads at once.
+ * Launch with -Dsun.net.httpserver.nodelay=true (Main --serve sets it before the first server is
+ * created; the JDK reads it only once): headers and body are written separately, and without
+ * TCP_NODELAY each response waits for a delayed ACK.
+ */
+public class StoreServer {
+    public static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final Store store;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    
+    /**
+     * Constructor to create a server for a store (call start() to accept requests)
+     * @param store Store to serve
+     * @param port TCP port to listen on (0 for any free port)
+     * @throws IOException if the port cannot be bound
+     */
+    public StoreServer(Store store, int port) throws IOException {
+        this.store = store;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/products", exchange -> handle(exchange, this::products));
+        server.createContext("/inventory", exchange -> handle(exchange, this::inventory));
+        server.createContext("/sales", exchange -> handle(exchange, this::sale));
+        server.createContext("/purchases", exchange -> handle(exchange, this::purchase));
+        server.createContext("/profit", exchange -> handle(exchange, this::profit));
+    }
+    
+    /**
+     * Create the executor running requests: one virtual thread per request if available
+     * @return virtual-thread-per-task executor, or a cached thread pool on older JDKs
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+    
+    /**
+     * Start accepting requests
+     */
+    public void start() {
+        server.start();
+    }
+    
+    /**
+     * Get the port the server listens on
+     * @return bound port (useful when created with port 0)
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    /**
+     * Stop accepting requests and wait briefly for those in progress
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Response of an endpoint: HTTP status and JSON body
+     */
+    private static class Response {
+        final int status;
+        final String json;
+        
+        Response(int status, String json) {
+            this.status = status;
+            this.json = json;
+        }
+    }
+    
+    /**
+     * Endpoint handler
+     */
+    private interface Endpoint {
+        Response handle(String method, String path, Map<String, String> parameters) throws IOException;
+    }
+    
+    /**
+     * Parse the request, run the endpoint and send its JSON response
+     */
+    private void handle(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        Response response;
+        try {
+            Map<String, String> parameters = new HashMap<>();
+            String body = null;
+            if ("POST".equals(exchange.getRequestMethod())) {
+                try (InputStream in = exchange.getRequestBody()) {
+                    body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
+            }
+            if (!isEndpointPath(exchange.getRequestURI().getPath())) {
+                response = error(404, "no such endpoint");
+            } else if (!parseParameters(exchange.getRequestURI().getRawQuery(), parameters)
+                       || !parseParameters(body, parameters)) {
+                response = error(400, "malformed percent-encoding in parameters");
+            } else {
+                response = endpoint.handle(exchange.getRequestMethod(), exchange.getRequestURI().getPath(), parameters);
+            }
+        } catch (NumberFormatException e) {
+            response = error(400, "invalid number: " + e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            // The details (file paths, internal state) are for the server's log, not for POS clients
+            System.out.println("Error handling " + exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath()
+                               + ": " + e);
+            response = error(500, "internal server error");
+        }
+        
+        byte[] body = response.json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+    
+    /**
+     * GET /products/{id} or GET /products?q=text
+     */
+    private Response products(String method, String path, Map<String, String> parameters) {
+        if (!"GET".equals(method)) {
+            return error(405, "use GET");
+        }
+        String id = path.length() > "/products/".length() ? path.substring("/products/".length()) : "";
+        if (!id.isEmpty()) {
+            Product product = store.findProduct(Integer.parseInt(id));
+            if (product == null) {
+                return error(404, "product " + id + " not found");
+            }
+            return new Response(200, productJson(new StringBuilder(), product).toString());
+        }
+        String text = parameters.getOrDefault("q", "");
+        List<Product> products = text.isEmpty() ? store.getProductsByName() : store.searchProducts(text);
+        StringBuilder json = new StringBuilder("{\"products\":");
+        productsJson(json, products);
+        return new Response(200, json.append('}').toString());
+    }
+    
+    /**
+     * GET /inventory
+     */
+    private Response inventory(String method, String path, Map<String, String> parameters) {
+        if (!"GET".equals(method)) {
+            return error(405, "use GET");
+        }
+        StringBuilder json = new StringBuilder("{\"products\":");
+        productsJson(json, store.getProductsByName());
+        json.append(",\"lowStock\":");
+        productsJson(json, store.getLowStockProducts());
+        return new Response(200, json.append('}').toString());
+    }
+    
+    /**
+     * POST /sales with productId and quantity
+     */
+    private Response sale(String method, String path, Map<String, String> parameters) {
+        if (!"POST".equals(method)) {
+            return error(405, "use POST");
+        }
+        return transactionResponse(store.sale(requiredInt(parameters, "productId"), requiredInt(parameters, "quantity")));
+    }
+    
+    /**
+     * POST /purchases with productId and quantity
+     */
+    private Response purchase(String method, String path, Map<String, String> parameters) {
+        if (!"POST".equals(method)) {
+            return error(405, "use POST");
+        }
+        return transactionResponse(store.purchase(requiredInt(parameters, "productId"), requiredInt(parameters, "quantity")));
+    }
+    
+    /**
+     * GET /profit
+     */
+    private Response profit(String method, String path, Map<String, String> parameters) {
+        if (!"GET".equals(method)) {
+            return error(405, "use GET");
+        }
+        Store.ProfitReport report = store.getProfitReport();
+        return new Response(200, "{\"transactionCount\":" + report.getTransactionCount()
+                                 + ",\"saleCount\":" + report.getSaleCount()
+                                 + ",\"purchaseCount\":" + report.getPurchaseCount()
+                                 + ",\"revenueCents\":" + report.getRevenueCents()
+                                 + ",\"costCents\":" + report.getCostCents()
+                                 + ",\"profitCents\":" + report.getProfitCents() + "}");
+    }
+    
+    /**
+     * Turn a sale or purchase result into a response: 201 with the transaction, or the reason it was rejected
+     */
+    private static Response transactionResponse(TransactionResult result) {
+        switch (result.getStatus()) {
+            case OK:
+                Transaction transaction = result.getTransaction();
+                StringBuilder json = new StringBuilder("{\"transactionId\":").append(transaction.getTransactionId());
+                json.append(",\"type\":\"").append(transaction.getType()).append('"');
+                json.append(",\"productId\":").append(transaction.getProductId());
+                json.append(",\"quantity\":").append(transaction.getQuantity());
+                json.append(",\"unitPriceCents\":").append(transaction.getUnitPriceCents());
+                json.append(",\"totalCents\":").append(transaction.getTotalAmountCents());
+                json.append(",\"profitCents\":").append(transaction.getProfitCents());
+                json.append(",\"time\":").append(transaction.getTimestampMillis());
+                json.append(",\"stockAfter\":").append(result.getStockAfter()).append('}');
+                return new Response(201, json.toString());
+            case PRODUCT_NOT_FOUND:
+                return error(404, "product not found");
+            case INSUFFICIENT_STOCK:
+                return new Response(409, "{\"error\":\"insufficient stock\",\"availableStock\":" + result.getStockAfter() + "}");
+            case INVALID_QUANTITY:
+                return error(400, "quantity must be positive");
+            case AMOUNT_TOO_LARGE:
+                return error(400, "total amount too large");
+            case STOCK_TOO_LARGE:
+                return new Response(409, "{\"error\":\"stock would exceed " + Integer.MAX_VALUE
+                                         + " units\",\"availableStock\":" + result.getStockAfter() + "}");
+        }
+        // No default above, so a new status shows up here rather than under another status's message
+        throw new IllegalStateException("unhandled transaction status " + result.getStatus());
+    }
+    
+    private static Response error(int status, String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        return new Response(status, quote(json, message).append('}').toString());
+    }
+    
+    private static int requiredInt(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null) {
+            throw new NumberFormatException("missing " + name);
+        }
+        return Integer.parseInt(value.trim());
+    }
+    
+    /**
+     * Check that a path is exactly an endpoint, or /products/{id}
+     * (a context also receives every longer path starting with its own, e.g. /sales/123 or /productsX)
+     */
+    private static boolean isEndpointPath(String path) {
+        switch (path) {
+            case "/products":
+            case "/inventory":
+            case "/sales":
+            case "/purchases":
+            case "/profit":
+                return true;
+            default:
+                String prefix = "/products/";
+                return path.startsWith(prefix) && path.length() > prefix.length()
+                       && path.indexOf('/', prefix.length()) < 0;
+        }
+    }
+    
+    /**
+     * Add the name=value pairs of a query string or form body to a map
+     * @return false if a pair has a malformed percent-escape (e.g. "%zz" or a trailing "%")
+     */
+    private static boolean parseParameters(String encoded, Map<String, String> parameters) {
+        if (encoded == null || encoded.isEmpty()) {
+            return true;
+        }
+        for (String pair : encoded.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                try {
+                    parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                                   URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+                } catch (IllegalArgumentException e) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    private static void productsJson(StringBuilder json, List<Product> products) {
+        json.append('[');
+        for (int i = 0; i < products.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            productJson(json, products.get(i));
+        }
+        json.append(']');
+    }
+    
+    private static StringBuilder productJson(StringBuilder json, Product product) {
+        json.append("{\"id\":").append(product.getId());
+        json.append(",\"name\":");
+        quote(json, product.getName());
+        json.append(",\"purchasePriceCents\":").append(product.getPurchasePriceCents());
+        json.append(",\"sellingPriceCents\":").append(product.getSellingPriceCents());
+        json.append(",\"stock\":").append(product.getStockQuantity());
+        json.append(",\"lowStockThreshold\":").append(product.getLowStockThreshold());
+        json.append(",\"lowStock\":").append(product.isLowStock()).append('}');
+        return json;
+    }
+    
+    /**
+     * Append a string as a JSON string literal
+     */
+    private static StringBuilder quote(StringBuilder json, String text) {
+        json.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"');
+    }
+}
@@ -1,8 +1,19 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Transaction class representing a purchase or sale transaction
- * Implements Serializable for file I/O operations
+ * Amounts are held in cents (see Money); the time is held as epoch milliseconds
+ * Implements Serializable so transactions saved by earlier versions can still be read
  */
 public class Transaction implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -17,10 +28,40 @@ public class Transaction implements Serializable {
     private int productId;
     private String productName;
     private int quantity;
-    private double unitPrice;
-    private double totalAmount;
-    private static int transactionCount = 0;
-    private static int nextTransactionId = 1;
+    private long unitPriceCents;
+    private long unitCostCents;    // Purchase price per unit when the transaction was recorded
+    private long totalAmountCents;
+    private long timestampMillis;  // When the transaction was recorded, or UNKNOWN_TIME
+    // Timestamp of transactions recorded before the time was stored
+    public static final long UNKNOWN_TIME = 0;
+    // Columns written by writeCsv()
+    public static final String CSV_HEADER = "id,type,productId,productName,quantity,unitPrice,unitCost,total,time";
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final AtomicInteger transactionCount = new AtomicInteger(0);
+    private static final AtomicInteger nextTransactionId = new AtomicInteger(1);
+    // Serialized form of earlier versions, which stored amounts as double dollars
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("transactionId", int.class),
+        new ObjectStreamField("type", TransactionType.class),
+        new ObjectStreamField("productId", int.class),
+        new ObjectStreamField("productName", String.class),
+        new ObjectStreamField("quantity", int.class),
+        new ObjectStreamField("unitPrice", double.class),
+        new ObjectStreamField("unitCost", double.class),
+        new ObjectStreamField("totalAmount", double.class)
+    };
+    
+    /**
+     * Constructor to create a new transaction whose unit cost equals its unit price (e.g. a purchase)
+     * @param type Type of transaction (PURCHASE or SALE)
+     * @param productId Product ID
+     * @param productName Product name
+     * @param quantity Quantity involved
+     * @param unitPriceCents Unit price in cents
+     */
+    public Transaction(TransactionType type, int productId, String productName, int quantity, long unitPriceCents) {
+        this(type, productId, productName, quantity, unitPriceCents, unitPriceCents);
+    }
     
     /**
      * Constructor to create a new transaction
@@ -28,32 +69,41 @@ public class Transaction implements Serializable {
      * @param productId Product ID
      * @param productName Product name
      * @param quantity Quantity involved
-     * @param unitPrice Unit price
+     * @param unitPriceCents Unit price in cents
+     * @param unitCostCents Purchase price per unit in cents at the time of the transaction
      */
-    public Transaction(TransactionType type, int productId, String productName, int quantity, double unitPrice) {
-        this.transactionId = nextTransactionId++;
+    public Transaction(TransactionType type, int productId, String productName, int quantity,
+                      long unitPriceCents, long unitCostCents) {
+        this.totalAmountCents = Money.times(unitPriceCents, quantity); // before taking an ID, as it may throw
+        this.transactionId = nextTransactionId.getAndIncrement();
         this.type = type;
         this.productId = productId;
         this.productName = productName;
         this.quantity = quantity;
-        this.unitPrice = unitPrice;
-        this.totalAmount = quantity * unitPrice;
-        transactionCount++;
+        this.unitPriceCents = unitPriceCents;
+        this.unitCostCents = unitCostCents;
+        this.timestampMillis = System.currentTimeMillis();
+        transactionCount.incrementAndGet();
     }
     
     /**
      * Constructor with specified ID (for loading from file)
+     * Pass Money.UNKNOWN as unitCostCents for records saved before the cost basis was recorded,
+     * and UNKNOWN_TIME as timestampMillis for records saved before the time was recorded
      */
     public Transaction(int transactionId, TransactionType type, int productId, String productName, 
-                      int quantity, double unitPrice, double totalAmount) {
+                      int quantity, long unitPriceCents, long unitCostCents, long totalAmountCents,
+                      long timestampMillis) {
         this.transactionId = transactionId;
         this.type = type;
         this.productId = productId;
         this.productName = productName;
         this.quantity = quantity;
-        this.unitPrice = unitPrice;
-        this.totalAmount = totalAmount;
-        transactionCount++;
+        this.unitPriceCents = unitPriceCents;
+        this.unitCostCents = unitCostCents;
+        this.totalAmountCents = totalAmountCents;
+        this.timestampMillis = timestampMillis;
+        transactionCount.incrementAndGet();
     }
     
     // Getter methods
@@ -77,12 +127,55 @@ public class Transaction implements Serializable {
         return quantity;
     }
     
-    public double getUnitPrice() {
-        return unitPrice;
+    public long getUnitPriceCents() {
+        return unitPriceCents;
+    }
+    
+    public long getUnitCostCents() {
+        return unitCostCents;
+    }
+    
+    public long getTotalAmountCents() {
+        return totalAmountCents;
+    }
+    
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+    
+    /**
+     * Check whether the time was recorded with the transaction
+     * @return false for records saved before the time was recorded
+     */
+    public boolean hasTimestamp() {
+        return timestampMillis != UNKNOWN_TIME;
+    }
+    
+    /**
+     * Check whether the unit cost was recorded with the transaction
+     * @return false for records saved before the cost basis was recorded
+     */
+    public boolean hasUnitCost() {
+        return unitCostCents != Money.UNKNOWN;
+    }
+    
+    /**
+     * Set the unit cost (for migrating records saved without a cost basis)
+     * @param unitCostCents Purchase price per unit in cents at the time of the transaction
+     */
+    public void setUnitCostCents(long unitCostCents) {
+        this.unitCostCents = unitCostCents;
     }
     
-    public double getTotalAmount() {
-        return totalAmount;
+    /**
+     * Calculate the profit made by this transaction
+     * @return (total amount - unit cost * quantity) in cents for a sale, 0 for a purchase
+     */
+    public long getProfitCents() {
+        if (type != TransactionType.SALE) {
+            return 0;
+        }
+        return totalAmountCents - Money.times(unitCostCents, quantity);
     }
     
     /**
@@ -90,7 +183,7 @@ public class Transaction implements Serializable {
      * @return number of transactions created
      */
     public static int getTransactionCount() {
-        return transactionCount;
+        return transactionCount.get();
     }
     
     /**
@@ -98,7 +191,7 @@ public class Transaction implements Serializable {
      * @param count the new transaction count
      */
     public static void setTransactionCount(int count) {
-        transactionCount = count;
+        transactionCount.set(count);
     }
     
     /**
@@ -106,7 +199,7 @@ public class Transaction implements Serializable {
      * @return next transaction ID
      */
     public static int getNextTransactionId() {
-        return nextTransactionId;
+        return nextTransactionId.get();
     }
     
     /**
@@ -114,23 +207,111 @@ public class Transaction implements Serializable {
      * @param id the next transaction ID to use
      */
     public static void setNextTransactionId(int id) {
-        nextTransactionId = id;
+        nextTransactionId.set(id);
     }
     
     /**
      * Display transaction information in a formatted way
      */
     public void displayTransaction() {
+        displayRow(transactionId, type, productId, productName, quantity, unitPriceCents, totalAmountCents,
+                   timestampMillis);
+    }
+    
+    /**
+     * Display one transaction row from its individual fields (e.g. from columnar storage)
+     */
+    public static void displayRow(int transactionId, TransactionType type, int productId, String productName,
+                                  int quantity, long unitPriceCents, long totalAmountCents, long timestampMillis) {
         String typeStr = type == TransactionType.PURCHASE ? "PURCHASE" : "SALE";
-        System.out.printf("%-3d | %-10s | %-3d | %-20s | %-8d | $%-10.2f | $%-12.2f%n", 
+        System.out.printf("%-3d | %-10s | %-3d | %-20s | %-8d | $%-10s | $%-12s | %s%n", 
                          transactionId, typeStr, productId, productName, quantity, 
-                         unitPrice, totalAmount);
+                         Money.format(unitPriceCents), Money.format(totalAmountCents), formatTime(timestampMillis));
+    }
+    
+    /**
+     * Format a transaction time in the system time zone
+     * @param timestampMillis Epoch milliseconds, or UNKNOWN_TIME
+     * @return e.g. "2024-05-01 14:30", or "-" if the time is unknown
+     */
+    public static String formatTime(long timestampMillis) {
+        if (timestampMillis == UNKNOWN_TIME) {
+            return "-";
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMillis), ZoneId.systemDefault()).format(TIME_FORMAT);
+    }
+    
+    /**
+     * Write the transaction as one CSV line (see CSV_HEADER)
+     * The fields are written straight to the writer, without building a string for the line
+     * @param out Writer to append to (ideally buffered)
+     * @throws IOException if the line cannot be written
+     */
+    public void writeCsv(Writer out) throws IOException {
+        out.write(Integer.toString(transactionId));
+        out.write(',');
+        out.write(type.name());
+        out.write(',');
+        out.write(Integer.toString(productId));
+        out.write(',');
+        if (productName.indexOf(',') >= 0 || productName.indexOf('"') >= 0) {
+            out.write('"');
+            out.write(productName.replace("\"", "\"\""));
+            out.write('"');
+        } else {
+            out.write(productName);
+        }
+        out.write(',');
+        out.write(Integer.toString(quantity));
+        out.write(',');
+        out.write(Money.format(unitPriceCents));
+        out.write(',');
+        out.write(hasUnitCost() ? Money.format(unitCostCents) : "");
+        out.write(',');
+        out.write(Money.format(totalAmountCents));
+        out.write(',');
+        out.write(hasTimestamp() ? formatTime(timestampMillis) : "");
+        out.write('\n');
     }
     
     @Override
     public String toString() {
-        return String.format("Transaction ID: %d, Type: %s, Product: %s (ID: %d), Quantity: %d, Unit Price: $%.2f, Total: $%.2f", 
-                           transactionId, type, productName, productId, quantity, unitPrice, totalAmount);
+        return String.format("Transaction ID: %d, Type: %s, Product: %s (ID: %d), Quantity: %d, Unit Price: $%s, Total: $%s, Time: %s", 
+                           transactionId, type, productName, productId, quantity,
+                           Money.format(unitPriceCents), Money.format(totalAmountCents), formatTime(timestampMillis));
+    }
+    
+    /**
+     * Write the transaction in the serialized form of earlier versions (amounts as dollars)
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("transactionId", transactionId);
+        fields.put("type", type);
+        fields.put("productId", productId);
+        fields.put("productName", productName);
+        fields.put("quantity", quantity);
+        fields.put("unitPrice", Money.toDollars(unitPriceCents));
+        fields.put("unitCost", hasUnitCost() ? Money.toDollars(unitCostCents) : Double.NaN);
+        fields.put("totalAmount", Money.toDollars(totalAmountCents));
+        out.writeFields();
+    }
+    
+    /**
+     * Read a transaction saved with Java serialization, converting its amounts to cents
+     * Streams from before the unit cost was recorded leave it UNKNOWN
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        transactionId = fields.get("transactionId", 0);
+        type = (TransactionType) fields.get("type", null);
+        productId = fields.get("productId", 0);
+        productName = (String) fields.get("productName", null);
+        quantity = fields.get("quantity", 0);
+        unitPriceCents = Money.fromDollars(fields.get("unitPrice", 0.0));
+        unitCostCents = fields.defaulted("unitCost") ? Money.UNKNOWN : Money.fromDollars(fields.get("unitCost", Double.NaN));
+        totalAmountCents = Money.fromDollars(fields.get("totalAmount", 0.0));
+        timestampMillis = UNKNOWN_TIME; // not part of the serialized form
     }
 }
 
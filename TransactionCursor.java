@@ -0,0 +1,126 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * TransactionCursor class reading the transaction history in order, one record at a time
+ * Records come first from the snapshot file, which is streamed rather than loaded, and then
+ * from the records journaled since the snapshot. Only the record being returned is decoded,
+ * so memory stays bounded however long the history is.
+ *
+ * A cursor sees the history as it was when it was opened. Close it when done.
+ */
+public class TransactionCursor implements Iterator<Transaction>, Closeable {
+    private final DataInputStream snapshotIn; // null when there is nothing to read from the snapshot
+    private int snapshotRemaining;
+    private final List<Transaction> tail;
+    private int tailIndex;
+    private final RecordCodec codec = new RecordCodec();
+    private int position;
+    
+    /**
+     * Constructor to create a cursor over a snapshot followed by journaled records
+     * @param snapshotIn Snapshot stream positioned at its first record, or null
+     * @param snapshotCount Number of records to read from the snapshot
+     * @param tail Records journaled since the snapshot, in order
+     */
+    public TransactionCursor(DataInputStream snapshotIn, int snapshotCount, List<Transaction> tail) {
+        this(snapshotIn, snapshotCount, tail, 0, 0);
+    }
+    
+    /**
+     * Constructor to create a cursor starting part way through the history
+     * @param snapshotIn Snapshot stream positioned at the next record to read, or null
+     * @param snapshotRemaining Number of records left to read from the snapshot
+     * @param tail Records journaled since the snapshot, in order
+     * @param tailIndex Index of the first tail record to read
+     * @param position Position of the cursor in the history
+     */
+    public TransactionCursor(DataInputStream snapshotIn, int snapshotRemaining, List<Transaction> tail,
+                             int tailIndex, int position) {
+        this.snapshotIn = snapshotIn;
+        this.snapshotRemaining = snapshotIn == null ? 0 : snapshotRemaining;
+        this.tail = tail;
+        this.tailIndex = tailIndex;
+        this.position = position;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        return snapshotRemaining > 0 || tailIndex < tail.size();
+    }
+    
+    /**
+     * Read the next transaction
+     * @return next transaction in ID order
+     * @throws UncheckedIOException if the snapshot cannot be read
+     */
+    @Override
+    public Transaction next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        position++;
+        if (snapshotRemaining > 0) {
+            snapshotRemaining--;
+            try {
+                return codec.readTransaction(snapshotIn);
+            } catch (IOException e) {
+                snapshotRemaining = 0;
+                throw new UncheckedIOException("Error reading transactions from file: " + e.getMessage(), e);
+            }
+        }
+        return tail.get(tailIndex++);
+    }
+    
+    /**
+     * Read up to a page of transactions
+     * @param pageSize Maximum number of transactions to read
+     * @return the next transactions (empty at the end of the history)
+     */
+    public List<Transaction> nextPage(int pageSize) {
+        List<Transaction> page = new ArrayList<>(Math.min(pageSize, 1024));
+        while (page.size() < pageSize && hasNext()) {
+            page.add(next());
+        }
+        return page;
+    }
+    
+    /**
+     * Move past transactions without decoding them
+     * @param count Number of transactions to skip
+     * @throws IOException if the snapshot cannot be read
+     */
+    public void skip(int count) throws IOException {
+        for (int i = 0; i < count && hasNext(); i++) {
+            if (snapshotRemaining > 0) {
+                codec.skipTransaction(snapshotIn);
+                snapshotRemaining--;
+            } else {
+                tailIndex++;
+            }
+            position++;
+        }
+    }
+    
+    /**
+     * Get the position of the next transaction in the history
+     * @return number of transactions before it
+     */
+    public int getPosition() {
+        return position;
+    }
+    
+    @Override
+    public void close() {
+        if (snapshotIn != null) {
+            try {
+                snapshotIn.close();
+            } catch (IOException e) {
+                System.out.println("Error closing transactions file: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * TransactionFilter class selecting transactions by type, product and transaction ID range
+ * Filters are immutable; a field left at its default matches every transaction
+ */
+public class TransactionFilter {
+    private final Transaction.TransactionType type; // null for any type
+    private final int productId;                    // 0 for any product
+    private final int minTransactionId;
+    private final int maxTransactionId;
+    
+    /**
+     * Constructor to create a filter
+     * @param type Type of transaction to keep, or null for any type
+     * @param productId Product ID to keep, or 0 for any product
+     * @param minTransactionId Lowest transaction ID to keep
+     * @param maxTransactionId Highest transaction ID to keep
+     */
+    public TransactionFilter(Transaction.TransactionType type, int productId,
+                             int minTransactionId, int maxTransactionId) {
+        this.type = type;
+        this.productId = productId;
+        this.minTransactionId = minTransactionId;
+        this.maxTransactionId = maxTransactionId;
+    }
+    
+    /**
+     * Create a filter matching every transaction
+     * @return filter without conditions
+     */
+    public static TransactionFilter all() {
+        return new TransactionFilter(null, 0, 1, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Create a filter matching sales only
+     * @return filter keeping SALE transactions
+     */
+    public static TransactionFilter sales() {
+        return new TransactionFilter(Transaction.TransactionType.SALE, 0, 1, Integer.MAX_VALUE);
+    }
+    
+    // Getter methods
+    public Transaction.TransactionType getType() {
+        return type;
+    }
+    
+    public int getProductId() {
+        return productId;
+    }
+    
+    public int getMinTransactionId() {
+        return minTransactionId;
+    }
+    
+    public int getMaxTransactionId() {
+        return maxTransactionId;
+    }
+    
+    /**
+     * Check whether a transaction passes the filter
+     * @param transaction Transaction to check
+     * @return true if it matches every condition
+     */
+    public boolean matches(Transaction transaction) {
+        return matches(transaction.getTransactionId(), transaction.getType(), transaction.getProductId());
+    }
+    
+    /**
+     * Check whether a transaction passes the filter from its individual fields (e.g. from columnar storage)
+     * @return true if it matches every condition
+     */
+    public boolean matches(int transactionId, Transaction.TransactionType type, int productId) {
+        return transactionId >= minTransactionId && transactionId <= maxTransactionId
+            && (this.type == null || this.type == type)
+            && (this.productId == 0 || this.productId == productId);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder(type == null ? "all types" : type + " only");
+        if (productId != 0) {
+            description.append(", product ").append(productId);
+        }
+        if (minTransactionId > 1 || maxTransactionId < Integer.MAX_VALUE) {
+            description.append(", IDs ").append(minTransactionId).append(" to ")
+                       .append(maxTransactionId == Integer.MAX_VALUE ? "last" : String.valueOf(maxTransactionId));
+        }
+        return description.toString();
+    }
+}
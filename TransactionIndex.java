@@ -0,0 +1,84 @@
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * TransactionIndex class keeping a sparse index over the records of the transactions snapshot file
+ * The byte offset and transaction ID of every STRIDE-th record are kept, so a page anywhere in the
+ * history is reached by seeking to the nearest indexed record and skipping fewer than STRIDE
+ * records, and a transaction ID is found by binary search.
+ *
+ * The index is built the first time it is needed and extended after each compaction: a new
+ * snapshot generation starts with the same records at the same offsets as the one it replaces.
+ */
+public class TransactionIndex {
+    public static final int STRIDE = 256;
+    
+    private long[] offsets = new long[16]; // offset of record i * STRIDE from the first record
+    private int[] transactionIds = new int[16];
+    private int entries;
+    private int indexedCount;  // records scanned so far
+    private long endOffset;    // offset just past the last scanned record
+    private final RecordCodec codec = new RecordCodec();
+    
+    /**
+     * Get the number of snapshot records covered by the index
+     * @return records scanned so far
+     */
+    public synchronized int getIndexedCount() {
+        return indexedCount;
+    }
+    
+    /**
+     * Get the offset at which extend() continues scanning
+     * @return offset just past the last scanned record
+     */
+    public synchronized long getEndOffset() {
+        return endOffset;
+    }
+    
+    /**
+     * Scan snapshot records until the index covers recordCount of them
+     * @param in Stream positioned at getEndOffset()
+     * @param recordCount Number of records the index should cover
+     * @throws IOException if the records cannot be read
+     */
+    public synchronized void extend(DataInputStream in, int recordCount) throws IOException {
+        while (indexedCount < recordCount) {
+            int frameLength = codec.skipTransaction(in);
+            if (indexedCount % STRIDE == 0) {
+                if (entries == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, entries * 2);
+                    transactionIds = Arrays.copyOf(transactionIds, entries * 2);
+                }
+                offsets[entries] = endOffset;
+                transactionIds[entries] = codec.getSkippedTransactionId();
+                entries++;
+            }
+            endOffset += frameLength;
+            indexedCount++;
+        }
+    }
+    
+    /**
+     * Get the offset of the indexed record at or before a record
+     * @param record Position of the record in the snapshot (must be below getIndexedCount())
+     * @return offset of record (record / STRIDE) * STRIDE
+     */
+    public synchronized long offsetOf(int record) {
+        return offsets[record / STRIDE];
+    }
+    
+    /**
+     * Find the last indexed record whose transaction ID is not above the given one
+     * @param transactionId Transaction ID to look for
+     * @return position of that record in the snapshot, or 0 if every indexed ID is above it
+     */
+    public synchronized int floorRecord(int transactionId) {
+        int entry = Arrays.binarySearch(transactionIds, 0, entries, transactionId);
+        if (entry < 0) {
+            entry = Math.max(0, -entry - 2);
+        }
+        return entry * STRIDE;
+    }
+}
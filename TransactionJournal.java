@@ -0,0 +1,287 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TransactionJournal class implementing an append-only write-ahead log of transactions
+ * Each transaction is written as one RecordCodec frame: [payload length][payload][CRC32 of payload]
+ * so that a record torn by a crash can be detected and discarded on replay
+ */
+public class TransactionJournal {
+    
+    /**
+     * When appended records are forced to the storage device
+     */
+    public enum SyncPolicy {
+        PER_RECORD,    // fsync after every record
+        GROUP_COMMIT,  // fsync at most once per group commit interval
+        NONE           // leave flushing to the operating system
+    }
+    
+    private final File file;
+    private final SyncPolicy syncPolicy;
+    private final long groupCommitMillis;
+    private FileChannel channel;
+    private final RecordCodec codec = new RecordCodec();
+    private boolean dirty;
+    private int recordCount; // records appended since the journal was last rewritten
+    private boolean deferSync; // batch mode: hold fsyncs until sync() is called
+    private Thread groupCommitThread;
+    
+    /**
+     * Constructor to create a journal backed by the given file
+     * @param file Journal file
+     * @param syncPolicy When appended records are forced to disk
+     * @param groupCommitMillis Group commit interval (only used by GROUP_COMMIT)
+     */
+    public TransactionJournal(File file, SyncPolicy syncPolicy, long groupCommitMillis) {
+        this.file = file;
+        this.syncPolicy = syncPolicy;
+        this.groupCommitMillis = groupCommitMillis;
+    }
+    
+    /**
+     * Read every intact record from the journal and open it for appending
+     * A torn or corrupt record ends the replay and is truncated away
+     * @return transactions in the order they were appended
+     * @throws IOException if the journal cannot be opened
+     */
+    public synchronized List<Transaction> replay() throws IOException {
+        List<Transaction> replayed = new ArrayList<>();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                   StandardOpenOption.READ, StandardOpenOption.WRITE);
+        
+        long position = 0;
+        long size = channel.size();
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        while (position + 4 <= size) {
+            lengthBuffer.clear();
+            readFully(lengthBuffer, position);
+            int length = lengthBuffer.getInt(0);
+            if (length < RecordCodec.MIN_TRANSACTION_PAYLOAD || length > RecordCodec.MAX_TRANSACTION_PAYLOAD
+                    || position + 4 + length + 4 > size) {
+                break; // torn length prefix or record cut short
+            }
+            
+            ByteBuffer record = ByteBuffer.allocate(length + 4);
+            readFully(record, position + 4);
+            if (codec.checksum(record.array(), 0, length) != record.getInt(length)) {
+                break; // partially written payload
+            }
+            
+            record.rewind();
+            record.limit(length);
+            replayed.add(codec.decodeTransaction(record));
+            position += 4 + length + 4;
+        }
+        recordCount = replayed.size();
+        
+        if (position < size) {
+            System.out.println("Discarding " + (size - position) + " bytes of incomplete journal data.");
+            channel.truncate(position);
+            channel.force(true);
+        }
+        channel.position(position);
+        
+        if (syncPolicy == SyncPolicy.GROUP_COMMIT) {
+            startGroupCommit();
+        }
+        return replayed;
+    }
+    
+    /**
+     * Append a transaction to the end of the journal
+     * @param transaction Transaction to append
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void append(Transaction transaction) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer buffer = codec.encodeTransaction(transaction);
+        Metrics.JOURNAL_BYTES.add(buffer.remaining());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        recordCount++;
+        
+        if (syncPolicy == SyncPolicy.PER_RECORD && !deferSync) {
+            channel.force(false);
+        } else if (syncPolicy != SyncPolicy.NONE) {
+            dirty = true;
+        }
+        Metrics.JOURNAL_APPEND_LATENCY.record(System.nanoTime() - start);
+    }
+    
+    /**
+     * Append several transactions and sync them according to the policy once for the whole group
+     * @param batch Transactions to append, in order
+     * @throws IOException if a record cannot be written
+     */
+    public synchronized void appendAll(List<Transaction> batch) throws IOException {
+        boolean wasDeferred = deferSync;
+        deferSync = true;
+        try {
+            for (Transaction transaction : batch) {
+                append(transaction);
+            }
+        } finally {
+            deferSync = wasDeferred;
+        }
+        if (syncPolicy == SyncPolicy.PER_RECORD && !deferSync) {
+            sync();
+        }
+    }
+    
+    /**
+     * Switch batch mode on or off
+     * In batch mode appended records are not forced one by one; the caller calls sync()
+     * once per batch instead. Leaving batch mode syncs any deferred records.
+     * @param deferSync true to defer fsyncs until sync() is called
+     * @throws IOException if deferred records cannot be forced when leaving batch mode
+     */
+    public synchronized void setDeferSync(boolean deferSync) throws IOException {
+        this.deferSync = deferSync;
+        if (!deferSync && dirty) {
+            sync();
+        }
+    }
+    
+    /**
+     * Force any appended records to disk regardless of the sync policy
+     * @throws IOException if the journal cannot be forced
+     */
+    public synchronized void sync() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.force(false);
+            dirty = false;
+        }
+    }
+    
+    /**
+     * Get the number of records in the journal
+     * @return records replayed or appended since the journal was last reset or rewritten
+     */
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+    
+    /**
+     * Check whether the journal holds any records
+     * @return true if nothing has been appended since the last reset
+     * @throws IOException if the journal size cannot be read
+     */
+    public synchronized boolean isEmpty() throws IOException {
+        return channel == null || channel.size() == 0;
+    }
+    
+    /**
+     * Discard all records, e.g. after they have been written to a full snapshot
+     * @throws IOException if the journal cannot be truncated
+     */
+    public synchronized void reset() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+        dirty = false;
+        recordCount = 0;
+    }
+    
+    /**
+     * Replace the journal with just the given records, e.g. those recorded after a snapshot was taken
+     * The new journal is written to a temporary file, forced and atomically renamed into place,
+     * so a crash leaves either the old or the new journal complete
+     * @param tail Records to keep, in order
+     * @throws IOException if the journal cannot be rewritten (the old journal stays in use)
+     */
+    public synchronized void rewrite(List<Transaction> tail) throws IOException {
+        if (channel == null) {
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Transaction transaction : tail) {
+                ByteBuffer buffer = codec.encodeTransaction(transaction);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            out.force(true);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        
+        channel.close();
+        try {
+            SnapshotFile.moveAtomically(temp, file);
+            recordCount = tail.size();
+            dirty = false;
+        } finally {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+    }
+    
+    /**
+     * Sync and close the journal
+     */
+    public synchronized void close() {
+        if (groupCommitThread != null) {
+            groupCommitThread.interrupt();
+            groupCommitThread = null;
+        }
+        if (channel == null) {
+            return;
+        }
+        try {
+            sync();
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Error closing transaction journal: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Start the daemon thread that forces dirty records once per group commit interval
+     */
+    private void startGroupCommit() {
+        groupCommitThread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(groupCommitMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                synchronized (this) {
+                    if (dirty) {
+                        try {
+                            sync();
+                        } catch (IOException e) {
+                            System.out.println("Error syncing transaction journal: " + e.getMessage());
+                        }
+                    }
+                }
+            }
+        }, "journal-group-commit");
+        groupCommitThread.setDaemon(true);
+        groupCommitThread.start();
+    }
+    
+    /**
+     * Fill a buffer from the channel starting at the given position
+     */
+    private void readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position + target.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of journal");
+            }
+        }
+    }
+}
@@ -0,0 +1,1068 @@
+import java.io.*;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * TransactionLog class owning the transaction history and everything derived from it:
+ * the snapshot file, the append-only journal, the running sales totals, the product
+ * leaderboard, the hourly and daily sales buckets and the optional columnar reporting store.
+ *
+ * Recording is serialized by the log's lock so that transaction IDs are handed out in the
+ * same order the records reach the journal; reads return copies and are safe from any thread.
+ *
+ * Only the records journaled since the last snapshot are kept in memory. Startup reads the
+ * snapshot's header and counters, and the history is read page by page through a
+ * TransactionCursor when it is displayed, so startup time and memory do not grow with it.
+ *
+ * Once the journal holds compactThreshold records it is compacted: the previous snapshot's
+ * records are copied unchanged into a new snapshot generation followed by the journaled ones,
+ * without holding up recording, then the journal is rewritten with only the records that
+ * arrived meanwhile, so restart replays a bounded journal.
+ */
+public class TransactionLog {
+    private static final String TRANSACTIONS_FILE = "transactions.bin";
+    private static final String JOURNAL_FILE = "transactions.journal";
+    private static final String SALES_SUMMARY_FILE = "sales_summary.bin";
+    private static final String SALES_ROLLUP_FILE = "sales_rollup.bin";
+    private static final String COLUMNS_DIRECTORY = "transactions.columns";
+    // Written before the transaction count by Java-serialized snapshots that record each
+    // sale's unit cost; older snapshots start directly with the (non-negative) count
+    private static final int LEGACY_TRANSACTIONS_FORMAT_WITH_COST = -2;
+    
+    private final File directory;
+    private final ProductCatalog catalog;
+    private final ArrayList<Transaction> recent; // transactions recorded since the snapshot
+    private int snapshotCount;       // transactions in the snapshot file (current format only)
+    private int snapshotLastId;      // ID of the newest transaction in the snapshot file
+    private int lastTransactionId;   // ID of the newest transaction overall
+    private final TransactionJournal journal;
+    private final SnapshotFile snapshot;
+    private final int compactThreshold;
+    private final Object compactionLock = new Object(); // taken before the log's lock, never after
+    private final TransactionIndex index = new TransactionIndex(); // built on first use
+    private volatile ProductTransactionIndex productIndex; // built on first use, then updated as transactions are recorded
+    private final Object productIndexLock = new Object(); // taken before compactionLock, never after
+    private final SalesAggregate salesAggregate;
+    private final SalesLeaderboard salesLeaderboard;
+    private final SalesRollup salesRollup;
+    private final boolean columnar;
+    private volatile ColumnarTransactionStore columnarStore; // null unless the columnar store is enabled
+    private final RecordCodec codec;
+    private boolean rewriteSnapshot; // set when loaded transactions need saving in the current format
+    
+    /**
+     * Constructor to create a transaction log stored in the given directory
+     * @param directory Directory holding the data files
+     * @param syncPolicy When journal records are forced to disk
+     * @param groupCommitMillis Journal group commit interval (only used by GROUP_COMMIT)
+     * @param compactThreshold Journal records that trigger a compaction into the snapshot
+     * @param columnar true to mirror transactions into the columnar reporting store
+     * @param catalog Product catalog (used to migrate records saved without a unit cost)
+     */
+    public TransactionLog(File directory, TransactionJournal.SyncPolicy syncPolicy, long groupCommitMillis,
+                          int compactThreshold, boolean columnar, ProductCatalog catalog) {
+        this.directory = directory;
+        this.catalog = catalog;
+        this.recent = new ArrayList<>();
+        this.journal = new TransactionJournal(new File(directory, JOURNAL_FILE), syncPolicy, groupCommitMillis);
+        this.snapshot = new SnapshotFile(new File(directory, TRANSACTIONS_FILE), RecordCodec.TRANSACTIONS_MAGIC);
+        this.compactThreshold = Math.max(1, compactThreshold);
+        this.salesAggregate = new SalesAggregate();
+        this.salesLeaderboard = new SalesLeaderboard();
+        this.salesRollup = new SalesRollup(ZoneId.systemDefault());
+        this.columnar = columnar;
+        this.codec = new RecordCodec();
+    }
+    
+    /**
+     * Read the snapshot file's counters, replay the journal on top of it
+     * and bring the derived totals and columns up to date
+     * Snapshots in an older format are loaded in full once and rewritten in the current format
+     */
+    public void load() {
+        synchronized (this) {
+            loadSnapshot();
+            replayJournal();
+            migrateUnitCosts();
+        }
+        if (rewriteSnapshot || journal.getRecordCount() >= compactThreshold) {
+            saveSnapshot();
+            rewriteSnapshot = false;
+        }
+        synchronized (this) {
+            loadSalesAggregate();
+            loadSalesLeaderboard();
+            loadSalesRollup();
+            if (columnar) {
+                loadColumnarStore();
+            }
+        }
+    }
+    
+    /**
+     * Record a new transaction: assign its ID, append it to the journal and update the totals
+     * @param type Type of transaction (PURCHASE or SALE)
+     * @param productId Product ID
+     * @param productName Product name
+     * @param quantity Quantity involved
+     * @param unitPriceCents Unit price in cents
+     * @param unitCostCents Purchase price per unit in cents at the time of the transaction
+     * @return the recorded Transaction
+     */
+    public synchronized Transaction record(Transaction.TransactionType type, int productId, String productName,
+                                           int quantity, long unitPriceCents, long unitCostCents) {
+        Transaction transaction = new Transaction(type, productId, productName, quantity, unitPriceCents, unitCostCents);
+        recent.add(transaction);
+        lastTransactionId = transaction.getTransactionId();
+        indexPosition(transaction, snapshotCount + recent.size() - 1);
+        try {
+            journal.append(transaction);
+        } catch (IOException e) {
+            System.out.println("Error appending transaction to journal: " + e.getMessage());
+        }
+        applyDerived(transaction);
+        return transaction;
+    }
+    
+    /**
+     * Record one sale per basket line as a single batch with consecutive IDs
+     * The journal records are synced once for the whole batch
+     * @param products Product of each line (stock already reserved)
+     * @param lines Basket lines, in the same order as products
+     * @return the recorded sale transactions
+     */
+    public synchronized List<Transaction> recordSales(List<Product> products, List<Basket.Line> lines) {
+        List<Transaction> sales = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            Product product = products.get(i);
+            sales.add(new Transaction(Transaction.TransactionType.SALE, product.getId(), product.getName(),
+                                      lines.get(i).getQuantity(), product.getSellingPriceCents(),
+                                      product.getPurchasePriceCents()));
+        }
+        int firstPosition = snapshotCount + recent.size();
+        recent.addAll(sales);
+        if (!sales.isEmpty()) {
+            lastTransactionId = sales.get(sales.size() - 1).getTransactionId();
+        }
+        for (int i = 0; i < sales.size(); i++) {
+            indexPosition(sales.get(i), firstPosition + i);
+        }
+        try {
+            journal.appendAll(sales);
+        } catch (IOException e) {
+            System.out.println("Error appending transactions to journal: " + e.getMessage());
+        }
+        for (Transaction sale : sales) {
+            applyDerived(sale);
+        }
+        return sales;
+    }
+    
+    /**
+     * Add a newly recorded transaction to the per-product index, if it has been built
+     */
+    private void indexPosition(Transaction transaction, int position) {
+        ProductTransactionIndex products = productIndex;
+        if (products != null) {
+            products.add(transaction.getProductId(), position);
+        }
+    }
+    
+    /**
+     * Update the running totals, the leaderboard, the sales buckets and the columnar store with a newly recorded transaction
+     */
+    private void applyDerived(Transaction transaction) {
+        salesAggregate.apply(transaction);
+        salesLeaderboard.apply(transaction);
+        salesRollup.apply(transaction);
+        if (columnarStore != null) {
+            try {
+                columnarStore.append(transaction);
+            } catch (IOException e) {
+                System.out.println("Error appending transaction to columnar store: " + e.getMessage());
+            } catch (RuntimeException e) {
+                // A failed mapping must not fail the sale; reports fall back to the transaction history
+                System.out.println("Error appending transaction to columnar store, disabling it: " + e);
+                ColumnarTransactionStore store = columnarStore;
+                columnarStore = null;
+                store.close();
+            }
+        }
+    }
+    
+    /**
+     * Open a cursor over the transaction history as it is now
+     * Transactions recorded after the cursor is opened are not included
+     * @return cursor reading transactions in the order they were recorded (close it when done)
+     * @throws IOException if the snapshot file cannot be opened
+     */
+    public TransactionCursor openCursor() throws IOException {
+        return openCursorAt(0);
+    }
+    
+    /**
+     * Open a cursor starting at a position in the transaction history
+     * The sparse index is used to seek near the position in the snapshot file
+     * @param start Number of transactions to skip
+     * @return cursor reading transactions from that position (close it when done)
+     * @throws IOException if the snapshot file cannot be read
+     */
+    public TransactionCursor openCursorAt(int start) throws IOException {
+        int count;
+        List<Transaction> tail;
+        synchronized (this) {
+            count = snapshotCount;
+            tail = new ArrayList<>(recent);
+        }
+        if (start >= count) {
+            return new TransactionCursor(null, 0, tail, Math.min(start - count, tail.size()), start);
+        }
+        return openSnapshotCursorAt(start, count, tail);
+    }
+    
+    /**
+     * Open a cursor at a position in the snapshot file, seeking through the sparse index
+     * A newer snapshot generation starts with the same records, so this needs no lock
+     * @param start Position of the first record to read (below count)
+     * @param count Number of records in the snapshot
+     * @param tail Records to read after the snapshot's
+     */
+    private TransactionCursor openSnapshotCursorAt(int start, int count, List<Transaction> tail) throws IOException {
+        ensureIndexed(start + 1);
+        int indexed = start / TransactionIndex.STRIDE * TransactionIndex.STRIDE;
+        TransactionCursor cursor = new TransactionCursor(openSnapshotRecordsAt(index.offsetOf(start)),
+                                                         count - indexed, tail, 0, indexed);
+        try {
+            cursor.skip(start - indexed);
+        } catch (IOException e) {
+            cursor.close();
+            throw e;
+        }
+        return cursor;
+    }
+    
+    /**
+     * Find the position of a transaction in the history
+     * @param transactionId Transaction ID to look for
+     * @return position of the first transaction whose ID is not below transactionId
+     *         (size() if there is none)
+     * @throws IOException if the snapshot file cannot be read
+     */
+    public int positionOf(int transactionId) throws IOException {
+        ColumnarTransactionStore store = columnarStore;
+        if (store != null) {
+            int low = 0;
+            int high = store.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (store.getTransactionId(middle) < transactionId) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+        
+        int count;
+        int lastSnapshotId;
+        List<Transaction> tail;
+        synchronized (this) {
+            count = snapshotCount;
+            lastSnapshotId = snapshotLastId;
+            tail = new ArrayList<>(recent);
+        }
+        if (transactionId > lastSnapshotId) {
+            int low = 0;
+            int high = tail.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (tail.get(middle).getTransactionId() < transactionId) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return count + low;
+        }
+        
+        // Seek to the nearest indexed record, then read forward to the transaction
+        ensureIndexed(count);
+        try (TransactionCursor cursor = openCursorAt(index.floorRecord(transactionId))) {
+            while (cursor.getPosition() < count) {
+                int position = cursor.getPosition();
+                if (cursor.next().getTransactionId() >= transactionId) {
+                    return position;
+                }
+            }
+            return count;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Read one page of transactions matching a filter, reading from the columnar store when it is enabled
+     * @param start Position in the history to start reading from
+     * @param filter Transactions to keep
+     * @param pageSize Maximum number of transactions on the page
+     * @return the page, with the position at which the next page starts
+     * @throws IOException if the snapshot file cannot be read
+     */
+    public Page readPage(int start, TransactionFilter filter, int pageSize) throws IOException {
+        if (filter.getProductId() != 0) {
+            return readProductPage(start, filter, pageSize);
+        }
+        List<Transaction> page = new ArrayList<>(pageSize);
+        ColumnarTransactionStore store = columnarStore;
+        if (store != null) {
+            // Rows are checked column by column; only matching rows become Transaction objects
+            int rows = store.size();
+            for (int row = start; row < rows; row++) {
+                int transactionId = store.getTransactionId(row);
+                if (transactionId > filter.getMaxTransactionId()) {
+                    break;
+                }
+                int productId = store.getProductId(row);
+                if (!filter.matches(transactionId, store.getType(row), productId)) {
+                    continue;
+                }
+                if (page.size() == pageSize) {
+                    return new Page(page, row);
+                }
+                Product product = catalog.findById(productId);
+                page.add(new Transaction(transactionId, store.getType(row), productId,
+                                         product == null ? "(deleted)" : product.getName(),
+                                         store.getQuantity(row), store.getUnitPriceCents(row),
+                                         store.getUnitCostCents(row), store.getTotalCents(row),
+                                         store.getTimestampMillis(row)));
+            }
+            return new Page(page, -1);
+        }
+        
+        try (TransactionCursor cursor = openCursorAt(start)) {
+            while (cursor.hasNext()) {
+                int position = cursor.getPosition();
+                Transaction transaction = cursor.next();
+                if (transaction.getTransactionId() > filter.getMaxTransactionId()) {
+                    break;
+                }
+                if (!filter.matches(transaction)) {
+                    continue;
+                }
+                if (page.size() == pageSize) {
+                    return new Page(page, position);
+                }
+                page.add(transaction);
+            }
+            return new Page(page, -1);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Get the number of recorded transactions
+     * @return number of transactions
+     */
+    public synchronized int size() {
+        return snapshotCount + recent.size();
+    }
+    
+    /**
+     * Get the ID of the newest recorded transaction
+     * @return transaction ID (0 if there are none)
+     */
+    public synchronized int getLastTransactionId() {
+        return lastTransactionId;
+    }
+    
+    /**
+     * Get the running sales totals
+     * @return sales totals (kept up to date as transactions are recorded)
+     */
+    public SalesAggregate getSalesAggregate() {
+        return salesAggregate;
+    }
+    
+    /**
+     * Get the products ranked by units sold, revenue and profit
+     * @return leaderboard (kept up to date as transactions are recorded)
+     */
+    public SalesLeaderboard getSalesLeaderboard() {
+        return salesLeaderboard;
+    }
+    
+    /**
+     * Get the hourly and daily sales buckets
+     * @return sales rollup (kept up to date as transactions are recorded)
+     */
+    public SalesRollup getSalesRollup() {
+        return salesRollup;
+    }
+    
+    /**
+     * Get the columnar reporting store
+     * @return store or null if the columnar store is not enabled
+     */
+    public ColumnarTransactionStore getColumnarStore() {
+        return columnarStore;
+    }
+    
+    /**
+     * Save all transactions as a new snapshot generation and drop the journal records it covers
+     * The previous snapshot's records are copied without decoding them
+     * Transactions recorded while the snapshot is being written stay in the journal
+     */
+    public void saveSnapshot() {
+        synchronized (compactionLock) {
+            int baseCount;
+            DataInputStream base;
+            List<Transaction> covered;
+            int nextTransactionId;
+            int lastCoveredId;
+            synchronized (this) {
+                try {
+                    base = openSnapshotRecords();
+                } catch (IOException e) {
+                    System.out.println("Error saving transactions to file: " + e.getMessage());
+                    return; // Keep the journal so nothing is lost
+                }
+                baseCount = snapshotCount;
+                covered = new ArrayList<>(recent);
+                nextTransactionId = Transaction.getNextTransactionId();
+                lastCoveredId = lastTransactionId;
+            }
+            
+            try {
+                snapshot.write(out -> {
+                    // Write the format marker
+                    out.writeInt(RecordCodec.TRANSACTIONS_FORMAT_CENTS);
+                    
+                    // Write the number of transactions
+                    out.writeInt(baseCount + covered.size());
+                    
+                    // Write the next transaction ID and the ID of the newest transaction
+                    out.writeInt(nextTransactionId);
+                    out.writeInt(lastCoveredId);
+                    
+                    // Copy the previous snapshot's transactions, then write the new ones
+                    for (int i = 0; i < baseCount; i++) {
+                        codec.copyTransaction(base, out);
+                    }
+                    for (Transaction transaction : covered) {
+                        codec.writeTransaction(out, transaction);
+                    }
+                });
+            } catch (IOException e) {
+                System.out.println("Error saving transactions to file: " + e.getMessage());
+                return; // Keep the journal so nothing is lost
+            } finally {
+                closeQuietly(base);
+            }
+            
+            synchronized (this) {
+                snapshotCount = baseCount + covered.size();
+                snapshotLastId = lastCoveredId;
+                recent.subList(0, covered.size()).clear();
+                try {
+                    journal.rewrite(new ArrayList<>(recent));
+                } catch (IOException e) {
+                    // Harmless: records already in the snapshot are skipped on replay
+                    System.out.println("Error compacting transaction journal: " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Compact the journal into the snapshot once it holds compactThreshold records
+     */
+    public void compactIfNeeded() {
+        if (journal.getRecordCount() >= compactThreshold) {
+            saveSnapshot();
+        }
+    }
+    
+    /**
+     * Save the running sales totals to the data file
+     */
+    public void saveSalesAggregate() {
+        try {
+            salesAggregate.save(new File(directory, SALES_SUMMARY_FILE));
+        } catch (IOException e) {
+            System.out.println("Error saving sales summary to file: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Save the hourly and daily sales buckets to the data file
+     */
+    public void saveSalesRollup() {
+        try {
+            salesRollup.save(new File(directory, SALES_ROLLUP_FILE));
+        } catch (IOException e) {
+            System.out.println("Error saving sales rollup to file: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Start or end a batch of transactions whose journal records are forced once per flush()
+     * instead of once per record
+     * @param batchMode true to start a batch, false to end it (forcing deferred records)
+     */
+    public void setBatchMode(boolean batchMode) {
+        try {
+            journal.setDeferSync(batchMode);
+        } catch (IOException e) {
+            System.out.println("Error syncing transaction journal: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Force journal records to disk, save the running sales totals and buckets
+     * and compact the journal if it has grown large
+     */
+    public void flush() {
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            System.out.println("Error syncing transaction journal: " + e.getMessage());
+        }
+        saveSalesAggregate();
+        saveSalesRollup();
+        compactIfNeeded();
+    }
+    
+    /**
+     * Fold the journal into the snapshot file and close all files
+     */
+    public void close() {
+        try {
+            if (!journal.isEmpty()) {
+                saveSnapshot();
+            }
+        } catch (IOException e) {
+            System.out.println("Error checking transaction journal: " + e.getMessage());
+        }
+        journal.close();
+        if (columnarStore != null) {
+            columnarStore.close();
+        }
+    }
+    
+    /**
+     * Open the snapshot file positioned at its first transaction record
+     * @return stream or null if the snapshot holds no records in the current format
+     */
+    private DataInputStream openSnapshotRecords() throws IOException {
+        return snapshotCount == 0 ? null : openSnapshotRecordsAt(0);
+    }
+    
+    /**
+     * Open the snapshot file positioned at a transaction record
+     * @param offset Offset of the record from the first record
+     * @return stream positioned at the record
+     */
+    private DataInputStream openSnapshotRecordsAt(long offset) throws IOException {
+        DataInputStream in = snapshot.read();
+        try {
+            // Skip the format marker, the counters and the newest transaction ID
+            if (in.readInt() != RecordCodec.TRANSACTIONS_FORMAT_CENTS) {
+                throw new IOException("unexpected transactions file format");
+            }
+            in.readInt();
+            in.readInt();
+            in.readInt();
+            in.skipNBytes(offset);
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Read one page of a single product's transactions through the per-product index
+     * Only that product's transactions are read
+     */
+    private Page readProductPage(int start, TransactionFilter filter, int pageSize) throws IOException {
+        ProductTransactionIndex products = productIndex();
+        int[] positions;
+        synchronized (this) {
+            positions = products.getPositions(filter.getProductId());
+        }
+        int first = Arrays.binarySearch(positions, start);
+        if (first < 0) {
+            first = -first - 1;
+        }
+        
+        List<Transaction> page = new ArrayList<>(pageSize);
+        for (int from = first; from < positions.length; from += pageSize) {
+            int to = Math.min(positions.length, from + pageSize);
+            List<Transaction> transactions = readPositions(positions, from, to);
+            for (int i = 0; i < transactions.size(); i++) {
+                Transaction transaction = transactions.get(i);
+                if (transaction.getTransactionId() > filter.getMaxTransactionId()) {
+                    return new Page(page, -1);
+                }
+                if (!filter.matches(transaction)) {
+                    continue;
+                }
+                if (page.size() == pageSize) {
+                    return new Page(page, positions[from + i]);
+                }
+                page.add(transaction);
+            }
+        }
+        return new Page(page, -1);
+    }
+    
+    /**
+     * Get every transaction of one product, reading only that product's transactions
+     * The per-product index is built from the history the first time it is needed
+     * @param productId Product ID
+     * @return the product's transactions in the order they were recorded
+     * @throws IOException if the snapshot file cannot be read
+     */
+    public List<Transaction> getProductTransactions(int productId) throws IOException {
+        ProductTransactionIndex products = productIndex();
+        int[] positions;
+        synchronized (this) {
+            positions = products.getPositions(productId);
+        }
+        return readPositions(positions, 0, positions.length);
+    }
+    
+    /**
+     * Get the per-product index, building it from the history on first use
+     * The snapshot is scanned without decoding its records while compaction is held off;
+     * recording carries on and joins the index once the scan is done
+     */
+    private ProductTransactionIndex productIndex() throws IOException {
+        ProductTransactionIndex products = productIndex;
+        if (products != null) {
+            return products;
+        }
+        synchronized (productIndexLock) {
+            if (productIndex != null) {
+                return productIndex;
+            }
+            products = new ProductTransactionIndex();
+            synchronized (compactionLock) {
+                int count;
+                synchronized (this) {
+                    count = snapshotCount;
+                }
+                if (count > 0) {
+                    RecordCodec scanner = new RecordCodec();
+                    try (DataInputStream in = openSnapshotRecordsAt(0)) {
+                        for (int position = 0; position < count; position++) {
+                            scanner.skipTransaction(in);
+                            products.add(scanner.getSkippedProductId(), position);
+                        }
+                    }
+                }
+                synchronized (this) {
+                    for (int i = 0; i < recent.size(); i++) {
+                        products.add(recent.get(i).getProductId(), count + i);
+                    }
+                    productIndex = products;
+                }
+            }
+            return products;
+        }
+    }
+    
+    /**
+     * Read the transactions at some positions of the history
+     * Records still held in memory are taken under the lock; the rest are read from the
+     * snapshot file afterwards, seeking through the sparse index when the next one is far ahead
+     * @param positions Positions in increasing order
+     * @param from Index of the first position to read
+     * @param to Index after the last position to read
+     */
+    private List<Transaction> readPositions(int[] positions, int from, int to) throws IOException {
+        Transaction[] transactions = new Transaction[to - from];
+        int count;
+        synchronized (this) {
+            count = snapshotCount;
+            for (int i = to - 1; i >= from && positions[i] >= count; i--) {
+                transactions[i - from] = recent.get(positions[i] - count);
+            }
+        }
+        
+        TransactionCursor cursor = null;
+        try {
+            for (int i = from; i < to && positions[i] < count; i++) {
+                int position = positions[i];
+                if (cursor == null || position - cursor.getPosition() >= TransactionIndex.STRIDE) {
+                    if (cursor != null) {
+                        cursor.close();
+                    }
+                    cursor = openSnapshotCursorAt(position, count, Collections.emptyList());
+                } else {
+                    cursor.skip(position - cursor.getPosition());
+                }
+                transactions[i - from] = cursor.next();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return Arrays.asList(transactions);
+    }
+    
+    /**
+     * Make sure the sparse index covers the first recordCount snapshot records
+     */
+    private void ensureIndexed(int recordCount) throws IOException {
+        synchronized (index) {
+            if (index.getIndexedCount() < recordCount) {
+                try (DataInputStream in = openSnapshotRecordsAt(index.getEndOffset())) {
+                    index.extend(in, recordCount);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Open a cursor over the transactions newer than the given ID, reading the
+     * snapshot file only if some of them are in it
+     */
+    private TransactionCursor openCursorAfter(int transactionId) throws IOException {
+        if (transactionId >= snapshotLastId) {
+            return new TransactionCursor(null, 0, new ArrayList<>(recent));
+        }
+        return openCursor();
+    }
+    
+    /**
+     * Close a stream that is only read from, ignoring errors
+     */
+    private static void closeQuietly(Closeable stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // Nothing was written, so nothing can be lost
+            }
+        }
+    }
+    
+    /**
+     * Read the counters of the snapshot data file
+     * Snapshots in an older format are loaded in full, to be rewritten in the current format
+     */
+    private void loadSnapshot() {
+        if (!snapshot.exists()) {
+            return; // No transactions file is okay
+        }
+        
+        try (DataInputStream in = snapshot.open()) {
+            if (in == null) {
+                try (InputStream legacyIn = new BufferedInputStream(new FileInputStream(snapshot.getFile()))) {
+                    loadLegacySnapshot(legacyIn);
+                }
+                rewriteSnapshot = true; // Migrate to the record format
+                return;
+            }
+            
+            // Read the format marker, or the number of transactions in older formats
+            int header = in.readInt();
+            boolean current = header == RecordCodec.TRANSACTIONS_FORMAT_CENTS;
+            
+            // Read the number of transactions
+            int transactionCount = current ? in.readInt() : header;
+            Transaction.setTransactionCount(transactionCount);
+            
+            // Read the next transaction ID
+            int nextTransactionId = in.readInt();
+            Transaction.setNextTransactionId(nextTransactionId);
+            
+            if (current) {
+                // Records stay on disk until they are read through a cursor
+                snapshotCount = transactionCount;
+                snapshotLastId = in.readInt();
+                lastTransactionId = snapshotLastId;
+                System.out.println("Found " + transactionCount + " transactions in file.");
+                return;
+            }
+            
+            // Read transactions
+            for (int i = 0; i < transactionCount; i++) {
+                addLoaded(codec.readTransaction(in));
+            }
+            rewriteSnapshot = true; // Migrate to the current format
+            
+            System.out.println("Loaded " + transactionCount + " transactions from file.");
+        } catch (IOException | ClassNotFoundException e) {
+            System.out.println("Error loading transactions from file: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Load transactions from a data file written with Java serialization by earlier versions
+     * @param in Stream positioned at the start of the file
+     */
+    private void loadLegacySnapshot(InputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream ois = new ObjectInputStream(in);
+        
+        // Read the format marker, or the number of transactions in the oldest format
+        int header = ois.readInt();
+        boolean hasUnitCost = header == LEGACY_TRANSACTIONS_FORMAT_WITH_COST;
+        
+        // Read the number of transactions
+        int transactionCount = hasUnitCost ? ois.readInt() : header;
+        Transaction.setTransactionCount(transactionCount);
+        
+        // Read the next transaction ID
+        int nextTransactionId = ois.readInt();
+        Transaction.setNextTransactionId(nextTransactionId);
+        
+        // Read transactions
+        for (int i = 0; i < transactionCount; i++) {
+            Transaction transaction = (Transaction) ois.readObject();
+            if (!hasUnitCost) {
+                transaction.setUnitCostCents(Money.UNKNOWN); // migrated in migrateUnitCosts()
+            }
+            addLoaded(transaction);
+        }
+        
+        System.out.println("Loaded " + transactionCount + " transactions from legacy file.");
+    }
+    
+    /**
+     * Keep a transaction loaded from a file in an older format until it is rewritten
+     */
+    private void addLoaded(Transaction transaction) {
+        recent.add(transaction);
+        lastTransactionId = transaction.getTransactionId();
+    }
+    
+    /**
+     * Replay transactions appended to the journal since the last snapshot
+     */
+    private void replayJournal() {
+        try {
+            int lastSnapshotId = lastTransactionId;
+            int replayed = 0;
+            for (Transaction transaction : journal.replay()) {
+                // Records already covered by the snapshot are skipped
+                if (transaction.getTransactionId() > lastSnapshotId) {
+                    addLoaded(transaction);
+                    replayed++;
+                    if (transaction.getTransactionId() >= Transaction.getNextTransactionId()) {
+                        Transaction.setNextTransactionId(transaction.getTransactionId() + 1);
+                    }
+                }
+            }
+            Transaction.setTransactionCount(snapshotCount + recent.size());
+            
+            if (replayed > 0) {
+                System.out.println("Replayed " + replayed + " transactions from journal.");
+            }
+            if (codec.getOlderRecordsDecoded() > 0) {
+                rewriteSnapshot = true; // Migrate amounts to cents
+            }
+        } catch (IOException e) {
+            System.out.println("Error replaying transaction journal: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Fill in the unit cost of transactions saved before it was recorded
+     * Such transactions only come from files in older formats, which are loaded in full
+     * Each sale takes the price of the latest earlier purchase of the same product,
+     * falling back to the product's current purchase price
+     */
+    private void migrateUnitCosts() {
+        boolean needsMigration = false;
+        for (Transaction transaction : recent) {
+            if (!transaction.hasUnitCost()) {
+                needsMigration = true;
+                break;
+            }
+        }
+        if (!needsMigration) {
+            return;
+        }
+        
+        IntHashMap<Transaction> lastPurchases = new IntHashMap<>();
+        int estimated = 0;
+        for (Transaction transaction : recent) {
+            if (transaction.getType() == Transaction.TransactionType.PURCHASE) {
+                if (!transaction.hasUnitCost()) {
+                    transaction.setUnitCostCents(transaction.getUnitPriceCents());
+                }
+                lastPurchases.put(transaction.getProductId(), transaction);
+            } else if (!transaction.hasUnitCost()) {
+                Transaction lastPurchase = lastPurchases.get(transaction.getProductId());
+                Product product = catalog.findById(transaction.getProductId());
+                if (lastPurchase != null) {
+                    transaction.setUnitCostCents(lastPurchase.getUnitPriceCents());
+                } else if (product != null) {
+                    transaction.setUnitCostCents(product.getPurchasePriceCents());
+                } else {
+                    transaction.setUnitCostCents(0);
+                    estimated++;
+                }
+            }
+        }
+        
+        // Rewrite the history once in the new format and rebuild totals from the new costs
+        rewriteSnapshot = true;
+        new File(directory, SALES_SUMMARY_FILE).delete();
+        new File(directory, SALES_ROLLUP_FILE).delete();
+        System.out.println("Migrated transaction history to record the unit cost of each sale.");
+        if (estimated > 0) {
+            System.out.println("  - " + estimated + " sales of deleted products had no known cost and were recorded at $0.00 cost");
+        }
+    }
+    
+    /**
+     * Load the saved sales totals and bring them up to date with the loaded transactions
+     */
+    private void loadSalesAggregate() {
+        File file = new File(directory, SALES_SUMMARY_FILE);
+        if (file.exists()) {
+            try {
+                salesAggregate.load(file);
+            } catch (IOException e) {
+                System.out.println("Rebuilding sales summary: " + e.getMessage());
+            }
+        }
+        
+        // Totals ahead of the transaction history (e.g. lost journal tail) cannot be trusted
+        if (salesAggregate.getLastTransactionId() > lastTransactionId) {
+            salesAggregate.clear();
+        }
+        
+        int applied = 0;
+        try (TransactionCursor cursor = openCursorAfter(salesAggregate.getLastTransactionId())) {
+            while (cursor.hasNext()) {
+                Transaction transaction = cursor.next();
+                if (transaction.getTransactionId() > salesAggregate.getLastTransactionId()) {
+                    salesAggregate.apply(transaction);
+                    applied++;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error rebuilding sales summary: " + e.getMessage());
+        }
+        if (applied > 0) {
+            saveSalesAggregate();
+        }
+    }
+    
+    /**
+     * Rank the products from the per-product totals of the loaded sales summary
+     */
+    private void loadSalesLeaderboard() {
+        salesLeaderboard.clear();
+        for (int productId : salesAggregate.getProductIds()) {
+            SalesTotals totals = salesAggregate.getProductTotals(productId);
+            salesLeaderboard.add(productId, totals.getSaleCount(), totals.getUnitsSold(),
+                                 totals.getRevenueCents(), totals.getCostCents());
+        }
+    }
+    
+    /**
+     * Load the saved hourly and daily sales buckets and bring them up to date with the loaded transactions
+     */
+    private void loadSalesRollup() {
+        File file = new File(directory, SALES_ROLLUP_FILE);
+        if (file.exists()) {
+            try {
+                salesRollup.load(file);
+            } catch (IOException e) {
+                System.out.println("Rebuilding sales rollup: " + e.getMessage());
+            }
+        }
+        
+        // Buckets ahead of the transaction history (e.g. lost journal tail) cannot be trusted
+        if (salesRollup.getLastTransactionId() > lastTransactionId) {
+            salesRollup.clear();
+        }
+        
+        int applied = 0;
+        try (TransactionCursor cursor = openCursorAfter(salesRollup.getLastTransactionId())) {
+            while (cursor.hasNext()) {
+                Transaction transaction = cursor.next();
+                if (transaction.getTransactionId() > salesRollup.getLastTransactionId()) {
+                    salesRollup.apply(transaction);
+                    applied++;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error rebuilding sales rollup: " + e.getMessage());
+        }
+        if (applied > 0) {
+            saveSalesRollup();
+        }
+    }
+    
+    /**
+     * Open the columnar transaction store and bring it up to date with the loaded transactions
+     */
+    private void loadColumnarStore() {
+        ColumnarTransactionStore store = new ColumnarTransactionStore(new File(directory, COLUMNS_DIRECTORY));
+        try {
+            store.open();
+            if (store.getLastTransactionId() > lastTransactionId) {
+                store.clear(); // Columns ahead of the history cannot be trusted
+            }
+            try (TransactionCursor cursor = openCursorAfter(store.getLastTransactionId())) {
+                while (cursor.hasNext()) {
+                    Transaction transaction = cursor.next();
+                    if (transaction.getTransactionId() > store.getLastTransactionId()) {
+                        store.append(transaction);
+                    }
+                }
+            }
+            columnarStore = store;
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error opening columnar transaction store: " + e.getMessage());
+            store.close();
+        }
+    }
+    
+    /**
+     * One page of transactions read by readPage()
+     */
+    public static class Page {
+        private final List<Transaction> transactions;
+        private final int nextStart;
+        
+        Page(List<Transaction> transactions, int nextStart) {
+            this.transactions = transactions;
+            this.nextStart = nextStart;
+        }
+        
+        public List<Transaction> getTransactions() {
+            return transactions;
+        }
+        
+        /**
+         * Check whether more matching transactions follow this page
+         * @return true if there is a next page
+         */
+        public boolean hasMore() {
+            return nextStart >= 0;
+        }
+        
+        /**
+         * Get the position at which the next page starts
+         * @return position in the history, or -1 if this is the last page
+         */
+        public int getNextStart() {
+            return nextStart;
+        }
+    }
+}
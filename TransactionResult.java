@@ -0,0 +1,57 @@
+/**
+ * TransactionResult class describing the outcome of a sale or purchase request
+ */
+public class TransactionResult {
+    
+    /**
+     * Outcome of the request
+     */
+    public enum Status {
+        OK,
+        PRODUCT_NOT_FOUND,
+        INVALID_QUANTITY,
+        INSUFFICIENT_STOCK,
+        AMOUNT_TOO_LARGE, // the total in cents would not fit in a long
+        STOCK_TOO_LARGE   // the stock would exceed Integer.MAX_VALUE units
+    }
+    
+    private final Status status;
+    private final Product product;
+    private final Transaction transaction;
+    private final int stockAfter;
+    
+    /**
+     * Constructor to create a result
+     * @param status Outcome of the request
+     * @param product Product involved (null if not found)
+     * @param transaction Recorded transaction (null unless status is OK)
+     * @param stockAfter Stock level observed when the request completed
+     */
+    public TransactionResult(Status status, Product product, Transaction transaction, int stockAfter) {
+        this.status = status;
+        this.product = product;
+        this.transaction = transaction;
+        this.stockAfter = stockAfter;
+    }
+    
+    // Getter methods
+    public Status getStatus() {
+        return status;
+    }
+    
+    public boolean isSuccess() {
+        return status == Status.OK;
+    }
+    
+    public Product getProduct() {
+        return product;
+    }
+    
+    public Transaction getTransaction() {
+        return transaction;
+    }
+    
+    public int getStockAfter() {
+        return stockAfter;
+    }
+}
@@ -0,0 +1,61 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * ColumnarTransactionStoreTest class filling the columns past their first mapped segment
+ * and reading every row back, before and after reopening the files
+ */
+public class ColumnarTransactionStoreTest {
+    private static final int ROWS = (1 << 21) + 1000; // the 8-byte columns cross into a second 16 MB segment
+    
+    @TempDir
+    File directory;
+    
+    @Test
+    public void rowsSpanningSegmentsReadBack() throws Exception {
+        ColumnarTransactionStore store = new ColumnarTransactionStore(directory);
+        store.open();
+        try {
+            for (int row = 0; row < ROWS; row++) {
+                store.append(transaction(row));
+            }
+            checkRows(store);
+        } finally {
+            store.close();
+        }
+        
+        store = new ColumnarTransactionStore(directory);
+        store.open();
+        try {
+            checkRows(store);
+        } finally {
+            store.close();
+        }
+    }
+    
+    private static Transaction transaction(int row) {
+        Transaction.TransactionType type = row % 3 == 0 ? Transaction.TransactionType.PURCHASE
+                                                        : Transaction.TransactionType.SALE;
+        return new Transaction(row + 1, type, row % 97 + 1, "", row % 5 + 1, row * 3L, row * 2L,
+                               (row % 5 + 1) * row * 3L, 1_000_000L + row);
+    }
+    
+    private static void checkRows(ColumnarTransactionStore store) {
+        assertEquals(ROWS, store.size());
+        assertEquals(ROWS, store.getLastTransactionId());
+        for (int row = 0; row < ROWS; row++) {
+            Transaction expected = transaction(row);
+            assertEquals(expected.getTransactionId(), store.getTransactionId(row));
+            assertEquals(expected.getType(), store.getType(row));
+            assertEquals(expected.getProductId(), store.getProductId(row));
+            assertEquals(expected.getQuantity(), store.getQuantity(row));
+            assertEquals(expected.getUnitPriceCents(), store.getUnitPriceCents(row));
+            assertEquals(expected.getUnitCostCents(), store.getUnitCostCents(row));
+            assertEquals(expected.getTimestampMillis(), store.getTimestampMillis(row), "time of row " + row);
+        }
+    }
+}
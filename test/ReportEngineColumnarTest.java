@@ -0,0 +1,64 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * ReportEngineColumnarTest class recording the same transactions into a log with the columnar
+ * store and one without, and checking that the report read from the columns equals the one
+ * read through cursors
+ */
+public class ReportEngineColumnarTest {
+    private static final int PRODUCTS = 40;
+    private static final int TRANSACTIONS = 3 * ReportEngine.MIN_PARTITION_SIZE + 123; // several partitions
+    
+    @TempDir
+    File columnarDirectory;
+    
+    @TempDir
+    File plainDirectory;
+    
+    @Test
+    public void columnScanEqualsCursorScan() throws Exception {
+        ProductCatalog catalog = new HeapProductCatalog();
+        TransactionLog columnarLog = new TransactionLog(columnarDirectory, TransactionJournal.SyncPolicy.NONE, 0,
+                                                        Integer.MAX_VALUE, true, catalog);
+        TransactionLog plainLog = new TransactionLog(plainDirectory, TransactionJournal.SyncPolicy.NONE, 0,
+                                                     Integer.MAX_VALUE, false, catalog);
+        columnarLog.load();
+        plainLog.load();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertNotNull(columnarLog.getColumnarStore(), "columnar store enabled");
+            Random random = new Random(7);
+            for (int i = 0; i < TRANSACTIONS; i++) {
+                Transaction.TransactionType type = random.nextInt(4) == 0 ? Transaction.TransactionType.PURCHASE
+                                                                          : Transaction.TransactionType.SALE;
+                int productId = 1 + random.nextInt(PRODUCTS);
+                int quantity = 1 + random.nextInt(9);
+                long unitCostCents = 50 + random.nextInt(500);
+                long unitPriceCents = unitCostCents + random.nextInt(300);
+                columnarLog.record(type, productId, "", quantity, unitPriceCents, unitCostCents);
+                plainLog.record(type, productId, "", quantity, unitPriceCents, unitCostCents);
+            }
+            
+            ReportEngine.Report fromCursors = new ReportEngine(plainLog).computeSequential();
+            ReportEngine.Report fromColumns = new ReportEngine(columnarLog).compute(pool);
+            assertEquals(TRANSACTIONS, fromColumns.getTransactionCount());
+            assertEquals(fromCursors.getRevenueCents(), fromColumns.getRevenueCents());
+            assertEquals(fromCursors.getCostCents(), fromColumns.getCostCents());
+            assertTrue(fromColumns.sameAs(fromCursors), "every count, amount and product total");
+            assertTrue(new ReportEngine(columnarLog).computeSequential().sameAs(fromCursors), "sequential column scan");
+        } finally {
+            pool.shutdown();
+            columnarLog.close();
+            plainLog.close();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * SalesEngineAmountTest class checking that a sale, purchase or checkout whose total would
+ * overflow a long number of cents is rejected without changing stock or recording anything
+ */
+public class SalesEngineAmountTest {
+    private static final long HUGE_PRICE_CENTS = Long.MAX_VALUE / 2;
+    
+    @TempDir
+    File directory;
+    
+    @Test
+    public void oversizedTotalsAreRejected() {
+        Product.resetNextId();
+        Transaction.setNextTransactionId(1);
+        ProductCatalog catalog = new HeapProductCatalog();
+        Product cheap = new Product("Gum", 50, 100, 10, 2);
+        Product dear = new Product("Diamond", 100, HUGE_PRICE_CENTS, 10, 2);
+        catalog.add(cheap);
+        catalog.add(dear);
+        TransactionLog log = new TransactionLog(directory, TransactionJournal.SyncPolicy.NONE, 0, Integer.MAX_VALUE,
+                                                false, catalog);
+        log.load();
+        SalesEngine engine = new SalesEngine(catalog, log);
+        try {
+            TransactionResult sale = engine.sell(dear.getId(), 3);
+            assertEquals(TransactionResult.Status.AMOUNT_TOO_LARGE, sale.getStatus());
+            
+            dear.setPurchasePriceCents(HUGE_PRICE_CENTS);
+            TransactionResult purchase = engine.purchase(dear.getId(), 3);
+            assertEquals(TransactionResult.Status.AMOUNT_TOO_LARGE, purchase.getStatus());
+            
+            Basket basket = new Basket();
+            basket.add(cheap.getId(), 2);
+            basket.add(dear.getId(), 3);
+            CheckoutResult checkout = engine.checkout(basket);
+            assertEquals(TransactionResult.Status.AMOUNT_TOO_LARGE, checkout.getStatus());
+            assertEquals(dear.getId(), checkout.getFailedLine().getProductId());
+            
+            assertEquals(10, cheap.getStockQuantity(), "stock of the cheap product");
+            assertEquals(10, dear.getStockQuantity(), "stock of the dear product");
+            assertEquals(0, log.size(), "transactions recorded");
+            
+            // The next transaction still gets the first ID
+            assertEquals(1, engine.sell(dear.getId(), 1).getTransaction().getTransactionId());
+        } finally {
+            log.close();
+        }
+    }
+}
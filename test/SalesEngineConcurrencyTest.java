@@ -0,0 +1,114 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * SalesEngineConcurrencyTest class running many checkout lanes against one SalesEngine
+ * and checking that no product is oversold, no transaction ID is handed out twice
+ * and the low-stock index matches every product's stock
+ */
+public class SalesEngineConcurrencyTest {
+    private static final int LANES = 16;
+    private static final int PRODUCTS = 50; // few products means heavy contention
+    private static final int SALES_PER_LANE = 5_000;
+    
+    @TempDir
+    File directory;
+    
+    @Test
+    public void concurrentSalesWithHeapCatalog() throws Exception {
+        checkConcurrentSales(new HeapProductCatalog());
+    }
+    
+    @Test
+    public void concurrentSalesWithPackedCatalog() throws Exception {
+        checkConcurrentSales(new PackedProductCatalog());
+    }
+    
+    private void checkConcurrentSales(ProductCatalog catalog) throws Exception {
+        Product.resetNextId();
+        Transaction.setNextTransactionId(1);
+        int initialStock = LANES * SALES_PER_LANE / PRODUCTS; // roughly half the demand
+        for (int i = 0; i < PRODUCTS; i++) {
+            catalog.add(new Product("Product " + i, 100, 150, initialStock, 10));
+        }
+        TransactionLog log = new TransactionLog(directory, TransactionJournal.SyncPolicy.NONE, 0, Integer.MAX_VALUE,
+                                                false, catalog);
+        log.load();
+        SalesEngine engine = new SalesEngine(catalog, log);
+        
+        AtomicIntegerArray soldPerProduct = new AtomicIntegerArray(PRODUCTS + 1);
+        runLanes(engine, soldPerProduct);
+        
+        try {
+            for (Product product : catalog) {
+                assertTrue(product.getStockQuantity() >= 0, "product " + product.getId() + " oversold");
+                assertEquals(initialStock - soldPerProduct.get(product.getId()), product.getStockQuantity(),
+                             "stock of product " + product.getId());
+            }
+            
+            List<Product> lowStock = catalog.getLowStockProducts();
+            for (Product product : catalog) {
+                assertEquals(product.isLowStock(), lowStock.contains(product),
+                             "low-stock index entry of product " + product.getId());
+            }
+            
+            boolean[] seen = new boolean[log.size() + 2];
+            long[] loggedPerProduct = new long[PRODUCTS + 1];
+            try (TransactionCursor cursor = log.openCursor()) {
+                while (cursor.hasNext()) {
+                    Transaction transaction = cursor.next();
+                    int id = transaction.getTransactionId();
+                    assertTrue(id >= 1 && id < seen.length, "unexpected transaction ID " + id);
+                    assertFalse(seen[id], "duplicate transaction ID " + id);
+                    seen[id] = true;
+                    loggedPerProduct[transaction.getProductId()] += transaction.getQuantity();
+                }
+            }
+            for (int id = 1; id <= PRODUCTS; id++) {
+                assertEquals(soldPerProduct.get(id), loggedPerProduct[id], "units logged for product " + id);
+            }
+        } finally {
+            log.close();
+        }
+    }
+    
+    /**
+     * Start every lane at once and wait for all of them to finish
+     */
+    private static void runLanes(SalesEngine engine, AtomicIntegerArray soldPerProduct) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] lanes = new Thread[LANES];
+        for (int t = 0; t < LANES; t++) {
+            lanes[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < SALES_PER_LANE; i++) {
+                    int productId = 1 + random.nextInt(PRODUCTS);
+                    int quantity = 1 + random.nextInt(3);
+                    if (engine.sell(productId, quantity).isSuccess()) {
+                        soldPerProduct.addAndGet(productId, quantity);
+                    }
+                }
+            });
+            lanes[t].start();
+        }
+        start.countDown();
+        for (Thread lane : lanes) {
+            lane.join();
+        }
+    }
+}
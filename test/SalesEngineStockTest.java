@@ -0,0 +1,53 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * SalesEngineStockTest class checking that a purchase which would take stock past
+ * Integer.MAX_VALUE is rejected instead of wrapping the stock to a negative number
+ */
+public class SalesEngineStockTest {
+    @TempDir
+    File directory;
+    
+    @Test
+    public void overfullStockIsRejectedWithHeapCatalog() {
+        checkOverfullStock(new HeapProductCatalog());
+    }
+    
+    @Test
+    public void overfullStockIsRejectedWithPackedCatalog() {
+        checkOverfullStock(new PackedProductCatalog());
+    }
+    
+    private void checkOverfullStock(ProductCatalog catalog) {
+        Product.resetNextId();
+        Transaction.setNextTransactionId(1);
+        Product added = new Product("Rice", 1, 2, 0, 10);
+        catalog.add(added);
+        Product product = catalog.findById(added.getId()); // a row view in the packed catalog
+        TransactionLog log = new TransactionLog(directory, TransactionJournal.SyncPolicy.NONE, 0, Integer.MAX_VALUE,
+                                                false, catalog);
+        log.load();
+        SalesEngine engine = new SalesEngine(catalog, log);
+        try {
+            assertEquals(TransactionResult.Status.OK, engine.purchase(product.getId(), Integer.MAX_VALUE).getStatus());
+            assertFalse(product.isLowStock());
+            
+            TransactionResult second = engine.purchase(product.getId(), Integer.MAX_VALUE);
+            assertEquals(TransactionResult.Status.STOCK_TOO_LARGE, second.getStatus());
+            assertEquals(TransactionResult.Status.STOCK_TOO_LARGE, engine.purchase(product.getId(), 1).getStatus());
+            
+            assertEquals(Integer.MAX_VALUE, product.getStockQuantity(), "stock after the rejected purchases");
+            assertEquals(Integer.MAX_VALUE, second.getStockAfter());
+            assertFalse(catalog.getLowStockProducts().contains(product), "low-stock index entry");
+            assertEquals(1, log.size(), "transactions recorded");
+        } finally {
+            log.close();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * SalesRollupTest class checking that a sale dated far in the future is left out of the
+ * buckets instead of pushing the real hours and days out of the kept range
+ */
+public class SalesRollupTest {
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    
+    @Test
+    public void futureSaleDoesNotEvictRealBuckets() {
+        ZoneId zone = ZoneId.of("UTC");
+        SalesRollup rollup = new SalesRollup(zone);
+        long now = System.currentTimeMillis();
+        
+        rollup.apply(sale(1, now, 2));
+        rollup.apply(sale(2, now + 1000 * DAY_MILLIS, 50)); // years ahead of the clock
+        rollup.apply(sale(3, now, 3));
+        
+        assertEquals(2, rollup.getHour(now).getSaleCount(), "sales in the current hour");
+        assertEquals(5, rollup.getHour(now).getUnitsSold());
+        LocalDate today = LocalDate.now(zone);
+        assertEquals(2, rollup.getDays(today, today.plusDays(2000)).getSaleCount(), "sales from today on");
+        assertEquals(3, rollup.getLastTransactionId());
+    }
+    
+    private static Transaction sale(int transactionId, long timestampMillis, int quantity) {
+        return new Transaction(transactionId, Transaction.TransactionType.SALE, 1, "Milk", quantity, 150, 100,
+                               150L * quantity, timestampMillis);
+    }
+}
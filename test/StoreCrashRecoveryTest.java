@@ -0,0 +1,139 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * StoreCrashRecoveryTest class killing a store process after a sale, a product edit or a new
+ * product, before the background save rewrote the products file, then checking that the
+ * restarted store kept the change
+ */
+public class StoreCrashRecoveryTest {
+    private static final String DONE = "DONE";
+    private static final String SALE = "sale";
+    private static final String EDIT = "edit";
+    private static final String ADD = "add";
+    private static final long NO_BACKGROUND_SAVE_MS = 600_000;
+    
+    @TempDir
+    File directory;
+    
+    @Test
+    public void saleJournaledBeforeCrashIsTakenFromStock() throws Exception {
+        int productId = runUntilKilled(directory, SALE);
+        
+        Store store = openStore(directory);
+        try {
+            assertEquals(3, store.findProduct(productId).getStockQuantity(), "stock after the journaled sale");
+            assertEquals(1, store.getProfitReport().getSaleCount());
+        } finally {
+            store.close();
+        }
+        
+        // The corrected stock was saved, so a second start must not take the sale again
+        store = openStore(directory);
+        try {
+            assertEquals(3, store.findProduct(productId).getStockQuantity(), "stock after a second restart");
+        } finally {
+            store.close();
+        }
+    }
+    
+    @Test
+    public void editBeforeCrashIsKept() throws Exception {
+        int productId = runUntilKilled(directory, EDIT);
+        
+        Store store = openStore(directory);
+        try {
+            Product product = store.findProduct(productId);
+            assertEquals("Oat milk", product.getName());
+            assertEquals(40, product.getStockQuantity(), "stock set by the edit");
+        } finally {
+            store.close();
+        }
+    }
+    
+    @Test
+    public void productAddedBeforeCrashKeepsItsId() throws Exception {
+        int productId = runUntilKilled(directory, ADD);
+        
+        Store store = openStore(directory);
+        try {
+            assertEquals("Milk", store.findProduct(productId).getName());
+            Product added = store.addProduct("Bread", 80, 120, 2);
+            assertTrue(added.getId() > productId, "ID " + added.getId() + " handed out again");
+            assertEquals(0, store.getProductHistory(added.getId()).getSaleCount(), "sales of the new product");
+        } finally {
+            store.close();
+        }
+    }
+    
+    /**
+     * Run main() in another JVM, wait for it to finish the scenario and kill the process
+     * @return ID of the product it changed
+     */
+    private static int runUntilKilled(File directory, String scenario) throws Exception {
+        String classPath = location(Store.class) + File.pathSeparator + location(StoreCrashRecoveryTest.class);
+        List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.add("-cp");
+        command.add(classPath);
+        command.add(StoreCrashRecoveryTest.class.getName());
+        command.add(directory.getPath());
+        command.add(scenario);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.startsWith(DONE)) {
+                    return Integer.parseInt(line.substring(DONE.length()).trim());
+                }
+            }
+            throw new AssertionError("store process exited before finishing " + scenario);
+        } finally {
+            process.destroyForcibly(); // no shutdown hooks, no final save
+            assertTrue(process.waitFor(30, TimeUnit.SECONDS), "store process did not die");
+        }
+    }
+    
+    private static String location(Class<?> type) throws Exception {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+    
+    private static Store openStore(File directory) {
+        return new Store(directory, TransactionJournal.SyncPolicy.PER_RECORD, 0, 10_000, false,
+                         NO_BACKGROUND_SAVE_MS, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Run in the child JVM and wait to be killed, with nothing saved in the background:
+     * sale: save 5 units of stock and sell 2 (journaled)
+     * edit: save 5 units of stock, then rename the product and set its stock to 40
+     * add: add a product and sell it (only the sale is journaled)
+     * @param args Data directory and scenario
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Store store = openStore(new File(args[0]));
+        Product product = store.addProduct("Milk", 100, 150, 2);
+        store.purchase(product.getId(), 5);
+        if (!args[1].equals(ADD)) {
+            store.flush();
+        }
+        if (args[1].equals(EDIT)) {
+            store.editProduct(product.getId(), "Oat milk", 100, 150, 40, 2);
+        } else {
+            store.sale(product.getId(), 2);
+        }
+        System.out.println(DONE + " " + product.getId());
+        System.out.flush();
+        Thread.sleep(NO_BACKGROUND_SAVE_MS);
+    }
+}